@@ -14,6 +14,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.imixs.ai.ImixsAIContextHandler;
+import org.imixs.ai.api.CompletionResult;
 import org.imixs.ai.api.LLMConfigService;
 import org.imixs.ai.api.OpenAIAPIService;
 import org.imixs.ai.api.ToolCallResult;
@@ -376,8 +377,12 @@ public class AIAgentOperator {
                             "AGENT_TIMEOUT", "Agent timeout after " + timeout + "ms");
                 }
 
+                // compact the conversation - tool results grow the context with
+                // every iteration
+                openAIAPIService.compactContext(contextHandler, endpoint, debug);
+
                 // call LLM
-                String response = openAIAPIService.postPromptCompletion(contextHandler, endpoint, debug);
+                CompletionResult response = openAIAPIService.postPromptCompletionResult(contextHandler, endpoint, debug);
 
                 // evaluate Tool Calls
                 ToolCallResult toolCallResult = openAIAPIService.processToolCallResult(response, contextHandler,
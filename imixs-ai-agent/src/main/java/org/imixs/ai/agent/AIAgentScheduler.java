@@ -18,6 +18,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.imixs.ai.api.RequestPriority;
 import org.imixs.workflow.engine.EventLogService;
 
 import jakarta.annotation.PostConstruct;
@@ -104,6 +105,12 @@ public class AIAgentScheduler {
     @Timeout
     public void run(Timer timer) {
         eventLogService.releaseDeadLocks(deadLockInterval, AIAgentOperator.AGENT_TOPIC_PROCESS);
-        agentOperator.processEventLog();
+        // LLM requests of the scheduler must not delay interactive users
+        RequestPriority previous = RequestPriority.enter(RequestPriority.BACKGROUND);
+        try {
+            agentOperator.processEventLog();
+        } finally {
+            RequestPriority.restore(previous);
+        }
     }
 }
\ No newline at end of file
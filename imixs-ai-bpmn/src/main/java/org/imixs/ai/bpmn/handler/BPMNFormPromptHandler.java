@@ -36,6 +36,7 @@ import org.xml.sax.InputSource;
 
 import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
+import jakarta.json.Json;
 
 /**
  * The BPMNFormPromptHandler resolves <bpmn.form /> tags in a prompt template.
@@ -57,6 +58,14 @@ import jakarta.inject.Inject;
  * Excludes readonly fields entirely instead of including them as
  * [readonly] context information.
  *
+ * <bpmn.form grammar="true" />
+ * Additionally attaches a llama.cpp GBNF grammar generated from the same
+ * form items to the completion request. The grammar constrains the output
+ * of the model to exactly the XML skeleton - field names, order, date and
+ * number formats and the values of select fields. Generation stops as soon
+ * as the root element is closed. The option is only supported by llama.cpp
+ * based endpoints.
+ *
  * The generated block is intended to replace both the hand-written XML
  * target structure and the hand-written field mapping suggestions that a
  * BPMN modeller would otherwise maintain manually in the prompt template.
@@ -142,6 +151,14 @@ public class BPMNFormPromptHandler {
             if (formPromptBlock != null) {
                 prompt = prompt.replace(xmlTag.getOuterXML(), formPromptBlock);
             }
+
+            // constrain the model output to the XML skeleton
+            if ("true".equalsIgnoreCase(xmlTag.getAttribute("grammar"))) {
+                String grammar = buildFormGrammar(formDefinition, itemsAttribute, excludeReadonly, rootName);
+                if (!grammar.isEmpty()) {
+                    event.setOptions(Json.createObjectBuilder().add("grammar", grammar).build().toString());
+                }
+            }
         }
         event.setPromptTemplate(prompt);
     }
@@ -194,20 +211,7 @@ public class BPMNFormPromptHandler {
             return "";
         }
 
-        Set<String> filterSet = null;
-        if (itemsFilter != null && !itemsFilter.isBlank()) {
-            filterSet = new HashSet<>();
-            for (String name : itemsFilter.split(",")) {
-                filterSet.add(name.trim());
-            }
-        }
-
-        Document doc = parseXML(formDefinition);
-        if (doc == null) {
-            return "";
-        }
-
-        List<Element> items = collectItems(doc, filterSet, excludeReadonly);
+        List<Element> items = resolveItems(formDefinition, itemsFilter, excludeReadonly);
         if (items.isEmpty()) {
             return "";
         }
@@ -225,6 +229,147 @@ public class BPMNFormPromptHandler {
         return block.toString();
     }
 
+    /**
+     * Builds a llama.cpp GBNF grammar for the XML skeleton of
+     * {@link #buildFormPromptBlock}, e.g.:
+     *
+     * <pre>
+     * root ::= "&lt;invoice&gt;\n" f0 f1 "&lt;/invoice&gt;"
+     * f0 ::= "  &lt;invoice.number&gt;" text "&lt;/invoice.number&gt;\n"
+     * f1 ::= "  &lt;invoice.date type=\"date\"&gt;" date? "&lt;/invoice.date&gt;\n"
+     * </pre>
+     *
+     * Each value may be empty, as the model is instructed to leave a tag empty
+     * if no data is available. Text values can not contain a markup character
+     * other than an XML entity, so the result can always be parsed by
+     * AIResultHandlerXML.
+     *
+     * @param formDefinition  the raw <imixs-form> XML
+     * @param itemsFilter     optional comma separated list of item names
+     * @param excludeReadonly if true, readonly fields are excluded
+     * @param rootName        the root element name of the XML skeleton
+     * @return the grammar (never null, may be an empty string)
+     */
+    protected String buildFormGrammar(String formDefinition, String itemsFilter, boolean excludeReadonly,
+            String rootName) {
+        if (formDefinition == null || formDefinition.isBlank()) {
+            return "";
+        }
+        List<Element> items = resolveItems(formDefinition, itemsFilter, excludeReadonly);
+        if (items.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder root = new StringBuilder();
+        StringBuilder rules = new StringBuilder();
+        root.append("root ::= ").append(gbnfLiteral("<" + rootName + ">\n"));
+        for (int i = 0; i < items.size(); i++) {
+            Element itemElement = items.get(i);
+            String name = itemElement.getAttribute("name");
+            String formType = itemElement.getAttribute("type");
+            String llmType = mapFormTypeToLLMType(formType);
+
+            String typeAttribute = "";
+            if ("date".equals(llmType) || "double".equals(llmType)) {
+                typeAttribute = " type=\"" + llmType + "\"";
+            }
+            String rule = "f" + i;
+            root.append(" ").append(rule);
+            rules.append(rule).append(" ::= ")
+                    .append(gbnfLiteral("  <" + name + typeAttribute + ">")).append(" ")
+                    .append(buildValueRule(formType, llmType, itemElement.getAttribute("options"))).append(" ")
+                    .append(gbnfLiteral("</" + name + ">\n")).append("\n");
+        }
+        root.append(" ").append(gbnfLiteral("</" + rootName + ">")).append("\n");
+
+        return root.append(rules)
+                .append("text ::= ([^<&] | \"&amp;\" | \"&lt;\" | \"&gt;\" | \"&quot;\" | \"&apos;\")*\n")
+                .append("date ::= [0-9] [0-9] [0-9] [0-9] \"-\" [0-9] [0-9] \"-\" [0-9] [0-9]\n")
+                .append("double ::= \"-\"? [0-9]+ (\".\" [0-9]+)?\n")
+                .append("boolean ::= \"true\" | \"false\"\n")
+                .toString();
+    }
+
+    /**
+     * Returns the grammar expression for the value of a form item. The values of
+     * select items are restricted to their options.
+     */
+    private String buildValueRule(String formType, String llmType, String options) {
+        List<String> values = parseOptionValues(options);
+        if (!values.isEmpty() && (SINGLE_SELECT_TYPES.contains(formType) || MULTI_SELECT_TYPES.contains(formType))) {
+            StringBuilder choice = new StringBuilder("(");
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    choice.append(" | ");
+                }
+                choice.append(gbnfLiteral(escapeXML(values.get(i))));
+            }
+            choice.append(")");
+            if (MULTI_SELECT_TYPES.contains(formType)) {
+                // one or more values, separated by a comma
+                return "(" + choice + " (\", \" " + choice + ")*)?";
+            }
+            return choice + "?";
+        }
+        switch (llmType) {
+            case "date":
+            case "double":
+            case "boolean":
+                return llmType + "?";
+            default:
+                return "text";
+        }
+    }
+
+    /**
+     * Returns a quoted GBNF string literal.
+     */
+    private static String gbnfLiteral(String value) {
+        StringBuilder literal = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    literal.append("\\\"");
+                    break;
+                case '\\':
+                    literal.append("\\\\");
+                    break;
+                case '\n':
+                    literal.append("\\n");
+                    break;
+                default:
+                    literal.append(c);
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    private static String escapeXML(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    /**
+     * Parses a form definition and returns the form items matching the given
+     * items filter and readonly exclusion rule.
+     *
+     * @return the list of matching <item> elements (never null)
+     */
+    private List<Element> resolveItems(String formDefinition, String itemsFilter, boolean excludeReadonly) {
+        Set<String> filterSet = null;
+        if (itemsFilter != null && !itemsFilter.isBlank()) {
+            filterSet = new HashSet<>();
+            for (String name : itemsFilter.split(",")) {
+                filterSet.add(name.trim());
+            }
+        }
+
+        Document doc = parseXML(formDefinition);
+        if (doc == null) {
+            return new ArrayList<>();
+        }
+        return collectItems(doc, filterSet, excludeReadonly);
+    }
+
     /**
      * Collects all <item> elements from a parsed form definition that match
      * the given items filter and readonly exclusion rule.
@@ -432,10 +577,26 @@ public class BPMNFormPromptHandler {
             return null;
         }
 
+        List<String> values = parseOptionValues(options);
+        if (values.isEmpty()) {
+            return null;
+        }
+
+        String prefix = MULTI_SELECT_TYPES.contains(formType) ? "one or more of: " : "one of: ";
+        return prefix + String.join(", ", values);
+    }
+
+    /**
+     * Returns the stored values of the 'options' attribute of a select item.
+     */
+    private List<String> parseOptionValues(String options) {
+        List<String> values = new ArrayList<>();
+        if (options == null || options.isBlank()) {
+            return values;
+        }
         // Options are semicolon separated. Each option may define an optional
         // display label using a '|' separator (label|value). We only need the
         // stored value here, since that is what gets written back to the workitem.
-        StringBuilder values = new StringBuilder();
         for (String option : options.split(";")) {
             String value = option.trim();
             if (value.isEmpty()) {
@@ -445,17 +606,11 @@ public class BPMNFormPromptHandler {
             if (pipeIndex >= 0) {
                 value = value.substring(0, pipeIndex).trim();
             }
-            if (values.length() > 0) {
-                values.append(", ");
+            if (!value.isEmpty()) {
+                values.add(value);
             }
-            values.append(value);
-        }
-        if (values.length() == 0) {
-            return null;
         }
-
-        String prefix = MULTI_SELECT_TYPES.contains(formType) ? "one or more of: " : "one of: ";
-        return prefix + values;
+        return values;
     }
 
     /**
@@ -9,8 +9,10 @@
  ****************************************************************************/
 package org.imixs.ai.bpmn.handler;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.util.logging.Level;
@@ -93,6 +95,27 @@ public class TestBPMNFormPromptHandler {
         }
     }
 
+    /**
+     * Builds the GBNF grammar for the invoice form of task 5000. Each form item
+     * is one rule of the root element.
+     */
+    @Test
+    public void testBuildFormGrammar() {
+        String formDefinition = handler.fetchFormDefinitionByWorkitem(workitem);
+        String grammar = handler.buildFormGrammar(formDefinition, null, true, "invoice");
+
+        System.out.println("=== Generated grammar ===");
+        System.out.println(grammar);
+
+        assertTrue(grammar.startsWith("root ::= \"<invoice>\\n\" f0"));
+        assertTrue(grammar.contains("\"</invoice>\""));
+        assertTrue(grammar.contains("f0 ::= \"  <"));
+        assertTrue(grammar.contains("text ::= "));
+
+        // no form definition - no grammar
+        assertEquals("", handler.buildFormGrammar("", null, true, "invoice"));
+    }
+
     /**
      * End-to-end test: resolves a <bpmn.form /> tag inside a full prompt
      * template against the real model and prints the resulting prompt.
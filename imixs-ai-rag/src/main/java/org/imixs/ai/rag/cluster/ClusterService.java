@@ -33,8 +33,8 @@ import com.datastax.oss.driver.api.core.cql.BoundStatement;
 import com.datastax.oss.driver.api.core.cql.PreparedStatement;
 import com.datastax.oss.driver.api.core.cql.ResultSet;
 import com.datastax.oss.driver.api.core.cql.Row;
-import com.datastax.oss.driver.api.core.data.CqlVector;
 import com.datastax.oss.driver.api.core.servererrors.InvalidQueryException;
+import com.datastax.oss.driver.api.core.type.codec.ExtraTypeCodecs;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -302,6 +302,8 @@ public class ClusterService {
             builder.withKeyspace(keyspace);
         }
         builder.withLocalDatacenter("datacenter1");
+        // bind embedding vectors as primitive float arrays
+        builder.addTypeCodecs(ExtraTypeCodecs.floatVectorToArray(DIMENSIONS));
         return builder.build();
     }
 
@@ -411,6 +413,25 @@ public class ClusterService {
     public void insertEmbeddings(String uniqueID, String chunkID, String category, String modelGroup,
             int taskId, String content, List<Float> vector)
             throws ClusterException {
+        insertEmbeddings(uniqueID, chunkID, category, modelGroup, taskId, content, toArray(vector));
+    }
+
+    /**
+     * Inserts an embedding together with a content chunk into the database. The
+     * vector is bound as a primitive float array without boxing.
+     * 
+     * @param uniqueID   the document ID
+     * @param category   the content category (null or empty string for primary
+     *                   data)
+     * @param modelGroup the workflow model group
+     * @param taskId     the workflow task ID
+     * @param content    the text chunk
+     * @param vector     the embedding vector
+     * @throws ClusterException
+     */
+    public void insertEmbeddings(String uniqueID, String chunkID, String category, String modelGroup,
+            int taskId, String content, float[] vector)
+            throws ClusterException {
 
         // Default category to empty string
         if (category == null) {
@@ -429,9 +450,6 @@ public class ClusterService {
             // Generate UUID for this chunk
             // UUID chunk_id = UUID.randomUUID();
 
-            // Create CqlVector
-            CqlVector<Float> cqlVector = CqlVector.newInstance(vector);
-
             // Bind parameters: id, chunk_id, category, model_group, task_id, content_chunk,
             // content_vector
             BoundStatement boundStmt = insertVectorStmt.bind(
@@ -441,7 +459,7 @@ public class ClusterService {
                     modelGroup,
                     taskId,
                     content,
-                    cqlVector);
+                    vector);
 
             getSession().execute(boundStmt);
 
@@ -484,6 +502,20 @@ public class ClusterService {
             String category,
             String modelGroups,
             String tasks) throws ClusterException {
+        return searchEmbeddings(toArray(embedding), maxResults, category, modelGroups, tasks);
+    }
+
+    /**
+     * Performs a semantic search on the document vector database using cosine
+     * similarity. The embedding vector is bound as a primitive float array.
+     * 
+     * @see #searchEmbeddings(List, int, String, String, String)
+     */
+    public List<RetrievalResult> searchEmbeddings(float[] embedding,
+            int maxResults,
+            String category,
+            String modelGroups,
+            String tasks) throws ClusterException {
 
         if (maxResults <= 0) {
             throw new ClusterException(ClusterException.CLUSTER_ERROR,
@@ -506,11 +538,8 @@ public class ClusterService {
                 searchVectorStatements.put(query, stmt);
             }
 
-            // Create CqlVector
-            CqlVector<Float> cqlVector = CqlVector.newInstance(embedding);
-
             // Bind parameters (QueryBuilder handles category conditionally)
-            ResultSet rows = getSession().execute(stmt.bind(queryBuilder.buildParams(cqlVector)));
+            ResultSet rows = getSession().execute(stmt.bind(queryBuilder.buildParams(embedding)));
 
             // Track best similarity per uniqueID (deduplication)
             Map<String, RetrievalResult> bestMatches = new HashMap<>();
@@ -806,4 +835,15 @@ public class ClusterService {
         }
         return 0;
     }
+
+    /**
+     * Converts a List of Float values into a primitive vector.
+     */
+    private static float[] toArray(List<Float> vector) {
+        float[] result = new float[vector.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = vector.get(i);
+        }
+        return result;
+    }
 }
@@ -5,8 +5,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
-import com.datastax.oss.driver.api.core.data.CqlVector;
-
 /**
  * Internal builder for constructing vector search queries. Handles parsing of
  * category, modelgroup patterns and task filters, builds the CQL query, and
@@ -89,8 +87,10 @@ public class QueryBuilder {
 
     /**
      * Builds the parameter array for the prepared statement.
+     * 
+     * @param vector - the query vector, a float[] or a CqlVector
      */
-    Object[] buildParams(CqlVector<Float> vector) {
+    Object[] buildParams(Object vector) {
         List<Object> params = new ArrayList<>();
 
         // First vector for similarity calculation
@@ -23,6 +23,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.imixs.ai.api.RequestPriority;
 import org.imixs.workflow.engine.AsyncEventService;
 import org.imixs.workflow.engine.EventLogService;
 
@@ -128,7 +129,13 @@ public class IndexScheduler {
                 IndexOperator.EVENTLOG_TOPIC_RAG_EVENT_UPDATE,
                 IndexOperator.EVENTLOG_TOPIC_RAG_EVENT_PROMPT,
                 IndexOperator.EVENTLOG_TOPIC_RAG_EVENT_DELETE);
-        indexOperator.processEventLog();
+        // LLM requests of the scheduler must not delay interactive users
+        RequestPriority previous = RequestPriority.enter(RequestPriority.BACKGROUND);
+        try {
+            indexOperator.processEventLog();
+        } finally {
+            RequestPriority.restore(previous);
+        }
     }
 
 }
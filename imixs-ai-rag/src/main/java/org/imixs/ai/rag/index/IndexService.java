@@ -19,6 +19,7 @@ import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import org.imixs.ai.ImixsAIContextHandler;
+import org.imixs.ai.api.CompletionResult;
 import org.imixs.ai.api.LLMConfigService;
 import org.imixs.ai.api.LLMOptions;
 import org.imixs.ai.api.OpenAIAPIService;
@@ -149,8 +150,11 @@ public class IndexService {
             // Remove old embeddings for THIS category only (not all categories!)
             clusterService.removeEmbeddingsByCategory(workitem.getUniqueID(), category);
 
-            // Chunk text and insert with category
+            // Chunk text, compute all embeddings in batches (unchanged chunks are served
+            // from the embedding cache) and insert with category
             List<String> chunk_list = RAGUtil.chunkMarkupDocument(llmPrompt, 512);
+            List<float[]> embeddings = openAIAPIService.postEmbeddingVectors(
+                    chunk_list, embeddingsEndpoint, embeddingOptions, debug);
             int chunkIndex = 1;
             for (String chunk : chunk_list) {
                 String chunk_id = String.format("%016d", chunkIndex);
@@ -158,8 +162,7 @@ public class IndexService {
                     logger.info("│   ├── 🔸 chunk " + chunk_id + ": ");
                     logger.info(chunk);
                 }
-                List<Float> indexResult = openAIAPIService.postEmbedding(
-                        chunk, embeddingsEndpoint, embeddingOptions, debug);
+                float[] indexResult = embeddings.get(chunkIndex - 1);
 
                 // Write to cassandra WITH category
                 clusterService.insertEmbeddings(
@@ -173,7 +176,7 @@ public class IndexService {
 
                 if (debug) {
                     logger.info(
-                            "│   ├── ⇨ " + indexResult.size() + " floats stored in RAG db (category: "
+                            "│   ├── ⇨ " + indexResult.length + " floats stored in RAG db (category: "
                                     + (category.isEmpty() ? "primary" : category) + ")");
                 }
                 chunkIndex++;
@@ -257,12 +260,11 @@ public class IndexService {
 
             imixsAIContextHandler.loadPromptDefinition(promptTemplate);
 
-            String llmPrompt = imixsAIContextHandler.toString();
             // if we have a prompt we call the llm api endpoint
-            if (llmPrompt != null && !llmPrompt.isBlank()) {
+            if (!imixsAIContextHandler.isEmpty()) {
 
                 // postPromptCompletion
-                String completionResult = openAIAPIService.postPromptCompletion(imixsAIContextHandler,
+                CompletionResult completionResult = openAIAPIService.postPromptCompletionResult(imixsAIContextHandler,
                         llmAPIEndpointCompletion, llmAPIDebug);
                 String resultMessage = openAIAPIService.processPromptResult(completionResult, "", workitem);
                 indexDefinition.setItemValue(ITEM_PROMPT_TEMPLATE,
@@ -355,10 +357,10 @@ public class IndexService {
                 }
 
                 // retrieve prompt....
-                List<Float> embeddings = openAIAPIService.postEmbedding(
+                float[] embeddings = openAIAPIService.postEmbeddingVector(
                         llmPrompt, embeddingsEndpoint, embeddingOptions, llmAPIDebug);
                 if (llmAPIDebug) {
-                    logger.info("├── ⇨ " + embeddings.size() + " floats stored in RAG db.");
+                    logger.info("├── ⇨ " + embeddings.length + " floats stored in RAG db.");
                 }
                 // search cassandra
                 List<RetrievalResult> retrievalResultList = clusterService.searchEmbeddings(embeddings, maxResults,
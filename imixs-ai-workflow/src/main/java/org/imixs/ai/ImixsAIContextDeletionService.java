@@ -0,0 +1,67 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.engine.DocumentEvent;
+import org.imixs.workflow.engine.DocumentService;
+
+import jakarta.annotation.security.DeclareRoles;
+import jakarta.annotation.security.RunAs;
+import jakarta.ejb.Stateless;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * The ImixsAIContextDeletionService reacts on Document Delete events and
+ * removes the context documents (type <code>ai-context</code>) linked to the
+ * deleted workitem. A context document is linked by the item
+ * <code>[context-item].ref</code> if the context is stored with the storage
+ * mode <code>document</code>.
+ *
+ * @see ImixsAIContextHandler#storeContext()
+ * @see DocumentEvent
+ * @author rsoika
+ */
+@DeclareRoles({ "org.imixs.ACCESSLEVEL.MANAGERACCESS" })
+@RunAs("org.imixs.ACCESSLEVEL.MANAGERACCESS")
+@Stateless
+public class ImixsAIContextDeletionService {
+
+    @Inject
+    DocumentService documentService;
+
+    /**
+     * DocumentEvent listener to remove the context documents of a deleted
+     * workitem.
+     */
+    public void onDocumentEvent(@Observes DocumentEvent documentEvent) {
+        if (DocumentEvent.ON_DOCUMENT_DELETE != documentEvent.getEventType()) {
+            return;
+        }
+        ItemCollection document = documentEvent.getDocument();
+        // do not run on snapshots or the context documents
+        if (document.getType().startsWith("snapshot-")
+                || ImixsAIContextHandler.TYPE_CONTEXT.equals(document.getType())) {
+            return;
+        }
+        for (String itemName : document.getItemNames()) {
+            String ref = document.getItemValueString(itemName);
+            if (itemName.endsWith(".ref") && !ref.isEmpty()) {
+                ImixsAIContextHandler.removeContextDocument(documentService, ref, document.getUniqueID());
+            }
+        }
+    }
+}
@@ -1,6 +1,11 @@
 package org.imixs.ai;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.io.StringReader;
 import java.io.StringWriter;
@@ -9,6 +14,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -20,10 +27,15 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.imixs.ai.api.LLMOptions;
+import org.imixs.ai.api.PromptBudget;
+import org.imixs.ai.api.TokenEstimator;
 import org.imixs.ai.tools.ToolCallHandler;
 import org.imixs.ai.workflow.ImixsAIPromptEvent;
 import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.engine.DocumentService;
+import org.imixs.workflow.exceptions.AccessDeniedException;
 import org.imixs.workflow.exceptions.AdapterException;
 import org.imixs.workflow.exceptions.PluginException;
 import org.w3c.dom.Document;
@@ -39,6 +51,7 @@ import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.json.Json;
+import jakarta.json.JsonArray;
 import jakarta.json.JsonArrayBuilder;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
@@ -61,6 +74,8 @@ import jakarta.json.JsonReader;
 public class ImixsAIContextHandler implements Serializable {
 
     private static final Logger logger = Logger.getLogger(ImixsAIContextHandler.class.getName());
+    private static final ObjectInputFilter CONTEXT_FILTER = ObjectInputFilter.Config
+            .createFilter("java.base/*;!*");
 
     public static final String ERROR_PROMPT_TEMPLATE = "ERROR_LLM_PROMPT_TEMPLATE";
     public static final String ERROR_INVALID_PARAMETER = "ERROR_INVALID_PARAMETER";
@@ -71,13 +86,28 @@ public class ImixsAIContextHandler implements Serializable {
     public static final String ITEM_DATE = "chat.date";
     public static final String ITEM_USERID = "chat.userid";
     public static final String ITEM_TOOL_CALL_ID = "chat.tool_call_id";
+    public static final String ITEM_SUMMARY = "chat.summary";
+
+    public static final String SUMMARY_HEADER = "Summary of the earlier conversation:\n";
+    public static final String TOOL_RESULT_REMOVED = "[tool result removed]";
 
     public static final String ROLE_SYSTEM = "system";
     public static final String ROLE_USER = "user";
     public static final String ROLE_ASSISTANT = "assistant";
     public static final String ROLE_TOOL = "tool";
-
-    private ItemCollection workItem = null;
+    // holds the summary of a context without system message, sent as a system
+    // message - see compactContext()
+    public static final String ROLE_SUMMARY = "summary";
+
+    public static final String ENV_CONTEXT_STORAGE = "llm.context.storage";
+    public static final String CONTEXT_STORAGE_ITEM = "item";
+    public static final String CONTEXT_STORAGE_BLOB = "blob";
+    public static final String CONTEXT_STORAGE_DOCUMENT = "document";
+    public static final String TYPE_CONTEXT = "ai-context";
+    public static final String ITEM_CONTEXT_DATA = "ai.context.data";
+
+    // ItemCollections and JSON objects are not serializable - see writeObject()
+    private transient ItemCollection workItem = null;
     private String itemNameContext;
     private boolean toolCallsEnabled = false;
     private boolean debug;
@@ -89,10 +119,23 @@ public class ImixsAIContextHandler implements Serializable {
     @Any
     private Instance<ToolCallHandler> toolCallHandlers;
 
+    @Inject
+    private DocumentService documentService;
+
+    @Inject
+    @ConfigProperty(name = ENV_CONTEXT_STORAGE, defaultValue = CONTEXT_STORAGE_ITEM)
+    private String contextStorage;
+
     // Message container for API
-    private List<ItemCollection> context = null;
+    private transient List<ItemCollection> context = null;
+    // compressed context imported from the workitem, decoded on first access
+    private byte[] storedContext = null;
+    private String storedContextRef = null;
+    // messages converted into the OpenAI API format, parallel to the context -
+    // not serialized and rebuilt on the next call of getOpenAIMessages()
+    private transient List<SerializedMessage> serializedMessages = null;
     // Functions container for API
-    private List<JsonObject> functions = new ArrayList<>();
+    private transient List<JsonObject> functions = new ArrayList<>();
 
     // Tracked workitem references collected during the agent loop
     private List<String> workitemRefs = new ArrayList<>();
@@ -105,6 +148,8 @@ public class ImixsAIContextHandler implements Serializable {
 
     private boolean stream = false;
 
+    private Boolean cache = null;
+
     private String toolChoice = "auto"; // default
 
     /**
@@ -117,6 +162,9 @@ public class ImixsAIContextHandler implements Serializable {
     // reset context
     public void init() {
         context = new ArrayList<ItemCollection>();
+        storedContext = null;
+        storedContextRef = null;
+        serializedMessages = null;
         functions = new ArrayList<JsonObject>();
         workitemRefs = new ArrayList<>();
         toolChoice = "auto";
@@ -124,6 +172,7 @@ public class ImixsAIContextHandler implements Serializable {
         promptTemplate = null;
         promptOptions = null;
         promptTools = null;
+        cache = null;
     }
 
     /**
@@ -173,6 +222,18 @@ public class ImixsAIContextHandler implements Serializable {
         this.stream = stream;
     }
 
+    /**
+     * Returns the completion cache setting of the prompt definition, or null if
+     * the <code>&lt;cache&gt;</code> mode of the endpoint applies.
+     */
+    public Boolean getCache() {
+        return cache;
+    }
+
+    public void setCache(Boolean cache) {
+        this.cache = cache;
+    }
+
     /**
      * Sets the tool_choice parameter for the request. Possible values: "auto",
      * "none", "required"
@@ -211,6 +272,7 @@ public class ImixsAIContextHandler implements Serializable {
         // Fire Prompt Event if EventObservers available...
         if (llmPromptEventObservers != null) {
             ImixsAIPromptEvent llmPromptEvent = new ImixsAIPromptEvent(content, workItem);
+            llmPromptEvent.setContextTokens(getEstimatedTokens());
             try {
                 llmPromptEventObservers.fire(llmPromptEvent);
             } catch (ObserverException e) {
@@ -225,6 +287,10 @@ public class ImixsAIContextHandler implements Serializable {
                         e.getCause() != null ? e.getCause().getMessage() : e.getMessage(), e);
             }
             content = llmPromptEvent.getPromptTemplate();
+            // options added by an observer (e.g. a grammar)
+            if (llmPromptEvent.getOptions() != null && !llmPromptEvent.getOptions().isBlank()) {
+                addOptions(llmPromptEvent.getOptions());
+            }
         }
         message.setItemValue(ITEM_MESSAGE, content);
 
@@ -236,7 +302,7 @@ public class ImixsAIContextHandler implements Serializable {
 
         }
 
-        context.add(message);
+        getContext().add(message);
         return this;
     }
 
@@ -250,7 +316,7 @@ public class ImixsAIContextHandler implements Serializable {
         message.setItemValue(ITEM_ROLE, ROLE_TOOL);
         message.setItemValue(ITEM_MESSAGE, content);
         message.setItemValue(ITEM_TOOL_CALL_ID, toolCallId);
-        context.add(message);
+        getContext().add(message);
         return this;
     }
 
@@ -264,15 +330,172 @@ public class ImixsAIContextHandler implements Serializable {
         message.setItemValue(ITEM_ROLE, ROLE_ASSISTANT);
         message.setItemValue(ITEM_MESSAGE, rawMessageJson);
         message.setItemValue("chat.is_tool_call", true);
-        context.add(message);
+        getContext().add(message);
         return this;
     }
 
+    /**
+     * Returns the estimated number of tokens of all messages in the current
+     * context. The estimate is based on the {@link TokenEstimator#HEURISTIC}
+     * and does not call the LLM.
+     *
+     * @return estimated number of tokens
+     */
+    public int getEstimatedTokens() {
+        int tokens = 0;
+        for (ItemCollection message : getContext()) {
+            tokens += TokenEstimator.estimate(getMessageContent(message))
+                    + PromptBudget.MESSAGE_OVERHEAD;
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the summary of the earlier conversation, stored with the system
+     * message or the summary message by {@link #compactContext(int, String)}.
+     *
+     * @return the summary or an empty string
+     */
+    public String getSummary() {
+        List<ItemCollection> messages = getContext();
+        return getFirstMessage() > 0 ? messages.get(0).getItemValueString(ITEM_SUMMARY) : "";
+    }
+
+    /**
+     * Returns the stale messages of the current context - all messages except the
+     * system message and the latest messages within the given window. These are
+     * the messages removed by {@link #compactContext(int, String)}.
+     *
+     * @param window - number of latest messages to keep
+     * @return list of stale messages, empty if the context fits into the window
+     */
+    public List<ItemCollection> getStaleMessages(int window) {
+        return new ArrayList<>(getContext().subList(getFirstMessage(), getWindowStart(window)));
+    }
+
+    /**
+     * Truncates the content of stale tool results to the given length. Tool results
+     * (e.g. a list of workitems) are typically the largest messages of an agent
+     * conversation and are rarely needed after the assistant has answered. The
+     * tool result messages are kept, as the tool calls of the assistant refer to
+     * them.
+     *
+     * @param window    - number of latest messages to keep in full
+     * @param maxLength - maximum length of a stale tool result, 0 removes the
+     *                  content
+     * @return number of truncated tool results
+     */
+    public int truncateToolResults(int window, int maxLength) {
+        int count = 0;
+        List<ItemCollection> messages = getContext();
+        int end = getWindowStart(window);
+        for (int i = getFirstMessage(); i < end; i++) {
+            ItemCollection message = messages.get(i);
+            if (!ROLE_TOOL.equals(message.getItemValueString(ITEM_ROLE))) {
+                continue;
+            }
+            String content = message.getItemValueString(ITEM_MESSAGE);
+            if (maxLength <= 0) {
+                if (!TOOL_RESULT_REMOVED.equals(content)) {
+                    message.setItemValue(ITEM_MESSAGE, TOOL_RESULT_REMOVED);
+                    count++;
+                }
+            } else if (content.length() > maxLength + PromptBudget.TRUNCATION_MARK.length()) {
+                message.setItemValue(ITEM_MESSAGE, content.substring(0, maxLength) + PromptBudget.TRUNCATION_MARK);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the stale messages from the current context and keeps the system
+     * message and the latest messages within the given window (sliding window).
+     * <p>
+     * An optional summary of the removed messages is stored with the system
+     * message and sent as part of it. A summary should include the previous
+     * summary, so it rolls over the whole conversation. If the context has no
+     * system message, the summary is stored in a separate message with the role
+     * {@link #ROLE_SUMMARY}. This message is sent as a system message, but is not
+     * reported by {@link #hasSystemMessage()}, so a caller still loads its system
+     * prompt.
+     *
+     * @param window  - number of latest messages to keep
+     * @param summary - optional summary of the conversation, can be null
+     * @return number of removed messages
+     */
+    public int compactContext(int window, String summary) {
+        List<ItemCollection> messages = getContext();
+        int first = getFirstMessage();
+        int end = getWindowStart(window);
+        messages.subList(first, end).clear();
+        if (summary != null && !summary.isBlank()) {
+            if (first == 0) {
+                ItemCollection message = new ItemCollection();
+                message.setItemValue(ITEM_ROLE, ROLE_SUMMARY);
+                message.setItemValue(ITEM_MESSAGE, "");
+                messages.add(0, message);
+            }
+            messages.get(0).setItemValue(ITEM_SUMMARY, summary.trim());
+        }
+        return end - first;
+    }
+
+    /**
+     * Returns the index of the first message after the system or summary message.
+     */
+    private int getFirstMessage() {
+        List<ItemCollection> messages = getContext();
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        String role = messages.get(0).getItemValueString(ITEM_ROLE);
+        return ROLE_SYSTEM.equals(role) || ROLE_SUMMARY.equals(role) ? 1 : 0;
+    }
+
+    /**
+     * Returns the index of the first message within the given window. Tool results
+     * are not separated from the assistant message calling the tools.
+     */
+    private int getWindowStart(int window) {
+        List<ItemCollection> messages = getContext();
+        int first = getFirstMessage();
+        int start = Math.max(first, messages.size() - Math.max(0, window));
+        while (start > first && start < messages.size()
+                && ROLE_TOOL.equals(messages.get(start).getItemValueString(ITEM_ROLE))) {
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the content of a message sent to the LLM. The summary of the earlier
+     * conversation is appended to the system message.
+     */
+    private static String getMessageContent(ItemCollection message) {
+        String content = message.getItemValueString(ITEM_MESSAGE);
+        String summary = message.getItemValueString(ITEM_SUMMARY);
+        if (summary.isEmpty()) {
+            return content;
+        }
+        return content.isEmpty() ? SUMMARY_HEADER + summary : content + "\n\n" + SUMMARY_HEADER + summary;
+    }
+
     /**
      * This method reset the current context.
      */
     public void resetContext() {
         context = new ArrayList<ItemCollection>();
+        storedContext = null;
+        storedContextRef = null;
+        serializedMessages = null;
+    }
+
+    /**
+     * Returns true if the current context contains no messages.
+     */
+    public boolean isEmpty() {
+        return getContext().isEmpty();
     }
 
     /**
@@ -290,7 +513,7 @@ public class ImixsAIContextHandler implements Serializable {
      * to avoid overwriting an existing system prompt on subsequent agent calls.
      */
     public boolean hasSystemMessage() {
-        return context.stream()
+        return getContext().stream()
                 .anyMatch(m -> ROLE_SYSTEM.equals(m.getItemValueString(ITEM_ROLE)));
     }
 
@@ -589,32 +812,7 @@ public class ImixsAIContextHandler implements Serializable {
      */
     public JsonObject getOpenAIMessageObject() {
         JsonObjectBuilder builder = Json.createObjectBuilder();
-
-        // Build messages array
-        JsonArrayBuilder messagesArray = Json.createArrayBuilder();
-        for (ItemCollection message : context) {
-
-            // Tool call assistant message? - embed as native JSON object
-            if (message.getItemValueBoolean("chat.is_tool_call")) {
-                String rawJson = message.getItemValueString(ITEM_MESSAGE);
-                try (JsonReader reader = Json.createReader(new StringReader(rawJson))) {
-                    messagesArray.add(reader.readObject()); // directly embedded, not wrapped!
-                }
-                continue;
-            }
-
-            // normal message
-            JsonObjectBuilder messageBuilder = Json.createObjectBuilder();
-            messageBuilder.add("role", message.getItemValueString(ITEM_ROLE));
-            messageBuilder.add("content", message.getItemValueString(ITEM_MESSAGE));
-            // Add tool_call_id if role is "tool"
-            if (ROLE_TOOL.equals(message.getItemValueString(ITEM_ROLE))) {
-                messageBuilder.add("tool_call_id",
-                        message.getItemValueString(ITEM_TOOL_CALL_ID));
-            }
-            messagesArray.add(messageBuilder);
-        }
-        builder.add("messages", messagesArray);
+        builder.add("messages", getOpenAIMessages());
 
         // Add tools array if functions are defined
         if (!functions.isEmpty()) {
@@ -640,6 +838,132 @@ public class ImixsAIContextHandler implements Serializable {
         return result;
     }
 
+    /**
+     * Returns the messages of the current context in the OpenAI API format.
+     * <p>
+     * Each message is converted only once. In an agent loop, where the context
+     * grows by a few messages per iteration, only the new messages are converted
+     * and the JSON objects of the previous messages are reused. A message is
+     * converted again if it was replaced or its role or content changed.
+     */
+    public JsonArray getOpenAIMessages() {
+        List<ItemCollection> messages = getContext();
+        if (serializedMessages == null) {
+            serializedMessages = new ArrayList<>();
+        }
+        JsonArrayBuilder messagesArray = Json.createArrayBuilder();
+        for (int i = 0; i < messages.size(); i++) {
+            ItemCollection message = messages.get(i);
+            String role = message.getItemValueString(ITEM_ROLE);
+            String content = getMessageContent(message);
+            SerializedMessage serialized = i < serializedMessages.size() ? serializedMessages.get(i) : null;
+            if (serialized == null || !serialized.matches(message, role, content)) {
+                serialized = new SerializedMessage(message, role, content, toOpenAIMessage(message, role, content));
+                if (i < serializedMessages.size()) {
+                    serializedMessages.set(i, serialized);
+                } else {
+                    serializedMessages.add(serialized);
+                }
+            }
+            messagesArray.add(serialized.json);
+        }
+        if (serializedMessages.size() > messages.size()) {
+            serializedMessages.subList(messages.size(), serializedMessages.size()).clear();
+        }
+        return messagesArray.build();
+    }
+
+    /**
+     * Converts a context message into the OpenAI API format.
+     */
+    private static JsonObject toOpenAIMessage(ItemCollection message, String role, String content) {
+        // Tool call assistant message? - embed as native JSON object
+        if (message.getItemValueBoolean("chat.is_tool_call")) {
+            try (JsonReader reader = Json.createReader(new StringReader(content))) {
+                return reader.readObject(); // directly embedded, not wrapped!
+            }
+        }
+
+        // normal message
+        JsonObjectBuilder messageBuilder = Json.createObjectBuilder();
+        messageBuilder.add("role", ROLE_SUMMARY.equals(role) ? ROLE_SYSTEM : role);
+        messageBuilder.add("content", content);
+        // Add tool_call_id if role is "tool"
+        if (ROLE_TOOL.equals(role)) {
+            messageBuilder.add("tool_call_id",
+                    message.getItemValueString(ITEM_TOOL_CALL_ID));
+        }
+        return messageBuilder.build();
+    }
+
+    /**
+     * Serializes the workitem and the context messages as maps of items and the
+     * functions as JSON strings. The converted messages are not serialized.
+     */
+    @SuppressWarnings("rawtypes")
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(workItem == null ? null : workItem.getAllItems());
+        List<Map> messages = null;
+        if (context != null) {
+            messages = new ArrayList<Map>();
+            for (ItemCollection message : context) {
+                messages.add(message.getAllItems());
+            }
+        }
+        out.writeObject(messages);
+        List<String> functionStrings = new ArrayList<>();
+        for (JsonObject function : functions) {
+            functionStrings.add(function.toString());
+        }
+        out.writeObject(functionStrings);
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        Map items = (Map) in.readObject();
+        workItem = items == null ? null : new ItemCollection(items);
+        List<Map> messages = (List<Map>) in.readObject();
+        if (messages != null) {
+            context = new ArrayList<ItemCollection>();
+            for (Map message : messages) {
+                context.add(new ItemCollection(message));
+            }
+        }
+        functions = new ArrayList<>();
+        for (String function : (List<String>) in.readObject()) {
+            try (JsonReader reader = Json.createReader(new StringReader(function))) {
+                functions.add(reader.readObject());
+            }
+        }
+    }
+
+    /**
+     * A context message converted into the OpenAI API format.
+     */
+    private static final class SerializedMessage {
+        private final ItemCollection source;
+        private final String role;
+        private final String content;
+        private final JsonObject json;
+
+        SerializedMessage(ItemCollection source, String role, String content, JsonObject json) {
+            this.source = source;
+            this.role = role;
+            this.content = content;
+            this.json = json;
+        }
+
+        /**
+         * Returns true if the message is still the same. The strings of an unchanged
+         * message are the same instances, so the comparison is cheap.
+         */
+        boolean matches(ItemCollection message, String role, String content) {
+            return source == message && this.role.equals(role) && this.content.equals(content);
+        }
+    }
+
     /**
      * Converts the current Message Object into JSON string
      */
@@ -653,7 +977,7 @@ public class ImixsAIContextHandler implements Serializable {
      */
     public List<ItemCollection> getContext() {
         if (context == null) {
-            context = new ArrayList<ItemCollection>();
+            context = loadStoredContext();
         }
         return context;
     }
@@ -664,10 +988,11 @@ public class ImixsAIContextHandler implements Serializable {
      * @return
      */
     public ItemCollection getLastMessage() {
-        if (context == null) {
+        List<ItemCollection> messages = getContext();
+        if (messages.isEmpty()) {
             return null;
         }
-        return context.get(context.size() - 1);
+        return messages.get(messages.size() - 1);
     }
 
     /**
@@ -678,14 +1003,12 @@ public class ImixsAIContextHandler implements Serializable {
      * @return the last message content, or null if none exists
      */
     public String getLastMessage(String role) {
-        if (context == null) {
-            return null;
-        }
+        List<ItemCollection> messages = getContext();
         if (role == null || role.isBlank()) {
             role = ROLE_ASSISTANT;
         }
-        for (int i = context.size() - 1; i >= 0; i--) {
-            ItemCollection message = context.get(i);
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            ItemCollection message = messages.get(i);
             boolean isToolCall = message.getItemValueBoolean("chat.is_tool_call");
             if (role.equals(message.getItemValueString(ITEM_ROLE)) && !isToolCall) {
                 return message.getItemValueString(ITEM_MESSAGE);
@@ -695,7 +1018,40 @@ public class ImixsAIContextHandler implements Serializable {
     }
 
     /**
-     * converts the Map List of a workitem into a List of ItemCollections
+     * Returns the storage of the context in the workitem. The storage is defined
+     * by the config property <code>llm.context.storage</code>:
+     * <ul>
+     * <li><code>item</code> (default) - each message is stored as a map in the
+     * context item</li>
+     * <li><code>blob</code> - the messages are stored compressed in the item
+     * <code>[context-item].blob</code></li>
+     * <li><code>document</code> - the compressed messages are stored in a linked
+     * document of the type <code>ai-context</code>, referred by the item
+     * <code>[context-item].ref</code></li>
+     * </ul>
+     */
+    public String getContextStorage() {
+        if (CONTEXT_STORAGE_DOCUMENT.equalsIgnoreCase(contextStorage)) {
+            // without a DocumentService (e.g. in a unit test) the blob is kept in the
+            // workitem
+            return documentService != null ? CONTEXT_STORAGE_DOCUMENT : CONTEXT_STORAGE_BLOB;
+        }
+        return CONTEXT_STORAGE_BLOB.equalsIgnoreCase(contextStorage) ? CONTEXT_STORAGE_BLOB
+                : CONTEXT_STORAGE_ITEM;
+    }
+
+    public void setContextStorage(String contextStorage) {
+        this.contextStorage = contextStorage;
+    }
+
+    /**
+     * Imports the context of a conversation from a workitem. The context can be
+     * stored as a list of maps, as a compressed blob or in a linked document (see
+     * {@link #getContextStorage()}), independent of the current storage. A
+     * compressed context is decoded on first access.
+     * 
+     * @param workitem        - the workitem holding the conversation
+     * @param itemNameContext - the context item
      */
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public void importContext(ItemCollection workitem, String itemNameContext) {
@@ -704,11 +1060,21 @@ public class ImixsAIContextHandler implements Serializable {
         this.itemNameContext = itemNameContext;
         context = new ArrayList<ItemCollection>();
 
-        List<Object> mapOrderItems = workitem.getItemValue(itemNameContext);
-        for (Object mapOderItem : mapOrderItems) {
-            if (mapOderItem instanceof Map) {
-                ItemCollection itemCol = new ItemCollection((Map) mapOderItem);
-                context.add(itemCol);
+        String ref = workitem.getItemValueString(itemNameContext + ".ref");
+        Object blob = workitem.getItemValue(itemNameContext + ".blob").stream().findFirst().orElse(null);
+        if (!ref.isEmpty()) {
+            storedContextRef = ref;
+            context = null;
+        } else if (blob instanceof byte[]) {
+            storedContext = (byte[]) blob;
+            context = null;
+        } else {
+            List<Object> mapOrderItems = workitem.getItemValue(itemNameContext);
+            for (Object mapOderItem : mapOrderItems) {
+                if (mapOderItem instanceof Map) {
+                    ItemCollection itemCol = new ItemCollection((Map) mapOderItem);
+                    context.add(itemCol);
+                }
             }
         }
 
@@ -724,9 +1090,14 @@ public class ImixsAIContextHandler implements Serializable {
     }
 
     /**
-     * This method stores all messages back into the workitem.
-     * 
-     * @param workitem
+     * This method stores all messages back into the workitem. Depending on the
+     * {@link #getContextStorage()} the messages are stored as a list of maps, as a
+     * compressed blob or in a linked document. In both latter cases the workitem
+     * only holds the blob or the reference and the message count
+     * (<code>[context-item].count</code>), so the conversation does not bloat the
+     * workitem. A compressed context which was never accessed is not stored again.
+     * If the storage was switched from <code>document</code> to <code>item</code>
+     * or <code>blob</code>, the linked document is removed.
      */
     @SuppressWarnings({ "rawtypes" })
     public void storeContext() {
@@ -738,12 +1109,148 @@ public class ImixsAIContextHandler implements Serializable {
                 messages.add(messageItem.getAllItems());
             }
             // Update the workitem
-            logger.fine("...store " + messages.size() + " messages back into " + itemNameContext);
-            workItem.replaceItemValue(itemNameContext, messages);
+            String storage = getContextStorage();
+            logger.fine("...store " + messages.size() + " messages back into " + itemNameContext + " (" + storage
+                    + ")");
+            workItem.replaceItemValue(itemNameContext + ".count", messages.size());
+            if (CONTEXT_STORAGE_ITEM.equals(storage)) {
+                workItem.replaceItemValue(itemNameContext, messages);
+                workItem.removeItem(itemNameContext + ".blob");
+                removeContextDocument();
+            } else {
+                byte[] data = compressContext(messages);
+                if (CONTEXT_STORAGE_DOCUMENT.equals(storage)) {
+                    workItem.replaceItemValue(itemNameContext + ".ref", saveContextDocument(data));
+                    workItem.removeItem(itemNameContext + ".blob");
+                } else {
+                    workItem.replaceItemValue(itemNameContext + ".blob", data);
+                    removeContextDocument();
+                }
+                workItem.removeItem(itemNameContext);
+            }
         }
 
         // store current options and tools
         workItem.replaceItemValue(this.itemNameContext + ".options", promptOptions);
         workItem.replaceItemValue(this.itemNameContext + ".tools", promptTools);
     }
-}
\ No newline at end of file
+
+    /**
+     * Saves the compressed context into the linked context document of the
+     * workitem. The document inherits the read and write access of the workitem
+     * with each save, so every author of the workitem can update the context.
+     *
+     * @return the $uniqueid of the context document
+     */
+    private String saveContextDocument(byte[] data) {
+        ItemCollection document = null;
+        String ref = workItem.getItemValueString(itemNameContext + ".ref");
+        if (!ref.isEmpty()) {
+            document = documentService.load(ref);
+        }
+        if (document == null) {
+            document = new ItemCollection();
+            document.replaceItemValue("type", TYPE_CONTEXT);
+            document.replaceItemValue("$uniqueidref", workItem.getUniqueID());
+            document.replaceItemValue("name", itemNameContext);
+        }
+        document.replaceItemValue("$readaccess", workItem.getItemValue("$readaccess"));
+        document.replaceItemValue("$writeaccess", workItem.getItemValue("$writeaccess"));
+        document.replaceItemValue(ITEM_CONTEXT_DATA, data);
+        document.replaceItemValue(itemNameContext + ".count", workItem.getItemValue(itemNameContext + ".count"));
+        return documentService.save(document).getUniqueID();
+    }
+
+    /**
+     * Removes the linked context document of the workitem, if the storage was
+     * switched from <code>document</code> to <code>item</code> or
+     * <code>blob</code>.
+     */
+    private void removeContextDocument() {
+        String ref = workItem.getItemValueString(itemNameContext + ".ref");
+        if (!ref.isEmpty() && documentService != null) {
+            removeContextDocument(documentService, ref, workItem.getUniqueID());
+        }
+        workItem.removeItem(itemNameContext + ".ref");
+    }
+
+    /**
+     * Removes a context document linked to the given workitem. Documents of other
+     * types or linked to other workitems are not removed.
+     *
+     * @param documentService - the document service
+     * @param ref             - $uniqueid of the context document
+     * @param uniqueIdRef     - $uniqueid of the workitem
+     */
+    static void removeContextDocument(DocumentService documentService, String ref, String uniqueIdRef) {
+        ItemCollection document = documentService.load(ref);
+        if (document == null || !TYPE_CONTEXT.equals(document.getType())
+                || !uniqueIdRef.equals(document.getItemValueString("$uniqueidref"))) {
+            return;
+        }
+        try {
+            documentService.remove(document);
+        } catch (AccessDeniedException e) {
+            logger.warning("├── ⚠️ context document '" + ref + "' not removed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Decodes the compressed context imported from the workitem or the linked
+     * context document. A missing or unreadable context results in an empty
+     * context.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private List<ItemCollection> loadStoredContext() {
+        List<ItemCollection> result = new ArrayList<ItemCollection>();
+        byte[] data = storedContext;
+        if (storedContextRef != null && documentService != null) {
+            ItemCollection document = documentService.load(storedContextRef);
+            if (document == null) {
+                logger.warning("├── ⚠️ context document '" + storedContextRef + "' not found");
+            } else {
+                Object value = document.getItemValue(ITEM_CONTEXT_DATA).stream().findFirst().orElse(null);
+                data = value instanceof byte[] ? (byte[]) value : null;
+            }
+        }
+        storedContext = null;
+        storedContextRef = null;
+        if (data != null) {
+            try {
+                for (Map message : decompressContext(data)) {
+                    result.add(new ItemCollection(message));
+                }
+            } catch (IOException | ClassNotFoundException e) {
+                logger.warning("├── ⚠️ unable to read context '" + itemNameContext + "': " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Serializes a list of messages into a GZIP compressed byte array.
+     */
+    @SuppressWarnings("rawtypes")
+    static byte[] compressContext(List<Map> messages) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(bytes))) {
+            out.writeObject(new ArrayList<Map>(messages));
+        } catch (IOException e) {
+            // a ByteArrayOutputStream does not throw IOExceptions
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores a list of messages from a GZIP compressed byte array. Only classes
+     * of the java.base module (maps, lists, strings, dates) are deserialized.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    static List<Map> decompressContext(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(new ByteArrayInputStream(data)))) {
+            in.setObjectInputFilter(CONTEXT_FILTER);
+            return (List<Map>) in.readObject();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.logging.Logger;
+
+/**
+ * The CircuitBreaker protects a LLM endpoint which is down.
+ * <p>
+ * After a number of consecutive failures (connection errors or HTTP
+ * 502/503/504) the breaker opens and all requests against the endpoint fail
+ * fast with {@link OpenAIAPIConnector#ERROR_CIRCUIT_OPEN} instead of waiting for
+ * a timeout. After the open duration a single trial request is let through
+ * (half-open). If the trial succeeds the breaker closes again, otherwise it
+ * stays open for another period.
+ * <p>
+ * The breaker is configured per endpoint in the <code>imixs-llm.xml</code> file
+ * by the elements <code>&lt;breaker-threshold&gt;</code> and
+ * <code>&lt;breaker-timeout&gt;</code>. A threshold of 0 disables the breaker.
+ *
+ * @author rsoika
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = Logger.getLogger(CircuitBreaker.class.getName());
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String endpointId;
+    private final int threshold;
+    private final long openDuration;
+    private State state = State.CLOSED;
+    private int failures = 0;
+    private long openedAt = 0;
+    private long trialStartedAt = 0;
+
+    /**
+     * @param endpointId   - logical endpoint id
+     * @param threshold    - consecutive failures opening the breaker, 0 = disabled
+     * @param openDuration - time in milliseconds the breaker stays open
+     */
+    CircuitBreaker(String endpointId, int threshold, long openDuration) {
+        this.endpointId = endpointId;
+        this.threshold = threshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Returns true if a request may be sent. In the half-open state only one trial
+     * request is allowed at a time.
+     */
+    public synchronized boolean allowRequest() {
+        if (threshold <= 0 || state == State.CLOSED) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (state == State.OPEN) {
+            if (now - openedAt < openDuration) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialStartedAt = now;
+            logger.info("├── 🔌 circuit breaker of endpoint '" + endpointId + "' is half-open");
+            return true;
+        }
+        // half-open: allow a new trial if the last one did not report back
+        if (now - trialStartedAt >= openDuration) {
+            trialStartedAt = now;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reports a successful request. Closes the breaker.
+     */
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            logger.info("├── ✅ circuit breaker of endpoint '" + endpointId + "' closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+    }
+
+    /**
+     * Reports a failed request. Opens the breaker if the threshold is reached or
+     * the trial request of the half-open state failed.
+     */
+    public synchronized void onFailure() {
+        if (threshold <= 0) {
+            return;
+        }
+        failures++;
+        if (state == State.HALF_OPEN || failures >= threshold) {
+            if (state != State.OPEN) {
+                logger.warning("├── ⚠️ circuit breaker of endpoint '" + endpointId + "' opened for "
+                        + openDuration + "ms after " + failures + " failure(s)");
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Opens the breaker immediately, e.g. if the health probe found no replica of
+     * the endpoint alive.
+     */
+    public synchronized void trip() {
+        if (threshold <= 0) {
+            return;
+        }
+        if (state != State.OPEN) {
+            logger.warning("├── ⚠️ circuit breaker of endpoint '" + endpointId + "' opened for "
+                    + openDuration + "ms - health probe failed");
+        }
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,291 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import jakarta.json.Json;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonGenerator;
+
+/**
+ * The CompletionCache stores completion results of a LLM endpoint by the hash
+ * of the request, so an identical prompt is not computed twice by the inference
+ * server.
+ * <p>
+ * The cache key is the SHA-256 hash of the endpoint id and the canonicalized
+ * request JSON (object keys sorted, the <code>stream</code> flag and the
+ * llama.cpp prompt cache parameters removed). Two
+ * requests with the same messages, tools and options therefore share one entry
+ * independent of the order of the JSON attributes.
+ * <p>
+ * Entries are held in memory in a LRU map bounded by
+ * <code>&lt;cache-size&gt;</code> and expire after
+ * <code>&lt;cache-ttl&gt;</code> milliseconds. If
+ * <code>&lt;cache-dir&gt;</code> is defined, entries are also written into this
+ * directory and survive a restart or an eviction from the memory tier.
+ * <p>
+ * Whether a request is cached is decided by the <code>&lt;cache&gt;</code> mode
+ * of the endpoint (see {@link LLMEndpoint#isCacheable(JsonObject, Boolean)}).
+ *
+ * @author rsoika
+ */
+public class CompletionCache {
+
+    private static final Logger logger = Logger.getLogger(CompletionCache.class.getName());
+
+    // request attributes not affecting the completion result
+    static final Set<String> TRANSPORT_KEYS = Set.of("stream", "cache_prompt", "id_slot");
+
+    private final String endpointId;
+    private final int maxEntries;
+    private final long ttl;
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param endpointId - logical endpoint id
+     * @param maxEntries - maximum number of entries held in memory
+     * @param ttl        - time to live of an entry in milliseconds, 0 = no expiry
+     * @param directory  - optional directory of the disk tier, can be null
+     */
+    CompletionCache(String endpointId, int maxEntries, long ttl, Path directory) {
+        this.endpointId = endpointId;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.directory = directory;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > CompletionCache.this.maxEntries;
+            }
+        };
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                logger.warning("├── ⚠️ cannot create cache directory '" + directory + "' for endpoint '"
+                        + endpointId + "': " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the cached completion result for the given key, or null if no valid
+     * entry exists.
+     *
+     * @param key - a key created by {@link #createKey(String, JsonObject)}
+     * @return the completion result or null
+     */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    return entry.value;
+                }
+                entries.remove(key);
+            }
+        }
+        if (directory == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + ".json");
+        try {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            long expiresAt = expiresAt(Files.getLastModifiedTime(file).toMillis());
+            if (expiresAt <= now) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            String value = Files.readString(file, StandardCharsets.UTF_8);
+            synchronized (entries) {
+                entries.put(key, new Entry(value, expiresAt));
+            }
+            return value;
+        } catch (IOException e) {
+            logger.warning("├── ⚠️ cannot read cache entry of endpoint '" + endpointId + "': " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a completion result.
+     *
+     * @param key   - a key created by {@link #createKey(String, JsonObject)}
+     * @param value - the completion result
+     */
+    public void put(String key, String value) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.put(key, new Entry(value, expiresAt(now)));
+        }
+        if (directory == null) {
+            return;
+        }
+        try {
+            // write to a temp file first so a reader never sees a partial entry
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.writeString(tmp, value, StandardCharsets.UTF_8);
+            Files.move(tmp, directory.resolve(key + ".json"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("├── ⚠️ cannot write cache entry of endpoint '" + endpointId + "': " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of entries in the memory tier.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private long expiresAt(long created) {
+        return ttl > 0 ? created + ttl : Long.MAX_VALUE;
+    }
+
+    /**
+     * Creates the cache key of a completion request. The key is the hex encoded
+     * SHA-256 hash of the endpoint id and the canonical form of the request. The
+     * canonical form is written directly into the digest, so a large prompt is not
+     * copied into a string.
+     *
+     * @param endpointId - logical endpoint id
+     * @param request    - the completion request
+     * @return the cache key
+     */
+    public static String createKey(String endpointId, JsonObject request) {
+        return sha256(out -> {
+            out.write(endpointId);
+            out.write('\n');
+            canonicalize(request, out, true);
+        });
+    }
+
+    /**
+     * Writes the content of a cache key.
+     */
+    @FunctionalInterface
+    interface KeyContent {
+        void write(Writer out) throws IOException;
+    }
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the UTF-8 encoded content. The
+     * content is streamed into the digest.
+     */
+    static String sha256(KeyContent content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (Writer out = new OutputStreamWriter(
+                    new DigestOutputStream(OutputStream.nullOutputStream(), digest), StandardCharsets.UTF_8)) {
+                content.write(out);
+            }
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            // SHA-256 is supported by every JVM and the null stream does not fail
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Returns true if the request is deterministic - the temperature is 0 and the
+     * LLM always predicts the same result for the same prompt.
+     *
+     * @param request - the completion request
+     */
+    public static boolean isDeterministic(JsonObject request) {
+        JsonValue temperature = request.get("temperature");
+        return temperature instanceof JsonNumber && ((JsonNumber) temperature).doubleValue() == 0;
+    }
+
+    /**
+     * Writes a JSON value with sorted object keys. The transport parameters of the
+     * root object (see {@link #TRANSPORT_KEYS}) are skipped because they do not
+     * change the result.
+     */
+    static void canonicalize(JsonValue value, Writer out, boolean root) {
+        JsonGenerator generator = Json.createGenerator(out);
+        canonicalize(value, generator, root);
+        // flush only - the writer is owned by the caller
+        generator.flush();
+    }
+
+    private static void canonicalize(JsonValue value, JsonGenerator out, boolean root) {
+        switch (value.getValueType()) {
+        case OBJECT:
+            JsonObject object = value.asJsonObject();
+            out.writeStartObject();
+            for (String key : new TreeSet<>(object.keySet())) {
+                if (root && TRANSPORT_KEYS.contains(key)) {
+                    continue;
+                }
+                out.writeKey(key);
+                canonicalize(object.get(key), out, false);
+            }
+            out.writeEnd();
+            break;
+        case ARRAY:
+            out.writeStartArray();
+            for (JsonValue item : value.asJsonArray()) {
+                canonicalize(item, out, false);
+            }
+            out.writeEnd();
+            break;
+        default:
+            out.write(value);
+        }
+    }
+
+    private static class Entry {
+        final String value;
+        final long expiresAt;
+
+        Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.StringReader;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+
+/**
+ * The CompletionResult holds the parts of a completion result needed by the
+ * {@link OpenAIAPIService}: the message content, the finish reason, the tool
+ * calls, the model and the {@link CompletionUsage}.
+ * <p>
+ * The result is read by a single {@link JsonParser} pass. Only the first choice,
+ * the tool calls and the usage objects are materialized, all other parts of the
+ * response are skipped without building a JSON object model.
+ * <p>
+ * A completion result is typically evaluated several times - for the metrics,
+ * by <code>processToolCallResult</code> and by
+ * <code>processPromptResult</code>. The {@link OpenAIAPIService} therefore
+ * parses each response once and passes the CompletionResult to all consumers.
+ * The original JSON String is kept for the completion cache and for callers
+ * expecting the raw result.
+ *
+ * @author rsoika
+ */
+public class CompletionResult {
+
+    private final String json;
+    private String model = null;
+    private String role = null;
+    private String content = null;
+    private String legacyContent = null;
+    private String finishReason = null;
+    private JsonArray toolCalls = null;
+    private CompletionUsage usage = null;
+
+    private CompletionResult(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Returns the completion result as received from the server.
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Returns the message content of the first choice. For backward compatibility
+     * the content of the old llama.cpp format (<code>{"content": "..."}</code>) is
+     * returned if the result has no choices.
+     *
+     * @return the content or null if the result has no content (e.g. a tool call)
+     */
+    public String getContent() {
+        return content != null ? content : legacyContent;
+    }
+
+    /**
+     * Returns the model reported by the server, or null.
+     */
+    public String getModel() {
+        return model;
+    }
+
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    /**
+     * Returns the tool calls of the assistant message, or null.
+     */
+    public JsonArray getToolCalls() {
+        return toolCalls;
+    }
+
+    /**
+     * Returns true if the LLM requested tool calls
+     * (<code>finish_reason=tool_calls</code>).
+     */
+    public boolean hasToolCalls() {
+        return "tool_calls".equals(finishReason) && toolCalls != null && !toolCalls.isEmpty();
+    }
+
+    /**
+     * Returns the assistant message with the tool calls, to be added to the
+     * context so the LLM knows what it requested.
+     */
+    public JsonObject getToolCallMessage() {
+        JsonObjectBuilder builder = Json.createObjectBuilder().add("role", role != null ? role : "assistant");
+        if (content != null) {
+            builder.add("content", content);
+        } else {
+            builder.add("content", JsonValue.NULL);
+        }
+        if (toolCalls != null) {
+            builder.add("tool_calls", toolCalls);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the token usage, or null if the result has no usage information.
+     */
+    public CompletionUsage getUsage() {
+        return usage;
+    }
+
+    /**
+     * Parses a completion result in a single pass.
+     *
+     * @param json           - the completion result
+     * @param durationMillis - the request duration, used for the generation speed
+     *                       if the server does not report it
+     * @return the parsed result
+     * @throws JsonException if the result is not a JSON object
+     */
+    public static CompletionResult parse(String json, long durationMillis) {
+        CompletionResult result = new CompletionResult(json);
+        JsonObject usage = null;
+        JsonObject timings = null;
+        try (JsonParser parser = Json.createParser(new StringReader(json))) {
+            if (!parser.hasNext() || parser.next() != Event.START_OBJECT) {
+                throw new JsonException("Completion result is not a JSON object");
+            }
+            while (parser.next() == Event.KEY_NAME) {
+                String key = parser.getString();
+                Event event = parser.next();
+                if ("choices".equals(key) && event == Event.START_ARRAY) {
+                    result.readChoices(parser);
+                } else if ("usage".equals(key) && event == Event.START_OBJECT) {
+                    usage = parser.getObject();
+                } else if ("timings".equals(key) && event == Event.START_OBJECT) {
+                    timings = parser.getObject();
+                } else if ("content".equals(key) && event == Event.VALUE_STRING) {
+                    result.legacyContent = parser.getString();
+                } else if ("model".equals(key) && event == Event.VALUE_STRING) {
+                    result.model = parser.getString();
+                } else {
+                    skip(parser, event);
+                }
+            }
+        }
+        result.usage = CompletionUsage.parse(usage, timings, durationMillis);
+        return result;
+    }
+
+    /**
+     * Reads the first choice and skips all others.
+     */
+    private void readChoices(JsonParser parser) {
+        boolean first = true;
+        Event event;
+        while ((event = parser.next()) != Event.END_ARRAY) {
+            if (first && event == Event.START_OBJECT) {
+                readChoice(parser);
+            } else {
+                skip(parser, event);
+            }
+            first = false;
+        }
+    }
+
+    private void readChoice(JsonParser parser) {
+        while (parser.next() == Event.KEY_NAME) {
+            String key = parser.getString();
+            Event event = parser.next();
+            if ("message".equals(key) && event == Event.START_OBJECT) {
+                readMessage(parser);
+            } else if ("finish_reason".equals(key) && event == Event.VALUE_STRING) {
+                finishReason = parser.getString();
+            } else {
+                skip(parser, event);
+            }
+        }
+    }
+
+    private void readMessage(JsonParser parser) {
+        while (parser.next() == Event.KEY_NAME) {
+            String key = parser.getString();
+            Event event = parser.next();
+            if ("content".equals(key) && event == Event.VALUE_STRING) {
+                content = parser.getString();
+            } else if ("role".equals(key) && event == Event.VALUE_STRING) {
+                role = parser.getString();
+            } else if ("tool_calls".equals(key) && event == Event.START_ARRAY) {
+                toolCalls = parser.getArray();
+            } else {
+                skip(parser, event);
+            }
+        }
+    }
+
+    /**
+     * Skips the value of the current event.
+     */
+    private static void skip(JsonParser parser, Event event) {
+        if (event == Event.START_OBJECT) {
+            parser.skipObject();
+        } else if (event == Event.START_ARRAY) {
+            parser.skipArray();
+        }
+    }
+}
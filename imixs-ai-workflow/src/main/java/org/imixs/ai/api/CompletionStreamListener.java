@@ -0,0 +1,67 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import jakarta.json.JsonObject;
+
+/**
+ * A CompletionStreamListener receives the incremental result of a streamed
+ * chat completion (Server-Sent-Events, <code>"stream": true</code>).
+ * <p>
+ * The listener is called on the thread reading the HTTP response. Content
+ * deltas arrive in the order sent by the LLM, so a UI can display the first
+ * tokens while the generation is still running.
+ * <p>
+ * See {@link OpenAIAPIService#postPromptCompletion(org.imixs.ai.ImixsAIContextHandler, String, CompletionStreamListener, boolean)}
+ *
+ * @author rsoika
+ */
+public interface CompletionStreamListener {
+
+    /**
+     * Called for each non-empty content delta
+     * (<code>choices[0].delta.content</code>).
+     *
+     * @param content - the text fragment
+     */
+    void onContent(String content);
+
+    /**
+     * Called for each tool call fragment (<code>choices[0].delta.tool_calls</code>).
+     * The fragments are assembled by the {@link CompletionStreamParser}, so most
+     * listeners can ignore this callback.
+     *
+     * @param toolCallDelta - the raw tool call delta object
+     */
+    default void onToolCallDelta(JsonObject toolCallDelta) {
+    }
+
+    /**
+     * Called once after the stream was completed.
+     *
+     * @param completion - the assembled completion in the non-streaming
+     *                   <code>chat.completion</code> format
+     */
+    default void onComplete(String completion) {
+    }
+
+    /**
+     * Called if the stream failed.
+     *
+     * @param error - the cause
+     */
+    default void onError(Throwable error) {
+    }
+}
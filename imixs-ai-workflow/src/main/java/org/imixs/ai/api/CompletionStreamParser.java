@@ -0,0 +1,290 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParsingException;
+
+/**
+ * The CompletionStreamParser parses a Server-Sent-Events stream of a chat
+ * completion request with <code>"stream": true</code>.
+ * <p>
+ * Each <code>data:</code> line holds a <code>chat.completion.chunk</code>
+ * object. The parser assembles the fragments of
+ * <code>choices[0].delta.content</code> and
+ * <code>choices[0].delta.tool_calls</code> incrementally and forwards content
+ * deltas to an optional {@link CompletionStreamListener}. The stream ends with
+ * the line <code>data: [DONE]</code>.
+ * <p>
+ * After the stream was consumed, the method {@link #toCompletionJson()} returns
+ * the result in the non-streaming <code>chat.completion</code> format. This
+ * allows to process a streamed result with the same methods as a blocking
+ * completion result.
+ * <p>
+ * A parser instance is not thread-safe and must only be used for one stream.
+ *
+ * @author rsoika
+ */
+public class CompletionStreamParser {
+
+    private static final Logger logger = Logger.getLogger(CompletionStreamParser.class.getName());
+
+    public static final String DATA_PREFIX = "data:";
+    public static final String DONE = "[DONE]";
+
+    private final CompletionStreamListener listener;
+    private final StringBuilder content = new StringBuilder();
+    private final Map<Integer, ToolCallFragment> toolCalls = new TreeMap<>();
+    private String id = null;
+    private String model = null;
+    private String role = "assistant";
+    private String finishReason = null;
+    private JsonObject usage = null;
+    private JsonObject timings = null;
+    private JsonObject error = null;
+    private boolean done = false;
+
+    public CompletionStreamParser() {
+        this(null);
+    }
+
+    public CompletionStreamParser(CompletionStreamListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Processes one line of the event stream. Empty lines, comments and event
+     * fields other than <code>data:</code> are ignored.
+     *
+     * @param line - a raw line of the response body
+     * @return false if the stream signaled its end or an error, otherwise true
+     */
+    public boolean accept(String line) {
+        if (done || line == null || !line.startsWith(DATA_PREFIX)) {
+            return !done;
+        }
+        String data = line.substring(DATA_PREFIX.length()).trim();
+        if (data.isEmpty()) {
+            return true;
+        }
+        if (DONE.equals(data)) {
+            done = true;
+            return false;
+        }
+        JsonObject chunk;
+        try (JsonReader reader = Json.createReader(new StringReader(data))) {
+            chunk = reader.readObject();
+        } catch (JsonParsingException e) {
+            logger.warning("├── ⚠️ invalid stream chunk ignored: " + e.getMessage());
+            return true;
+        }
+        if (chunk.containsKey("error")) {
+            JsonValue errorValue = chunk.get("error");
+            error = errorValue.getValueType() == JsonValue.ValueType.OBJECT ? (JsonObject) errorValue
+                    : Json.createObjectBuilder().add("message", errorValue.toString()).build();
+            done = true;
+            return false;
+        }
+        processChunk(chunk);
+        return true;
+    }
+
+    /**
+     * Returns true if the stream signaled its end by <code>[DONE]</code> or an
+     * error.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns the error object sent by the server, or null.
+     */
+    public JsonObject getError() {
+        return error;
+    }
+
+    /**
+     * Returns the assembled text content so far.
+     */
+    public String getContent() {
+        return content.toString();
+    }
+
+    /**
+     * Returns the finish reason of the stream, or null if not yet received.
+     */
+    public String getFinishReason() {
+        return finishReason;
+    }
+
+    /**
+     * Builds the assembled result in the format of a non-streaming
+     * <code>chat.completion</code> response.
+     *
+     * @return the completion result as a JSON string
+     */
+    public String toCompletionJson() {
+        JsonObjectBuilder message = Json.createObjectBuilder();
+        message.add("role", role);
+        if (toolCalls.isEmpty() || content.length() > 0) {
+            message.add("content", content.toString());
+        } else {
+            message.add("content", JsonValue.NULL);
+        }
+        if (!toolCalls.isEmpty()) {
+            JsonArrayBuilder toolCallArray = Json.createArrayBuilder();
+            for (ToolCallFragment fragment : toolCalls.values()) {
+                toolCallArray.add(fragment.toJson());
+            }
+            message.add("tool_calls", toolCallArray);
+        }
+
+        JsonObjectBuilder choice = Json.createObjectBuilder();
+        choice.add("index", 0);
+        choice.add("message", message);
+        if (finishReason != null) {
+            choice.add("finish_reason", finishReason);
+        } else {
+            choice.add("finish_reason", JsonValue.NULL);
+        }
+
+        JsonObjectBuilder result = Json.createObjectBuilder();
+        if (id != null) {
+            result.add("id", id);
+        }
+        result.add("object", "chat.completion");
+        if (model != null) {
+            result.add("model", model);
+        }
+        result.add("choices", Json.createArrayBuilder().add(choice));
+        if (usage != null) {
+            result.add("usage", usage);
+        }
+        if (timings != null) {
+            result.add("timings", timings);
+        }
+        return result.build().toString();
+    }
+
+    /**
+     * Applies a single chat.completion.chunk object.
+     */
+    private void processChunk(JsonObject chunk) {
+        if (id == null && chunk.containsKey("id") && !chunk.isNull("id")) {
+            id = chunk.getString("id", null);
+        }
+        if (model == null && chunk.containsKey("model") && !chunk.isNull("model")) {
+            model = chunk.getString("model", null);
+        }
+        if (chunk.containsKey("usage") && chunk.get("usage").getValueType() == JsonValue.ValueType.OBJECT) {
+            usage = chunk.getJsonObject("usage");
+        }
+        if (chunk.containsKey("timings") && chunk.get("timings").getValueType() == JsonValue.ValueType.OBJECT) {
+            timings = chunk.getJsonObject("timings");
+        }
+        JsonArray choices = chunk.containsKey("choices")
+                && chunk.get("choices").getValueType() == JsonValue.ValueType.ARRAY
+                        ? chunk.getJsonArray("choices")
+                        : null;
+        if (choices == null || choices.isEmpty()) {
+            return;
+        }
+        JsonObject choice = choices.getJsonObject(0);
+        if (choice.containsKey("finish_reason") && !choice.isNull("finish_reason")) {
+            finishReason = choice.getString("finish_reason");
+        }
+        if (!choice.containsKey("delta") || choice.isNull("delta")) {
+            return;
+        }
+        JsonObject delta = choice.getJsonObject("delta");
+        if (delta.containsKey("role") && !delta.isNull("role")) {
+            role = delta.getString("role");
+        }
+        if (delta.containsKey("content") && !delta.isNull("content")) {
+            String fragment = delta.getString("content");
+            if (!fragment.isEmpty()) {
+                content.append(fragment);
+                if (listener != null) {
+                    listener.onContent(fragment);
+                }
+            }
+        }
+        if (delta.containsKey("tool_calls") && !delta.isNull("tool_calls")) {
+            JsonArray deltaToolCalls = delta.getJsonArray("tool_calls");
+            for (int i = 0; i < deltaToolCalls.size(); i++) {
+                JsonObject toolCallDelta = deltaToolCalls.getJsonObject(i);
+                int index = toolCallDelta.getInt("index", i);
+                toolCalls.computeIfAbsent(index, k -> new ToolCallFragment()).append(toolCallDelta);
+                if (listener != null) {
+                    listener.onToolCallDelta(toolCallDelta);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the fragments of a single tool call. The id, type and function
+     * name are sent once, the arguments are sent as string fragments.
+     */
+    private static class ToolCallFragment {
+        private String id = null;
+        private String type = "function";
+        private String name = null;
+        private final StringBuilder arguments = new StringBuilder();
+
+        void append(JsonObject delta) {
+            if (delta.containsKey("id") && !delta.isNull("id")) {
+                id = delta.getString("id");
+            }
+            if (delta.containsKey("type") && !delta.isNull("type")) {
+                type = delta.getString("type");
+            }
+            if (delta.containsKey("function") && !delta.isNull("function")) {
+                JsonObject function = delta.getJsonObject("function");
+                if (function.containsKey("name") && !function.isNull("name")) {
+                    name = function.getString("name");
+                }
+                if (function.containsKey("arguments") && !function.isNull("arguments")) {
+                    arguments.append(function.getString("arguments"));
+                }
+            }
+        }
+
+        JsonObject toJson() {
+            JsonObjectBuilder function = Json.createObjectBuilder();
+            function.add("name", name != null ? name : "");
+            function.add("arguments", arguments.toString());
+            JsonObjectBuilder builder = Json.createObjectBuilder();
+            if (id != null) {
+                builder.add("id", id);
+            }
+            builder.add("type", type);
+            builder.add("function", function);
+            return builder.build();
+        }
+    }
+}
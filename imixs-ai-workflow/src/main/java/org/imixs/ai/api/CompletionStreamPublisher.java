@@ -0,0 +1,53 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * A {@link Flow.Publisher} adapter for streamed chat completions. Each content
+ * delta is published as one item. The publisher is closed when the stream
+ * completes and closed exceptionally if the stream fails.
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * {@code
+ * CompletionStreamPublisher publisher = new CompletionStreamPublisher();
+ * publisher.subscribe(mySubscriber);
+ * openAIAPIService.postPromptCompletion(contextHandler, endpoint, publisher, false);
+ * }
+ * </pre>
+ *
+ * @author rsoika
+ */
+public class CompletionStreamPublisher extends SubmissionPublisher<String> implements CompletionStreamListener {
+
+    @Override
+    public void onContent(String content) {
+        submit(content);
+    }
+
+    @Override
+    public void onComplete(String completion) {
+        close();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        closeExceptionally(error);
+    }
+}
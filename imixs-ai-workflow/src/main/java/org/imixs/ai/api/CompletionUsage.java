@@ -0,0 +1,109 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+
+/**
+ * The CompletionUsage holds the token counts and the generation speed of a
+ * completion result.
+ * <p>
+ * The values are read from the <code>usage</code> object of the OpenAI API
+ * (<code>prompt_tokens</code>, <code>completion_tokens</code>) and the
+ * <code>timings</code> object of the llama.cpp server
+ * (<code>prompt_n</code>, <code>predicted_n</code>,
+ * <code>predicted_per_second</code>). If the server does not report the
+ * generation speed, it is computed from the request duration.
+ *
+ * @author rsoika
+ */
+public class CompletionUsage {
+
+    private final int promptTokens;
+    private final int completionTokens;
+    private final double tokensPerSecond;
+
+    public CompletionUsage(int promptTokens, int completionTokens, double tokensPerSecond) {
+        this.promptTokens = promptTokens;
+        this.completionTokens = completionTokens;
+        this.tokensPerSecond = tokensPerSecond;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCompletionTokens() {
+        return completionTokens;
+    }
+
+    /**
+     * Returns the number of generated tokens per second, or 0 if unknown.
+     */
+    public double getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    /**
+     * Reads the usage of a completion result.
+     *
+     * @param completion     - the completion result object
+     * @param durationMillis - the request duration, used if the server does not
+     *                       report the generation speed
+     * @return the usage or null if the result has no usage information
+     */
+    public static CompletionUsage parse(JsonObject completion, long durationMillis) {
+        return parse(getObject(completion, "usage"), getObject(completion, "timings"), durationMillis);
+    }
+
+    /**
+     * Reads the usage from the <code>usage</code> and <code>timings</code>
+     * objects of a completion result.
+     *
+     * @param usage          - the usage object, can be null
+     * @param timings        - the llama.cpp timings object, can be null
+     * @param durationMillis - the request duration, used if the server does not
+     *                       report the generation speed
+     * @return the usage or null if both objects are null
+     */
+    public static CompletionUsage parse(JsonObject usage, JsonObject timings, long durationMillis) {
+        if (usage == null && timings == null) {
+            return null;
+        }
+        int promptTokens = getInt(usage, "prompt_tokens", getInt(timings, "prompt_n", 0));
+        int completionTokens = getInt(usage, "completion_tokens", getInt(timings, "predicted_n", 0));
+        double tokensPerSecond = 0;
+        if (timings != null && timings.get("predicted_per_second") instanceof JsonNumber) {
+            tokensPerSecond = timings.getJsonNumber("predicted_per_second").doubleValue();
+        } else if (durationMillis > 0) {
+            tokensPerSecond = completionTokens * 1000.0 / durationMillis;
+        }
+        return new CompletionUsage(promptTokens, completionTokens, tokensPerSecond);
+    }
+
+    private static JsonObject getObject(JsonObject object, String key) {
+        JsonValue value = object.get(key);
+        return value instanceof JsonObject ? (JsonObject) value : null;
+    }
+
+    private static int getInt(JsonObject object, String key, int defaultValue) {
+        if (object == null || !(object.get(key) instanceof JsonNumber)) {
+            return defaultValue;
+        }
+        return object.getJsonNumber(key).intValue();
+    }
+}
@@ -0,0 +1,256 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * The EmbeddingCache stores the embedding vectors of text chunks computed by a
+ * LLM endpoint, so an unchanged chunk is not embedded again when a workitem is
+ * re-indexed.
+ * <p>
+ * The cache key is the SHA-256 hash of the endpoint id, the embedding options
+ * (including the model) and the chunk text. Vectors are held in memory in a
+ * LRU map bounded by <code>&lt;embedding-cache-size&gt;</code>. If
+ * <code>&lt;embedding-cache-dir&gt;</code> is defined, vectors are also written
+ * as binary files into this directory and survive a restart.
+ * <p>
+ * Each vector is stored together with the model and the vector dimension
+ * reported by the server. If the server answers with another model or
+ * dimension - e.g. after the model of the endpoint was swapped - the memory
+ * tier is cleared and entries of the old model are discarded on read. As the
+ * model served by the endpoint is only known from its responses, the disk tier
+ * is used after the first embedding request since the start.
+ * <p>
+ * Embeddings are deterministic, so entries do not expire.
+ *
+ * @author rsoika
+ */
+public class EmbeddingCache {
+
+    private static final Logger logger = Logger.getLogger(EmbeddingCache.class.getName());
+
+    private final String endpointId;
+    private final int maxEntries;
+    private final Path directory;
+    private final LinkedHashMap<String, Entry> entries;
+    // model and dimension of the last server response, null if not yet known
+    private String model;
+
+    /**
+     * @param endpointId - logical endpoint id
+     * @param maxEntries - maximum number of vectors held in memory
+     * @param directory  - optional directory of the disk tier, can be null
+     */
+    EmbeddingCache(String endpointId, int maxEntries, Path directory) {
+        this.endpointId = endpointId;
+        this.maxEntries = maxEntries;
+        this.directory = directory;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > EmbeddingCache.this.maxEntries;
+            }
+        };
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                logger.warning("├── ⚠️ cannot create embedding cache directory '" + directory
+                        + "' for endpoint '" + endpointId + "': " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns the cached vector for the given key, or null if not cached or if
+     * the vector was computed by another model than the one currently served by
+     * the endpoint.
+     *
+     * @param key - a key created by {@link #createKey(String, LLMOptions, String)}
+     * @return the vector or null
+     */
+    public float[] get(String key) {
+        String current;
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.model.equals(model)) {
+                return entry.vector;
+            }
+            current = model;
+        }
+        if (directory == null || current == null) {
+            return null;
+        }
+        Path file = directory.resolve(key + ".bin");
+        try {
+            if (!Files.isRegularFile(file)) {
+                return null;
+            }
+            Entry entry = read(Files.readAllBytes(file));
+            if (entry == null || !entry.model.equals(current)) {
+                // computed by another model
+                Files.deleteIfExists(file);
+                return null;
+            }
+            synchronized (entries) {
+                entries.put(key, entry);
+            }
+            return entry.vector;
+        } catch (IOException e) {
+            logger.warning("├── ⚠️ cannot read embedding cache entry of endpoint '" + endpointId + "': "
+                    + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores a vector computed by an unnamed model.
+     *
+     * @param key    - a key created by
+     *               {@link #createKey(String, LLMOptions, String)}
+     * @param vector - the embedding vector
+     */
+    public void put(String key, float[] vector) {
+        put(key, vector, null);
+    }
+
+    /**
+     * Stores a vector. If the model or the dimension differ from the last
+     * response of the server, the vectors of the previous model are discarded.
+     *
+     * @param key    - a key created by
+     *               {@link #createKey(String, LLMOptions, String)}
+     * @param vector - the embedding vector
+     * @param model  - the model reported by the server, can be null
+     */
+    public void put(String key, float[] vector, String model) {
+        if (vector.length == 0) {
+            // no vector in the response
+            return;
+        }
+        Entry entry = new Entry((model == null ? "" : model) + "/" + vector.length, vector);
+        synchronized (entries) {
+            if (!entry.model.equals(this.model)) {
+                if (this.model != null) {
+                    logger.warning("├── ⚠️ embedding model of endpoint '" + endpointId + "' changed from '"
+                            + this.model + "' to '" + entry.model + "' - discarding cached vectors");
+                }
+                entries.clear();
+                this.model = entry.model;
+            }
+            entries.put(key, entry);
+        }
+        if (directory == null) {
+            return;
+        }
+        try {
+            // write to a temp file first so a reader never sees a partial entry
+            Path tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, write(entry));
+            Files.move(tmp, directory.resolve(key + ".bin"), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warning("├── ⚠️ cannot write embedding cache entry of endpoint '" + endpointId + "': "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the number of vectors in the memory tier.
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Creates the cache key of a text chunk. The key is the hex encoded SHA-256
+     * hash of the endpoint id, the canonical form of the options and the text.
+     *
+     * @param endpointId - logical endpoint id
+     * @param options    - the embedding options, can be null
+     * @param text       - the chunk text
+     * @return the cache key
+     */
+    public static String createKey(String endpointId, LLMOptions options, String text) {
+        return CompletionCache.sha256(out -> {
+            out.write(endpointId);
+            out.write('\n');
+            if (options != null && !options.isEmpty()) {
+                CompletionCache.canonicalize(options.toJson(), out, false);
+            }
+            out.write('\n');
+            out.write(text);
+        });
+    }
+
+    /**
+     * Encodes an entry of the disk tier: the length of the model, the model and
+     * the vector.
+     */
+    private static byte[] write(Entry entry) {
+        byte[] model = entry.model.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + model.length + entry.vector.length * Float.BYTES);
+        buffer.putInt(model.length).put(model);
+        buffer.asFloatBuffer().put(entry.vector);
+        return buffer.array();
+    }
+
+    /**
+     * Decodes an entry of the disk tier, or returns null if the data is invalid.
+     */
+    private static Entry read(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                return null;
+            }
+            byte[] model = new byte[length];
+            buffer.get(model);
+            float[] vector = new float[buffer.remaining() / Float.BYTES];
+            buffer.asFloatBuffer().get(vector);
+            return new Entry(new String(model, StandardCharsets.UTF_8), vector);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A vector and the model and dimension it was computed by.
+     */
+    private static class Entry {
+        final String model;
+        final float[] vector;
+
+        Entry(String model, float[] vector) {
+            this.model = model;
+            this.vector = vector;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonParser;
+import jakarta.json.stream.JsonParser.Event;
+
+/**
+ * The EmbeddingResponseParser extracts the embedding vectors of a
+ * <code>/v1/embeddings</code> response in a single streaming pass.
+ * <p>
+ * The numbers are read by a {@link JsonParser} directly into primitive
+ * <code>float[]</code> arrays. No JSON object tree and no boxed
+ * <code>Float</code> objects are created, which matters for high dimensional
+ * vectors and batch requests.
+ * <p>
+ * Two response formats are supported:
+ * <ul>
+ * <li>llama.cpp: <code>[{"index":0,"embedding":[[0.1,...]]}, ...]</code></li>
+ * <li>OpenAI: <code>{"data":[{"index":0,"embedding":[0.1,...]}, ...]}</code></li>
+ * </ul>
+ * The vectors are returned in the order of their <code>index</code> field. The
+ * <code>model</code> of an OpenAI response can be read by a listener.
+ *
+ * @author rsoika
+ */
+public class EmbeddingResponseParser {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private EmbeddingResponseParser() {
+    }
+
+    /**
+     * Parses an embedding response.
+     *
+     * @param is - the response body
+     * @return list of vectors, ordered by index
+     */
+    public static List<float[]> parse(InputStream is) {
+        return parse(is, null);
+    }
+
+    /**
+     * Parses an embedding response and reports the model of the response.
+     *
+     * @param is            - the response body
+     * @param modelListener - receives the model of the response, can be null
+     * @return list of vectors, ordered by index
+     */
+    public static List<float[]> parse(InputStream is, Consumer<String> modelListener) {
+        List<IndexedVector> vectors = new ArrayList<>();
+        try (JsonParser parser = Json.createParser(is)) {
+            int depth = 0;
+            int itemDepth = -1;
+            int index = -1;
+            float[] vector = null;
+            String key = null;
+            while (parser.hasNext()) {
+                Event event = parser.next();
+                switch (event) {
+                case START_OBJECT:
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    if (vector != null && depth == itemDepth) {
+                        vectors.add(new IndexedVector(index >= 0 ? index : vectors.size(), vector));
+                        vector = null;
+                        index = -1;
+                        itemDepth = -1;
+                    }
+                    depth--;
+                    break;
+                case KEY_NAME:
+                    key = parser.getString();
+                    if ("embedding".equals(key)) {
+                        vector = readVector(parser);
+                        itemDepth = depth;
+                        key = null;
+                    }
+                    break;
+                case VALUE_STRING:
+                    if ("model".equals(key) && depth == 1 && modelListener != null) {
+                        modelListener.accept(parser.getString());
+                    }
+                    key = null;
+                    break;
+                case VALUE_NUMBER:
+                    if ("index".equals(key) && (itemDepth < 0 || itemDepth == depth)) {
+                        index = parser.getInt();
+                    }
+                    key = null;
+                    break;
+                default:
+                    key = null;
+                    break;
+                }
+            }
+        }
+        vectors.sort(Comparator.comparingInt(v -> v.index));
+        List<float[]> result = new ArrayList<>(vectors.size());
+        for (IndexedVector v : vectors) {
+            result.add(v.vector);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the value of an embedding key into a float array. A nested array (as
+     * returned by llama.cpp) is unwrapped - only the first inner array is read.
+     */
+    private static float[] readVector(JsonParser parser) {
+        float[] buffer = new float[INITIAL_CAPACITY];
+        int size = 0;
+        if (parser.next() != Event.START_ARRAY) {
+            // e.g. base64 encoded embeddings are not supported
+            return new float[0];
+        }
+        boolean nested = false;
+        while (parser.hasNext()) {
+            Event event = parser.next();
+            if (event == Event.VALUE_NUMBER) {
+                if (size == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                buffer[size++] = Float.parseFloat(parser.getString());
+            } else if (event == Event.START_ARRAY) {
+                nested = true;
+            } else if (event == Event.END_ARRAY) {
+                if (nested) {
+                    // end of the first inner array - skip the rest of the outer array
+                    parser.skipArray();
+                }
+                break;
+            }
+        }
+        return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+    }
+
+    /**
+     * Vector with its position in the request.
+     */
+    private static class IndexedVector {
+        final int index;
+        final float[] vector;
+
+        IndexedVector(int index, float[] vector) {
+            this.index = index;
+            this.vector = vector;
+        }
+    }
+}
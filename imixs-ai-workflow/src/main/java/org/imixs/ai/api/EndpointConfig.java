@@ -0,0 +1,204 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+import java.util.logging.Logger;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
+import jakarta.json.stream.JsonParsingException;
+
+/**
+ * The EndpointConfig is the compiled, immutable form of an
+ * <code>&lt;endpoint&gt;</code> element of the <code>imixs-llm.xml</code>
+ * file.
+ * <p>
+ * The values of the direct child elements of the endpoint are read once with
+ * the <code>${env.VAR_NAME}</code> placeholders resolved, the numeric and
+ * boolean limits are parsed and validated once, and the JSON of the
+ * <code>&lt;options&gt;</code> element is parsed once. Invalid values are
+ * logged when the file is loaded and fall back to the defaults. The
+ * {@link LLMConfigService} holds the configs of all endpoints in a map which is
+ * replaced as a whole if the file is reloaded, so the lookups on the path of
+ * each LLM request neither walk the DOM nor parse numbers or JSON.
+ *
+ * @author rsoika
+ */
+public final class EndpointConfig {
+
+    private static final Logger logger = Logger.getLogger(EndpointConfig.class.getName());
+
+    // tags with an integer value
+    static final Set<String> INT_TAGS = Set.of("pool-size", "batch-size", "max-concurrent", "max-background",
+            "queue-size", "queue-timeout", "eject-after", "eject-duration", "retries", "retry-backoff",
+            "breaker-threshold", "breaker-timeout", "cache-size", "cache-ttl", "embedding-cache-size",
+            "context-size", "slots", "health-interval", "compaction-threshold", "compaction-window",
+            "compaction-tool-result");
+    // tags with a true/false value
+    static final Set<String> BOOLEAN_TAGS = Set.of("retry-completions", "cache-prompt", "single-flight");
+
+    private final String id;
+    // element values by tag name in document order
+    private final Map<String, List<String>> values;
+    private final Map<String, Integer> ints;
+    private final Map<String, Boolean> booleans;
+    private final JsonObject options;
+
+    private EndpointConfig(String id, Map<String, List<String>> values, Map<String, Integer> ints,
+            Map<String, Boolean> booleans, JsonObject options) {
+        this.id = id;
+        this.values = values;
+        this.ints = ints;
+        this.booleans = booleans;
+        this.options = options;
+    }
+
+    /**
+     * Compiles an &lt;endpoint&gt; element. Only the direct child elements are
+     * read, so the content of nested elements is not mistaken for a setting of
+     * the endpoint.
+     *
+     * @param endpoint - the endpoint element
+     * @param resolver - resolves the environment placeholders of a value
+     * @return the endpoint config
+     */
+    static EndpointConfig of(Element endpoint, UnaryOperator<String> resolver) {
+        String id = endpoint.getAttribute("id");
+        Map<String, List<String>> values = new LinkedHashMap<>();
+        NodeList nodes = endpoint.getChildNodes();
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Node node = nodes.item(i);
+            if (node.getNodeType() != Node.ELEMENT_NODE) {
+                continue;
+            }
+            String value = node.getTextContent();
+            if (value != null && !value.isBlank()) {
+                values.computeIfAbsent(((Element) node).getTagName(), tag -> new ArrayList<>())
+                        .add(resolver.apply(value.trim()));
+            }
+        }
+        values.replaceAll((tag, list) -> List.copyOf(list));
+        Map<String, Integer> ints = new LinkedHashMap<>();
+        Map<String, Boolean> booleans = new LinkedHashMap<>();
+        values.forEach((tag, list) -> {
+            String value = list.get(0);
+            if (INT_TAGS.contains(tag)) {
+                try {
+                    ints.put(tag, Integer.parseInt(value));
+                } catch (NumberFormatException e) {
+                    logger.warning("LLMConfigService: invalid <" + tag + "> value '" + value
+                            + "' for endpoint '" + id + "' – using default");
+                }
+            } else if (BOOLEAN_TAGS.contains(tag)) {
+                if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
+                    booleans.put(tag, Boolean.valueOf(value));
+                } else {
+                    logger.warning("LLMConfigService: invalid <" + tag + "> value '" + value
+                            + "' for endpoint '" + id + "' – using default");
+                }
+            }
+        });
+        JsonObject options = JsonValue.EMPTY_JSON_OBJECT;
+        List<String> optionValues = values.get("options");
+        if (optionValues != null) {
+            try (JsonReader reader = Json.createReader(new StringReader(optionValues.get(0)))) {
+                options = reader.readObject();
+            } catch (JsonParsingException e) {
+                logger.warning("LLMConfigService: invalid JSON in <options> for endpoint '"
+                        + id + "' – ignoring options. " + e.getMessage());
+            }
+        }
+        return new EndpointConfig(id, Collections.unmodifiableMap(values), Map.copyOf(ints),
+                Map.copyOf(booleans), options);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the value of the first element with the given tag name, or null if
+     * not defined.
+     */
+    public String getValue(String tagName) {
+        List<String> list = values.get(tagName);
+        return list == null ? null : list.get(0);
+    }
+
+    /**
+     * Returns the values of all elements with the given tag name, e.g. the
+     * &lt;url&gt; elements.
+     *
+     * @return unmodifiable list, empty if not defined
+     */
+    public List<String> getValues(String tagName) {
+        return values.getOrDefault(tagName, List.of());
+    }
+
+    /**
+     * Returns the parsed integer value of the given tag, or the default if the
+     * tag is not defined or its value is not a valid number.
+     */
+    public int getInt(String tagName, int defaultValue) {
+        Integer value = ints.get(tagName);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Returns the parsed boolean value of the given tag, or the default if the
+     * tag is not defined or its value is neither true nor false.
+     */
+    public boolean getBoolean(String tagName, boolean defaultValue) {
+        Boolean value = booleans.get(tagName);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Returns the parsed JSON of the &lt;options&gt; element, an empty object if
+     * not defined or invalid.
+     */
+    public JsonObject getOptions() {
+        return options;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof EndpointConfig)) {
+            return false;
+        }
+        EndpointConfig other = (EndpointConfig) obj;
+        return id.equals(other.id) && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, values);
+    }
+}
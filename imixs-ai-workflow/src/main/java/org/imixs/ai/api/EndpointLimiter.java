@@ -0,0 +1,315 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.imixs.workflow.exceptions.PluginException;
+
+/**
+ * The EndpointLimiter limits the number of in-flight requests against a single
+ * LLM endpoint.
+ * <p>
+ * A llama.cpp server processes a fixed number of requests in parallel (slots,
+ * option <code>-np</code>). Additional requests are queued by the limiter
+ * instead of piling up on the server. The wait queue is bounded and a waiting
+ * request fails after a queue timeout, so the caller gets a predictable answer
+ * instead of a server side timeout.
+ * <p>
+ * Requests are queued in two lanes by their {@link RequestPriority}. A free
+ * permit is always handed to a waiting interactive request first. Background
+ * requests only get the remaining capacity and are limited to
+ * <code>maxBackground</code> in-flight requests, so a bulk job leaves slots for
+ * interactive users.
+ * <p>
+ * Permits are handed out as futures, so an asynchronous caller never blocks a
+ * thread while waiting in the queue. Each successful acquire must be followed by
+ * exactly one {@link #release(RequestPriority)} with the same priority.
+ * <p>
+ * The limits are configured per endpoint in the <code>imixs-llm.xml</code>
+ * file:
+ *
+ * <pre>
+ * {@code
+ * <max-concurrent>4</max-concurrent>
+ * <max-background>3</max-background>
+ * <queue-size>32</queue-size>
+ * <queue-timeout>60000</queue-timeout>
+ * }
+ * </pre>
+ *
+ * A <code>max-concurrent</code> value of 0 disables the limit.
+ *
+ * @author rsoika
+ */
+public class EndpointLimiter {
+
+    private static final CompletableFuture<Void> GRANTED = CompletableFuture.completedFuture(null);
+
+    private final String endpointId;
+    private final int maxConcurrent;
+    private final int maxBackground;
+    private final int queueSize;
+    private final long queueTimeout;
+    private final Map<RequestPriority, Deque<CompletableFuture<Void>>> waiting = new EnumMap<>(
+            RequestPriority.class);
+    private int inFlight = 0;
+    private int backgroundInFlight = 0;
+
+    /**
+     * Creates a limiter without a separate limit for background requests.
+     *
+     * @param endpointId    - logical endpoint id
+     * @param maxConcurrent - max number of in-flight requests, 0 = unlimited
+     * @param queueSize     - max number of waiting requests
+     * @param queueTimeout  - max wait time in the queue in milliseconds
+     */
+    EndpointLimiter(String endpointId, int maxConcurrent, int queueSize, long queueTimeout) {
+        this(endpointId, maxConcurrent, maxConcurrent, queueSize, queueTimeout);
+    }
+
+    /**
+     * @param endpointId    - logical endpoint id
+     * @param maxConcurrent - max number of in-flight requests, 0 = unlimited
+     * @param maxBackground - max number of in-flight background requests
+     * @param queueSize     - max number of waiting requests
+     * @param queueTimeout  - max wait time in the queue in milliseconds
+     */
+    EndpointLimiter(String endpointId, int maxConcurrent, int maxBackground, int queueSize, long queueTimeout) {
+        this.endpointId = endpointId;
+        this.maxConcurrent = maxConcurrent;
+        this.maxBackground = Math.max(1, Math.min(maxBackground, maxConcurrent));
+        this.queueSize = queueSize;
+        this.queueTimeout = queueTimeout;
+        for (RequestPriority priority : RequestPriority.values()) {
+            waiting.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Requests a permit for an interactive request.
+     *
+     * @return a future completed when the request may be sent
+     */
+    public CompletableFuture<Void> acquire() {
+        return acquire(RequestPriority.INTERACTIVE);
+    }
+
+    /**
+     * Requests a permit. The returned future completes when the permit is granted,
+     * or completes exceptionally with a {@link PluginException}
+     * ({@link OpenAIAPIConnector#ERROR_ENDPOINT_BUSY}) if the queue is full or the
+     * queue timeout was exceeded.
+     * <p>
+     * A caller abandoning a waiting request must cancel the returned future. The
+     * request is removed from the queue, and a permit granted meanwhile is
+     * released again.
+     *
+     * @param priority - the priority of the request
+     * @return a future completed when the request may be sent
+     */
+    public CompletableFuture<Void> acquire(RequestPriority priority) {
+        CompletableFuture<Void> ticket;
+        Deque<CompletableFuture<Void>> lane = waiting.get(priority);
+        synchronized (this) {
+            if (maxConcurrent <= 0) {
+                grant(priority);
+                return GRANTED;
+            }
+            // a request never overtakes a waiting request of the same or a higher
+            // priority
+            boolean queued = !lane.isEmpty()
+                    || (priority == RequestPriority.BACKGROUND && !waiting.get(RequestPriority.INTERACTIVE).isEmpty());
+            if (!queued && canGrant(priority)) {
+                grant(priority);
+                return GRANTED;
+            }
+            if (getWaitingCount() >= queueSize) {
+                return CompletableFuture.failedFuture(busy("wait queue is full (" + queueSize + ")"));
+            }
+            ticket = new CompletableFuture<>();
+            lane.add(ticket);
+        }
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        ticket.orTimeout(queueTimeout, TimeUnit.MILLISECONDS).whenComplete((v, e) -> {
+            if (e != null) {
+                synchronized (this) {
+                    lane.remove(ticket);
+                }
+                result.completeExceptionally(busy("queue timeout of " + queueTimeout + "ms exceeded"));
+            } else if (!result.complete(null)) {
+                // the caller has abandoned the request - pass the permit on
+                release(priority);
+            }
+        });
+        result.whenComplete((v, e) -> {
+            if (e != null) {
+                // abandoned by the caller - removes the ticket from its lane
+                ticket.cancel(false);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Blocking variant of {@link #acquire()}.
+     *
+     * @throws PluginException if the queue is full or the queue timeout was
+     *                         exceeded
+     */
+    public void acquireBlocking() throws PluginException {
+        acquireBlocking(RequestPriority.INTERACTIVE);
+    }
+
+    /**
+     * Blocking variant of {@link #acquire(RequestPriority)}.
+     *
+     * @param priority - the priority of the request
+     * @throws PluginException if the queue is full or the queue timeout was
+     *                         exceeded
+     */
+    public void acquireBlocking(RequestPriority priority) throws PluginException {
+        CompletableFuture<Void> permit = acquire(priority);
+        try {
+            permit.get();
+        } catch (InterruptedException e) {
+            // leave the queue - a permit granted meanwhile is released
+            if (!permit.cancel(false) && !permit.isCompletedExceptionally()) {
+                release(priority);
+            }
+            Thread.currentThread().interrupt();
+            throw busy("interrupted while waiting for a free slot");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PluginException) {
+                throw (PluginException) e.getCause();
+            }
+            throw busy(e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the permit of an interactive request.
+     */
+    public void release() {
+        release(RequestPriority.INTERACTIVE);
+    }
+
+    /**
+     * Releases a permit. If requests are waiting, the free capacity is handed over
+     * to the oldest waiting interactive request, or to the oldest waiting
+     * background request if the background limit allows it.
+     *
+     * @param priority - the priority the permit was acquired with
+     */
+    public void release(RequestPriority priority) {
+        synchronized (this) {
+            if (inFlight > 0) {
+                inFlight--;
+            }
+            if (priority == RequestPriority.BACKGROUND && backgroundInFlight > 0) {
+                backgroundInFlight--;
+            }
+        }
+        while (true) {
+            CompletableFuture<Void> next = null;
+            RequestPriority nextPriority = null;
+            synchronized (this) {
+                for (RequestPriority candidate : RequestPriority.values()) {
+                    if (!waiting.get(candidate).isEmpty() && canGrant(candidate)) {
+                        next = waiting.get(candidate).poll();
+                        nextPriority = candidate;
+                        grant(candidate);
+                        break;
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            // hand over the permit - if the ticket has timed out meanwhile try the next
+            if (next.complete(null)) {
+                return;
+            }
+            synchronized (this) {
+                inFlight--;
+                if (nextPriority == RequestPriority.BACKGROUND) {
+                    backgroundInFlight--;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of requests currently in flight.
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Returns the number of background requests currently in flight.
+     */
+    public synchronized int getBackgroundInFlight() {
+        return backgroundInFlight;
+    }
+
+    /**
+     * Returns the number of requests currently waiting for a permit.
+     */
+    public synchronized int getWaiting() {
+        return getWaitingCount();
+    }
+
+    /**
+     * Returns the number of requests of the given priority waiting for a permit.
+     */
+    public synchronized int getWaiting(RequestPriority priority) {
+        return waiting.get(priority).size();
+    }
+
+    private int getWaitingCount() {
+        int count = 0;
+        for (Deque<CompletableFuture<Void>> lane : waiting.values()) {
+            count += lane.size();
+        }
+        return count;
+    }
+
+    private boolean canGrant(RequestPriority priority) {
+        if (inFlight >= maxConcurrent) {
+            return false;
+        }
+        return priority != RequestPriority.BACKGROUND || backgroundInFlight < maxBackground;
+    }
+
+    private void grant(RequestPriority priority) {
+        inFlight++;
+        if (priority == RequestPriority.BACKGROUND) {
+            backgroundInFlight++;
+        }
+    }
+
+    private PluginException busy(String reason) {
+        return new PluginException(EndpointLimiter.class.getSimpleName(),
+                OpenAIAPIConnector.ERROR_ENDPOINT_BUSY,
+                "LLM endpoint '" + endpointId + "' is busy - " + reason);
+    }
+}
@@ -0,0 +1,164 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * An EndpointReplica represents one <code>&lt;url&gt;</code> of a logical LLM
+ * endpoint. An endpoint can define several urls pointing to identical LLM
+ * servers (replicas).
+ * <p>
+ * The replica tracks the number of outstanding requests, used by the
+ * {@link LLMEndpoint} to balance the load (power-of-two-choices on least
+ * outstanding requests). In addition the replica implements a passive health
+ * check: after a number of consecutive failures (connection errors or HTTP
+ * 502/503/504) the replica is ejected for a period of time and not selected
+ * unless all replicas are ejected. If an active health probe is configured, a
+ * replica failing the probe is ejected until a following probe succeeds.
+ *
+ * @author rsoika
+ */
+public class EndpointReplica {
+
+    private static final Logger logger = Logger.getLogger(EndpointReplica.class.getName());
+
+    private final String url;
+    private final int ejectAfter;
+    private final long ejectDuration;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private int consecutiveFailures = 0;
+    private volatile long ejectedUntil = 0;
+    private volatile boolean probeFailed = false;
+    private volatile boolean warm = false;
+
+    /**
+     * @param url           - the base url of the replica
+     * @param ejectAfter    - number of consecutive failures before ejection
+     * @param ejectDuration - ejection time in milliseconds
+     */
+    EndpointReplica(String url, int ejectAfter, long ejectDuration) {
+        this.url = url.endsWith("/") ? url : url + "/";
+        this.ejectAfter = ejectAfter;
+        this.ejectDuration = ejectDuration;
+    }
+
+    /**
+     * Returns the base url, always ending with '/'.
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * Returns the number of requests currently sent to this replica.
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /**
+     * Returns true if the replica is not ejected.
+     */
+    public boolean isHealthy() {
+        return ejectedUntil <= System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the time until the replica is ejected, or 0.
+     */
+    public long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    /**
+     * Marks the start of a request.
+     */
+    void begin() {
+        outstanding.incrementAndGet();
+    }
+
+    /**
+     * Marks the end of a request.
+     */
+    void end() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Reports a successful response and resets the failure counter.
+     */
+    synchronized void success() {
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Reports a failed request. After the configured number of consecutive
+     * failures the replica is ejected.
+     */
+    synchronized void failure() {
+        consecutiveFailures++;
+        if (ejectAfter > 0 && consecutiveFailures >= ejectAfter) {
+            ejectedUntil = System.currentTimeMillis() + ejectDuration;
+            consecutiveFailures = 0;
+            logger.warning("├── ⚠️ LLM replica '" + url + "' ejected for " + ejectDuration + "ms");
+        }
+    }
+
+    /**
+     * Reports the result of an active health probe. A failed probe ejects the
+     * replica for the ejection time and marks its caches as cold. The next
+     * successful probe ends the ejection.
+     *
+     * @param alive - true if the replica answered the probe with HTTP 200
+     */
+    synchronized void probed(boolean alive) {
+        if (alive) {
+            if (probeFailed) {
+                ejectedUntil = 0;
+                consecutiveFailures = 0;
+                logger.info("├── ✅ LLM replica '" + url + "' is available again");
+            }
+            probeFailed = false;
+            return;
+        }
+        if (!probeFailed) {
+            logger.warning("├── ⚠️ LLM replica '" + url + "' failed the health probe");
+        }
+        probeFailed = true;
+        warm = false;
+        ejectedUntil = System.currentTimeMillis() + ejectDuration;
+    }
+
+    /**
+     * Returns true if the replica has processed the warm-up requests since it
+     * became available.
+     */
+    public boolean isWarm() {
+        return warm;
+    }
+
+    void setWarm(boolean warm) {
+        this.warm = warm;
+    }
+
+    /**
+     * Returns true if the given HTTP status indicates an unavailable replica.
+     */
+    static boolean isFailureStatus(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+}
@@ -0,0 +1,124 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.io.OutputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import jakarta.json.Json;
+import jakarta.json.JsonStructure;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+
+/**
+ * The JsonBodyPublisher serializes a JSON request body with a
+ * {@link JsonGenerator} directly into UTF-8 byte chunks.
+ * <p>
+ * <code>BodyPublishers.ofString(request.toString())</code> holds the JSON
+ * object, the serialized String and a contiguous byte array of the same size at
+ * the same time. For a prompt with a large file context (hundreds of KB) this
+ * multiplies the memory of each request. The generator writes the UTF-8 bytes
+ * into fixed-size chunks instead, so no intermediate String is created and no
+ * large array has to be allocated or copied while growing.
+ * <p>
+ * The chunks are written once and sent with a Content-Length header. The
+ * publisher can be subscribed several times, so a retry of the
+ * {@link OpenAIAPIConnector} sends the same body again.
+ *
+ * @author rsoika
+ */
+public class JsonBodyPublisher {
+
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    private static final JsonGeneratorFactory generatorFactory = Json.createGeneratorFactory(null);
+
+    private JsonBodyPublisher() {
+    }
+
+    /**
+     * Creates a body publisher for the given JSON object or array.
+     *
+     * @param json - the request body
+     * @return a re-subscribable body publisher
+     */
+    public static BodyPublisher of(JsonStructure json) {
+        ChunkedOutputStream out = new ChunkedOutputStream();
+        try (JsonGenerator generator = generatorFactory.createGenerator(out)) {
+            generator.write(json);
+        }
+        List<byte[]> chunks = out.getChunks();
+        return BodyPublishers.fromPublisher(BodyPublishers.ofByteArrays(chunks), out.getSize());
+    }
+
+    /**
+     * Collects the written bytes in chunks of {@link #CHUNK_SIZE}.
+     */
+    static class ChunkedOutputStream extends OutputStream {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private byte[] current = new byte[CHUNK_SIZE];
+        private int position = 0;
+        private long size = 0;
+
+        @Override
+        public void write(int b) {
+            if (position == current.length) {
+                nextChunk();
+            }
+            current[position++] = (byte) b;
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (position == current.length) {
+                    nextChunk();
+                }
+                int n = Math.min(len, current.length - position);
+                System.arraycopy(b, off, current, position, n);
+                position += n;
+                off += n;
+                len -= n;
+                size += n;
+            }
+        }
+
+        private void nextChunk() {
+            chunks.add(current);
+            current = new byte[CHUNK_SIZE];
+            position = 0;
+        }
+
+        /**
+         * Returns the written chunks. The last chunk is trimmed to its content.
+         */
+        List<byte[]> getChunks() {
+            List<byte[]> result = new ArrayList<>(chunks);
+            if (position > 0) {
+                result.add(Arrays.copyOf(current, position));
+            }
+            return result;
+        }
+
+        long getSize() {
+            return size;
+        }
+    }
+}
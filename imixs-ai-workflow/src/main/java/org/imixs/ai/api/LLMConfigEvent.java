@@ -0,0 +1,43 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.Set;
+
+/**
+ * The LLMConfigEvent is fired by the {@link LLMConfigService} after a reload
+ * of the <code>imixs-llm.xml</code> file changed, added or removed endpoints.
+ * A CDI bean can observe this event to update state derived from the endpoint
+ * config, e.g. the warm-up and health probe timers of the
+ * {@link LLMHealthService}.
+ *
+ * @author rsoika
+ * @see LLMConfigService#reload()
+ */
+public class LLMConfigEvent {
+
+    private final Set<String> endpointIds;
+
+    public LLMConfigEvent(Set<String> endpointIds) {
+        this.endpointIds = Set.copyOf(endpointIds);
+    }
+
+    /**
+     * Returns the ids of the changed, added and removed endpoints.
+     */
+    public Set<String> getEndpointIds() {
+        return endpointIds;
+    }
+}
@@ -10,10 +10,21 @@
 
 package org.imixs.ai.api;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -25,10 +36,17 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
 import jakarta.ejb.Singleton;
 import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
-import jakarta.json.stream.JsonParsingException;
 
 /**
  * Singleton EJB that loads the <code>imixs-llm.xml</code> configuration file at
@@ -48,6 +66,12 @@ import jakarta.json.stream.JsonParsingException;
  * If the property is not set the service starts with an empty registry and logs
  * a warning.
  * <p>
+ * The file is compiled once into an immutable map of {@link EndpointConfig}
+ * objects, so the lookup methods are cheap on the path of each LLM request. The
+ * file is checked for changes in the interval of the property
+ * <code>llm.config.reload.interval</code> (default 10000ms, 0 = no reload) and
+ * reloaded without a redeployment.
+ * <p>
  * Example imixs-llm.xml:
  *
  * <pre>
@@ -55,7 +79,22 @@ import jakarta.json.stream.JsonParsingException;
  * <imixs-llm>
  *     <endpoint id="my-llm">
  *         <url>http://localhost:8080/</url>
+ *         <url>http://localhost:8081/</url>
  *         <apikey>${env.LLM_API_KEY}</apikey>
+ *         <pool-size>4</pool-size>
+ *         <http-version>HTTP_1_1</http-version>
+ *         <max-concurrent>4</max-concurrent>
+ *         <queue-size>100</queue-size>
+ *         <queue-timeout>60000</queue-timeout>
+ *         <context-size>8192</context-size>
+ *         <context-overflow>trim</context-overflow>
+ *         <cache>auto</cache>
+ *         <cache-dir>/var/cache/imixs-llm</cache-dir>
+ *         <warmup>completion</warmup>
+ *         <warmup-prompt>You are a helpful assistant...</warmup-prompt>
+ *         <health-interval>30000</health-interval>
+ *         <compaction>summary</compaction>
+ *         <compaction-threshold>6000</compaction-threshold>
  *         <options>
  *             <temperature>0.2</temperature>
  *             <max_tokens>1024</max_tokens>
@@ -69,9 +108,36 @@ import jakarta.json.stream.JsonParsingException;
  */
 @Singleton
 @Startup
+@Lock(LockType.READ)
 public class LLMConfigService {
 
     public static final String ENV_LLM_CONFIG_FILE = "llm.config.file";
+    public static final String ENV_LLM_CONFIG_RELOAD_INTERVAL = "llm.config.reload.interval";
+    public static final int DEFAULT_POOL_SIZE = 4;
+    public static final int DEFAULT_BATCH_SIZE = 32;
+    public static final int DEFAULT_QUEUE_SIZE = 100;
+    public static final int DEFAULT_QUEUE_TIMEOUT = 60000;
+    public static final int DEFAULT_EJECT_AFTER = 3;
+    public static final int DEFAULT_EJECT_DURATION = 30000;
+    public static final int DEFAULT_RETRIES = 2;
+    public static final int DEFAULT_RETRY_BACKOFF = 500;
+    public static final int DEFAULT_BREAKER_THRESHOLD = 5;
+    public static final int DEFAULT_BREAKER_TIMEOUT = 30000;
+    public static final int DEFAULT_CACHE_SIZE = 256;
+    public static final int DEFAULT_CACHE_TTL = 3600000;
+    public static final String CACHE_AUTO = "auto";
+    public static final int DEFAULT_EMBEDDING_CACHE_SIZE = 4096;
+    public static final String CONTEXT_OVERFLOW_REJECT = "reject";
+    public static final String CONTEXT_OVERFLOW_TRIM = "trim";
+    public static final String TOKENIZER_HEURISTIC = "heuristic";
+    public static final String TOKENIZER_SERVER = "server";
+    public static final String WARMUP_COMPLETION = "completion";
+    public static final String WARMUP_EMBEDDING = "embedding";
+    public static final String DEFAULT_HEALTH_PATH = "health";
+    public static final String COMPACTION_WINDOW = "window";
+    public static final String COMPACTION_SUMMARY = "summary";
+    public static final int DEFAULT_COMPACTION_WINDOW = 8;
+    public static final int DEFAULT_COMPACTION_TOOL_RESULT = 500;
 
     private static final Logger logger = Logger.getLogger(LLMConfigService.class.getName());
 
@@ -79,12 +145,25 @@ public class LLMConfigService {
     @ConfigProperty(name = ENV_LLM_CONFIG_FILE)
     Optional<String> configFilePath;
 
-    // The parsed XML document - null if config file was not loaded
-    private Document configDocument = null;
+    @Inject
+    @ConfigProperty(name = ENV_LLM_CONFIG_RELOAD_INTERVAL, defaultValue = "10000")
+    long reloadInterval;
+
+    @Inject
+    Event<LLMConfigEvent> configEvents;
+
+    @Resource
+    TimerService timerService;
+
+    // The compiled endpoints by id - replaced as a whole on reload
+    private volatile Map<String, EndpointConfig> endpoints = Map.of();
+    private FileTime lastModified = null;
 
     /**
      * Loads and parses the imixs-llm.xml from the path configured via the
-     * MicroProfile Config property <code>llm.config.file</code>.
+     * MicroProfile Config property <code>llm.config.file</code>. If
+     * <code>llm.config.reload.interval</code> is greater than 0, the file is
+     * checked for changes in this interval.
      */
     @PostConstruct
     public void init() {
@@ -96,15 +175,89 @@ public class LLMConfigService {
 
         String path = configFilePath.get().trim();
         logger.info("LLMConfigService: loading config from '" + path + "'");
-
-        try (InputStream is = new FileInputStream(path)) {
-            configDocument = parseXML(is);
+        if (load(Path.of(path))) {
             logger.info("├── ✅ LLMConfigService: config loaded successfully from '" + path + "'");
+        }
+        if (reloadInterval > 0) {
+            TimerConfig timerConfig = new TimerConfig();
+            timerConfig.setInfo("Imixs-AI LLMConfigService");
+            timerConfig.setPersistent(false);
+            timerService.createIntervalTimer(reloadInterval, reloadInterval, timerConfig);
+        }
+    }
+
+    /**
+     * Reloads the imixs-llm.xml if the file was modified. The compiled endpoints
+     * are replaced atomically - requests in progress keep the config they started
+     * with. The HTTP transports of changed endpoints are recreated with the next
+     * request, and a {@link LLMConfigEvent} with the ids of the changed, added and
+     * removed endpoints is fired. If the new file is invalid, the current config is
+     * kept.
+     * <p>
+     * The event is fired asynchronously. An observer reading the config (e.g. the
+     * {@link LLMHealthService}) waits for the read lock, which is granted as soon
+     * as this method returns. A synchronous observer would wait for the write lock
+     * held by the reload and could deadlock with a timer reading the config.
+     */
+    @Timeout
+    @Lock(LockType.WRITE)
+    public void reload() {
+        Path path = Path.of(configFilePath.get().trim());
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            if (modified.equals(lastModified)) {
+                return;
+            }
+        } catch (IOException e) {
+            // file is replaced right now - check again with the next interval
+            return;
+        }
+        Map<String, EndpointConfig> previous = endpoints;
+        if (!load(path)) {
+            return;
+        }
+        Set<String> changed = new HashSet<>(previous.keySet());
+        changed.addAll(endpoints.keySet());
+        changed.removeIf(id -> Objects.equals(previous.get(id), endpoints.get(id)));
+        if (!changed.isEmpty()) {
+            OpenAIAPIConnector.retireEndpoints(changed);
+            if (configEvents != null) {
+                configEvents.fireAsync(new LLMConfigEvent(changed)).exceptionally(e -> {
+                    logger.warning("├── ⚠️ LLMConfigService: config event failed: " + e.getMessage());
+                    return null;
+                });
+            }
+        }
+        logger.info("├── ✅ LLMConfigService: config reloaded from '" + path + "' - changed endpoints: " + changed);
+    }
+
+    /**
+     * Reads and compiles the config file.
+     *
+     * @return true if the file was loaded
+     */
+    private boolean load(Path path) {
+        try {
+            FileTime modified = Files.getLastModifiedTime(path);
+            try (InputStream is = Files.newInputStream(path)) {
+                setConfigDocument(parseXML(is));
+            }
+            lastModified = modified;
+            return true;
         } catch (IOException e) {
             logger.severe("├── ⚠️ LLMConfigService: cannot read '" + path + "': " + e.getMessage());
         } catch (Exception e) {
             logger.severe("├── ⚠️ LLMConfigService: failed to parse '" + path + "': " + e.getMessage());
         }
+        return false;
+    }
+
+    /**
+     * Releases the shared HTTP transports of all endpoints on undeployment.
+     */
+    @PreDestroy
+    public void destroy() {
+        OpenAIAPIConnector.releaseEndpoints();
     }
 
     /**
@@ -117,6 +270,18 @@ public class LLMConfigService {
         return getEndpointValue(endpointId, "url");
     }
 
+    /**
+     * Returns all URLs of the endpoint with the given id. An endpoint can define
+     * several &lt;url&gt; elements pointing to identical LLM servers (replicas).
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return list of resolved URLs, empty if not found
+     */
+    public List<String> getURLs(String endpointId) {
+        EndpointConfig endpoint = findEndpoint(endpointId);
+        return endpoint == null ? List.of() : endpoint.getValues("url");
+    }
+
     /**
      * Returns the API key of the endpoint with the given id, or null if not
      * configured.
@@ -128,13 +293,512 @@ public class LLMConfigService {
         return getEndpointValue(endpointId, "apikey");
     }
 
+    /**
+     * Returns the number of worker threads of the shared HTTP client of the given
+     * endpoint. The value is read from the optional <code>&lt;pool-size&gt;</code>
+     * element and defaults to {@link #DEFAULT_POOL_SIZE}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return pool size, always &gt; 0
+     */
+    public int getPoolSize(String endpointId) {
+        int value = getEndpointInt(endpointId, "pool-size", DEFAULT_POOL_SIZE);
+        return value > 0 ? value : DEFAULT_POOL_SIZE;
+    }
+
+    /**
+     * Returns the maximum number of text chunks sent in one embedding request. The
+     * value is read from the optional <code>&lt;batch-size&gt;</code> element and
+     * defaults to {@link #DEFAULT_BATCH_SIZE}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return batch size, always &gt; 0
+     */
+    public int getBatchSize(String endpointId) {
+        int value = getEndpointInt(endpointId, "batch-size", DEFAULT_BATCH_SIZE);
+        return value > 0 ? value : DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * Returns the maximum number of concurrent requests against each url of the
+     * given endpoint. The value is read from the optional
+     * <code>&lt;max-concurrent&gt;</code> element and should match the number of
+     * slots of the LLM server. The default 0 means no limit.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return max concurrent requests, 0 = unlimited
+     */
+    public int getMaxConcurrent(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "max-concurrent", 0));
+    }
+
+    /**
+     * Returns the maximum number of concurrent background requests (see
+     * {@link RequestPriority}) against each url of the given endpoint. The value
+     * is read from the optional <code>&lt;max-background&gt;</code> element. By
+     * default one slot of <code>&lt;max-concurrent&gt;</code> is reserved for
+     * interactive requests.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return max concurrent background requests
+     */
+    public int getMaxBackground(String endpointId) {
+        int maxConcurrent = getMaxConcurrent(endpointId);
+        int defaultValue = maxConcurrent > 1 ? maxConcurrent - 1 : maxConcurrent;
+        return Math.max(0, getEndpointInt(endpointId, "max-background", defaultValue));
+    }
+
+    /**
+     * Returns the maximum number of requests waiting for a free slot of the given
+     * endpoint. The value is read from the optional <code>&lt;queue-size&gt;</code>
+     * element and defaults to {@link #DEFAULT_QUEUE_SIZE}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return queue size
+     */
+    public int getQueueSize(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "queue-size", DEFAULT_QUEUE_SIZE));
+    }
+
+    /**
+     * Returns the maximum time in milliseconds a request waits for a free slot of
+     * the given endpoint. The value is read from the optional
+     * <code>&lt;queue-timeout&gt;</code> element and defaults to
+     * {@link #DEFAULT_QUEUE_TIMEOUT}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return queue timeout in milliseconds
+     */
+    public int getQueueTimeout(String endpointId) {
+        int value = getEndpointInt(endpointId, "queue-timeout", DEFAULT_QUEUE_TIMEOUT);
+        return value > 0 ? value : DEFAULT_QUEUE_TIMEOUT;
+    }
+
+    /**
+     * Returns the number of consecutive failures after which a url of the given
+     * endpoint is ejected. The value is read from the optional
+     * <code>&lt;eject-after&gt;</code> element and defaults to
+     * {@link #DEFAULT_EJECT_AFTER}. A value of 0 disables the ejection.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return number of failures
+     */
+    public int getEjectAfter(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "eject-after", DEFAULT_EJECT_AFTER));
+    }
+
+    /**
+     * Returns the time in milliseconds a failing url of the given endpoint is
+     * ejected. The value is read from the optional
+     * <code>&lt;eject-duration&gt;</code> element and defaults to
+     * {@link #DEFAULT_EJECT_DURATION}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return ejection time in milliseconds
+     */
+    public int getEjectDuration(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "eject-duration", DEFAULT_EJECT_DURATION));
+    }
+
+    /**
+     * Returns the number of retries of a failed request against the given
+     * endpoint. The value is read from the optional <code>&lt;retries&gt;</code>
+     * element and defaults to {@link #DEFAULT_RETRIES}. Embedding requests are
+     * always retried, completion requests only if
+     * {@link #isRetryCompletions(String)} is true.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return number of retries
+     */
+    public int getRetries(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "retries", DEFAULT_RETRIES));
+    }
+
+    /**
+     * Returns true if failed completion requests of the given endpoint should be
+     * retried. The value is read from the optional
+     * <code>&lt;retry-completions&gt;</code> element. Default is false, because a
+     * completion may already have been computed when the connection failed.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     */
+    public boolean isRetryCompletions(String endpointId) {
+        return getEndpointBoolean(endpointId, "retry-completions", false);
+    }
+
+    /**
+     * Returns the base delay in milliseconds of the exponential backoff between
+     * retries. The value is read from the optional
+     * <code>&lt;retry-backoff&gt;</code> element and defaults to
+     * {@link #DEFAULT_RETRY_BACKOFF}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return base delay in milliseconds
+     */
+    public int getRetryBackoff(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "retry-backoff", DEFAULT_RETRY_BACKOFF));
+    }
+
+    /**
+     * Returns the number of consecutive failures which open the circuit breaker of
+     * the given endpoint. The value is read from the optional
+     * <code>&lt;breaker-threshold&gt;</code> element and defaults to
+     * {@link #DEFAULT_BREAKER_THRESHOLD}. A value of 0 disables the breaker.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return number of failures
+     */
+    public int getBreakerThreshold(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "breaker-threshold", DEFAULT_BREAKER_THRESHOLD));
+    }
+
+    /**
+     * Returns the time in milliseconds the circuit breaker of the given endpoint
+     * stays open. The value is read from the optional
+     * <code>&lt;breaker-timeout&gt;</code> element and defaults to
+     * {@link #DEFAULT_BREAKER_TIMEOUT}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return open duration in milliseconds
+     */
+    public int getBreakerTimeout(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "breaker-timeout", DEFAULT_BREAKER_TIMEOUT));
+    }
+
+    /**
+     * Returns the completion cache mode of the given endpoint. The value is read
+     * from the optional <code>&lt;cache&gt;</code> element:
+     * <ul>
+     * <li><code>auto</code> (default) - only deterministic requests (temperature
+     * 0) are cached</li>
+     * <li><code>true</code> - all completion requests are cached</li>
+     * <li><code>false</code> - no request is cached unless enabled by the BPMN
+     * prompt definition</li>
+     * </ul>
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return the cache mode in lower case, never null
+     */
+    public String getCacheMode(String endpointId) {
+        String value = getEndpointValue(endpointId, "cache");
+        return value == null ? CACHE_AUTO : value.toLowerCase();
+    }
+
+    /**
+     * Returns the maximum number of completion results cached in memory for the
+     * given endpoint. The value is read from the optional
+     * <code>&lt;cache-size&gt;</code> element and defaults to
+     * {@link #DEFAULT_CACHE_SIZE}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return number of entries
+     */
+    public int getCacheSize(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "cache-size", DEFAULT_CACHE_SIZE));
+    }
+
+    /**
+     * Returns the time to live in milliseconds of a cached completion result. The
+     * value is read from the optional <code>&lt;cache-ttl&gt;</code> element and
+     * defaults to {@link #DEFAULT_CACHE_TTL}. A value of 0 disables the expiry.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return time to live in milliseconds
+     */
+    public int getCacheTTL(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "cache-ttl", DEFAULT_CACHE_TTL));
+    }
+
+    /**
+     * Returns the directory of the disk tier of the completion cache, or null if
+     * cached results are held in memory only. The value is read from the optional
+     * <code>&lt;cache-dir&gt;</code> element.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return the directory path or null
+     */
+    public String getCacheDir(String endpointId) {
+        return getEndpointValue(endpointId, "cache-dir");
+    }
+
+    /**
+     * Returns the maximum number of embedding vectors cached in memory for the
+     * given endpoint. The value is read from the optional
+     * <code>&lt;embedding-cache-size&gt;</code> element and defaults to
+     * {@link #DEFAULT_EMBEDDING_CACHE_SIZE}. A value of 0 disables the memory
+     * tier.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return number of vectors
+     */
+    public int getEmbeddingCacheSize(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "embedding-cache-size", DEFAULT_EMBEDDING_CACHE_SIZE));
+    }
+
+    /**
+     * Returns the directory of the disk tier of the embedding cache, or null if
+     * vectors are cached in memory only. The value is read from the optional
+     * <code>&lt;embedding-cache-dir&gt;</code> element.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return the directory path or null
+     */
+    public String getEmbeddingCacheDir(String endpointId) {
+        return getEndpointValue(endpointId, "embedding-cache-dir");
+    }
+
+    /**
+     * Returns the context size in tokens of the given endpoint. The value is read
+     * from the optional <code>&lt;context-size&gt;</code> element and should match
+     * the context size of the model server (e.g. llama.cpp <code>-c</code>).
+     * Default is 0 - no prompt budget is enforced.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return context size in tokens
+     */
+    public int getContextSize(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "context-size", 0));
+    }
+
+    /**
+     * Returns the behavior if a prompt exceeds the context size of the given
+     * endpoint. The value is read from the optional
+     * <code>&lt;context-overflow&gt;</code> element: <code>reject</code>
+     * (default) fails the request, <code>trim</code> removes the oldest messages
+     * and truncates the prompt.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return {@link #CONTEXT_OVERFLOW_REJECT} or {@link #CONTEXT_OVERFLOW_TRIM}
+     */
+    public String getContextOverflow(String endpointId) {
+        String value = getEndpointValue(endpointId, "context-overflow");
+        return CONTEXT_OVERFLOW_TRIM.equalsIgnoreCase(value) ? CONTEXT_OVERFLOW_TRIM : CONTEXT_OVERFLOW_REJECT;
+    }
+
+    /**
+     * Returns the tokenizer used to count the prompt tokens of the given endpoint.
+     * The value is read from the optional <code>&lt;tokenizer&gt;</code> element:
+     * <code>heuristic</code> (default) estimates the tokens by the text length,
+     * <code>server</code> calls the <code>/tokenize</code> endpoint of the
+     * llama.cpp server.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return {@link #TOKENIZER_HEURISTIC} or {@link #TOKENIZER_SERVER}
+     */
+    public String getTokenizer(String endpointId) {
+        String value = getEndpointValue(endpointId, "tokenizer");
+        return TOKENIZER_SERVER.equalsIgnoreCase(value) ? TOKENIZER_SERVER : TOKENIZER_HEURISTIC;
+    }
+
+    /**
+     * Returns true if completion requests of the given endpoint should ask the
+     * llama.cpp server to reuse the KV cache of a previous prompt with the same
+     * prefix (<code>"cache_prompt": true</code>). The value is read from the
+     * optional <code>&lt;cache-prompt&gt;</code> element. Default is false, as the
+     * parameter is not part of the OpenAI API.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     */
+    public boolean isCachePrompt(String endpointId) {
+        return getEndpointBoolean(endpointId, "cache-prompt", false);
+    }
+
+    /**
+     * Returns the number of slots of the llama.cpp server (option
+     * <code>-np</code>) of the given endpoint. If defined, the requests of a
+     * conversation are pinned to one slot (<code>id_slot</code>) so the server can
+     * reuse the cached prefix. The value is read from the optional
+     * <code>&lt;slots&gt;</code> element. Default is 0 (no slot affinity).
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     */
+    public int getSlots(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "slots", 0));
+    }
+
+    /**
+     * Returns true if a tiny completion request is sent to each url of the given
+     * endpoint at startup, so the server loads the model before the first real
+     * request. The value is read from the optional <code>&lt;warmup&gt;</code>
+     * element: <code>completion</code> or <code>true</code> enable the completion
+     * warm-up. Default is false.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     */
+    public boolean isWarmupCompletion(String endpointId) {
+        String value = getEndpointValue(endpointId, "warmup");
+        return WARMUP_COMPLETION.equalsIgnoreCase(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Returns true if a tiny embedding request is sent to each url of the given
+     * endpoint at startup. The value is read from the optional
+     * <code>&lt;warmup&gt;</code> element: <code>embedding</code> or
+     * <code>true</code> enable the embedding warm-up. Default is false.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     */
+    public boolean isWarmupEmbedding(String endpointId) {
+        String value = getEndpointValue(endpointId, "warmup");
+        return WARMUP_EMBEDDING.equalsIgnoreCase(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Returns the system prompts sent with the completion warm-up of the given
+     * endpoint. Each prompt is sent in a separate request, so the llama.cpp server
+     * holds the prefix of the prompt in its cache. The values are read from the
+     * optional <code>&lt;warmup-prompt&gt;</code> elements.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return list of system prompts, empty if not defined
+     */
+    public List<String> getWarmupPrompts(String endpointId) {
+        EndpointConfig endpoint = findEndpoint(endpointId);
+        return endpoint == null ? List.of() : endpoint.getValues("warmup-prompt");
+    }
+
+    /**
+     * Returns the interval in milliseconds of the active health probe of the given
+     * endpoint. The value is read from the optional
+     * <code>&lt;health-interval&gt;</code> element. Default is 0 - no health
+     * probe.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return probe interval in milliseconds, 0 = disabled
+     */
+    public int getHealthInterval(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "health-interval", 0));
+    }
+
+    /**
+     * Returns the resource path of the health probe of the given endpoint. The
+     * value is read from the optional <code>&lt;health-path&gt;</code> element and
+     * defaults to {@link #DEFAULT_HEALTH_PATH} (the llama.cpp
+     * <code>/health</code> endpoint).
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return the resource path without a leading '/'
+     */
+    public String getHealthPath(String endpointId) {
+        String value = getEndpointValue(endpointId, "health-path");
+        if (value == null) {
+            return DEFAULT_HEALTH_PATH;
+        }
+        return value.startsWith("/") ? value.substring(1) : value;
+    }
+
+    /**
+     * Returns the strategy to compact the context of a long running conversation
+     * exceeding the compaction threshold of the given endpoint. The value is read
+     * from the optional <code>&lt;compaction&gt;</code> element:
+     * <code>window</code> (default) removes the oldest messages,
+     * <code>summary</code> replaces them by a summary generated by the LLM.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return {@link #COMPACTION_WINDOW} or {@link #COMPACTION_SUMMARY}
+     */
+    public String getCompaction(String endpointId) {
+        String value = getEndpointValue(endpointId, "compaction");
+        return COMPACTION_SUMMARY.equalsIgnoreCase(value) ? COMPACTION_SUMMARY : COMPACTION_WINDOW;
+    }
+
+    /**
+     * Returns the number of estimated context tokens above which the context of a
+     * conversation is compacted. The value is read from the optional
+     * <code>&lt;compaction-threshold&gt;</code> element. Default is 0 - the
+     * context is not compacted.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return threshold in tokens, 0 = disabled
+     */
+    public int getCompactionThreshold(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "compaction-threshold", 0));
+    }
+
+    /**
+     * Returns the number of latest messages kept in full by a compaction of the
+     * given endpoint. The value is read from the optional
+     * <code>&lt;compaction-window&gt;</code> element and defaults to
+     * {@link #DEFAULT_COMPACTION_WINDOW}.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return number of messages
+     */
+    public int getCompactionWindow(String endpointId) {
+        return Math.max(0, getEndpointInt(endpointId, "compaction-window", DEFAULT_COMPACTION_WINDOW));
+    }
+
+    /**
+     * Returns the maximum length of a tool result outside the compaction window of
+     * the given endpoint. The value is read from the optional
+     * <code>&lt;compaction-tool-result&gt;</code> element and defaults to
+     * {@link #DEFAULT_COMPACTION_TOOL_RESULT} characters. A value of 0 removes the
+     * content of stale tool results.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return maximum length in characters
+     */
+    public int getCompactionToolResult(String endpointId) {
+        return Math.max(0,
+                getEndpointInt(endpointId, "compaction-tool-result", DEFAULT_COMPACTION_TOOL_RESULT));
+    }
+
+    /**
+     * Returns true if identical concurrent completion requests of the given
+     * endpoint are coalesced into one request. The value is read from the optional
+     * <code>&lt;single-flight&gt;</code> element. Default is true.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     */
+    public boolean isSingleFlight(String endpointId) {
+        return getEndpointBoolean(endpointId, "single-flight", true);
+    }
+
+    /**
+     * Returns the preferred HTTP protocol version of the given endpoint. The value
+     * is read from the optional <code>&lt;http-version&gt;</code> element. The
+     * values <code>HTTP_2</code> or <code>2</code> enable HTTP/2 (with fallback to
+     * HTTP/1.1 if the server does not support it). Default is HTTP/1.1 with
+     * keep-alive, which is what llama.cpp and most inference servers speak.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return the HTTP version, never null
+     */
+    public HttpClient.Version getHttpVersion(String endpointId) {
+        String value = getEndpointValue(endpointId, "http-version");
+        if (value != null && ("HTTP_2".equalsIgnoreCase(value) || "2".equals(value)
+                || "HTTP/2".equalsIgnoreCase(value))) {
+            return HttpClient.Version.HTTP_2;
+        }
+        return HttpClient.Version.HTTP_1_1;
+    }
+
     /**
      * Returns true if an endpoint with the given id exists in the config.
      *
      * @param endpointId - the id attribute of the &lt;endpoint&gt; element
      */
     public boolean hasEndpoint(String endpointId) {
-        return findEndpointElement(endpointId) != null;
+        return findEndpoint(endpointId) != null;
+    }
+
+    /**
+     * Returns the compiled config of the endpoint with the given id.
+     *
+     * @param endpointId - the id attribute of the &lt;endpoint&gt; element
+     * @return the endpoint config or null if not found
+     */
+    public EndpointConfig getConfig(String endpointId) {
+        return findEndpoint(endpointId);
+    }
+
+    /**
+     * Returns the ids of all endpoints defined in the config.
+     *
+     * @return list of endpoint ids, empty if the config is not loaded
+     */
+    public List<String> getEndpointIds() {
+        return new ArrayList<>(endpoints.keySet());
     }
 
     /**
@@ -160,27 +824,9 @@ public class LLMConfigService {
      * @return an LLMOptions instance, never null
      */
     public LLMOptions getOptions(String endpointId) {
-        Element endpoint = findEndpointElement(endpointId);
-        if (endpoint == null) {
-            return new LLMOptions();
-        }
-        NodeList optionsNodes = endpoint.getElementsByTagName("options");
-        if (optionsNodes.getLength() == 0) {
-            return new LLMOptions();
-        }
-        String content = optionsNodes.item(0).getTextContent();
-        if (content == null || content.isBlank()) {
-            return new LLMOptions();
-        }
-        // Resolve ${env.VAR_NAME} placeholders before parsing as JSON
-        String resolved = resolveEnvPlaceholders(content.trim());
-        try {
-            return new LLMOptions(resolved);
-        } catch (JsonParsingException e) {
-            logger.warning("LLMConfigService: invalid JSON in <options> for endpoint '"
-                    + endpointId + "' – ignoring options. " + e.getMessage());
-            return new LLMOptions();
-        }
+        EndpointConfig endpoint = findEndpoint(endpointId);
+        // the parsed JsonObject is immutable and shared, merge creates a new one
+        return endpoint == null ? new LLMOptions() : new LLMOptions(endpoint.getOptions());
     }
 
     // -------------------------------------------------------------------------
@@ -188,52 +834,65 @@ public class LLMConfigService {
     // -------------------------------------------------------------------------
 
     /**
-     * Allows unit tests to inject a pre-parsed XML document directly without
-     * reading from the filesystem.
+     * Compiles a parsed XML document into the endpoint registry. Allows unit tests
+     * to inject a pre-parsed XML document directly without reading from the
+     * filesystem.
      *
      * @param document - a parsed imixs-llm.xml document
      */
     public void setConfigDocument(Document document) {
-        this.configDocument = document;
+        Map<String, EndpointConfig> result = new LinkedHashMap<>();
+        NodeList nodes = document.getElementsByTagName("endpoint");
+        for (int i = 0; i < nodes.getLength(); i++) {
+            Element element = (Element) nodes.item(i);
+            String id = element.getAttribute("id");
+            if (id != null && !id.isBlank() && !result.containsKey(id)) {
+                result.put(id, EndpointConfig.of(element, LLMConfigService::resolveEnvPlaceholders));
+            }
+        }
+        this.endpoints = Collections.unmodifiableMap(result);
     }
 
     /**
-     * Finds the &lt;endpoint&gt; element with the given id and returns the text
-     * content of the specified direct child tag.
+     * Returns the value of the specified tag of the endpoint with the given id.
      */
     private String getEndpointValue(String endpointId, String tagName) {
-        Element endpoint = findEndpointElement(endpointId);
-        if (endpoint == null) {
-            return null;
-        }
-        NodeList nodes = endpoint.getElementsByTagName(tagName);
-        if (nodes.getLength() == 0) {
-            return null;
-        }
-        String value = nodes.item(0).getTextContent();
-        if (value == null || value.isBlank()) {
-            return null;
-        }
-        return resolveEnvPlaceholders(value.trim());
+        EndpointConfig endpoint = findEndpoint(endpointId);
+        return endpoint == null ? null : endpoint.getValue(tagName);
     }
 
     /**
-     * Returns the &lt;endpoint&gt; Element with the matching id attribute, or null
-     * if the config document is not loaded or no match is found.
+     * Returns the integer value of the specified tag of an endpoint, or the given
+     * default if the tag is missing or not a valid number. The value is parsed
+     * once when the config is loaded.
      */
-    private Element findEndpointElement(String endpointId) {
-        if (configDocument == null || endpointId == null || endpointId.isBlank()) {
+    private int getEndpointInt(String endpointId, String tagName, int defaultValue) {
+        EndpointConfig endpoint = findEndpoint(endpointId);
+        return endpoint == null ? defaultValue : endpoint.getInt(tagName, defaultValue);
+    }
+
+    /**
+     * Returns the boolean value of the specified tag of an endpoint, or the given
+     * default if the tag is missing or neither true nor false.
+     */
+    private boolean getEndpointBoolean(String endpointId, String tagName, boolean defaultValue) {
+        EndpointConfig endpoint = findEndpoint(endpointId);
+        return endpoint == null ? defaultValue : endpoint.getBoolean(tagName, defaultValue);
+    }
+
+    /**
+     * Returns the compiled config of the endpoint with the given id, or null if
+     * the config is not loaded or no match is found.
+     */
+    private EndpointConfig findEndpoint(String endpointId) {
+        if (endpointId == null || endpointId.isBlank()) {
             return null;
         }
-        NodeList endpoints = configDocument.getElementsByTagName("endpoint");
-        for (int i = 0; i < endpoints.getLength(); i++) {
-            Element element = (Element) endpoints.item(i);
-            if (endpointId.equals(element.getAttribute("id"))) {
-                return element;
-            }
+        EndpointConfig endpoint = endpoints.get(endpointId);
+        if (endpoint == null && !endpoints.isEmpty()) {
+            logger.warning("LLMConfigService: no endpoint found for id '" + endpointId + "'");
         }
-        logger.warning("LLMConfigService: no endpoint found for id '" + endpointId + "'");
-        return null;
+        return endpoint;
     }
 
     /**
@@ -254,7 +913,7 @@ public class LLMConfigService {
      * If the variable is not set, the placeholder is replaced with an empty string
      * and a warning is logged.
      */
-    private String resolveEnvPlaceholders(String value) {
+    static String resolveEnvPlaceholders(String value) {
         if (value == null || !value.contains("${env.")) {
             return value;
         }
@@ -0,0 +1,311 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.net.http.HttpClient;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.json.JsonObject;
+
+/**
+ * The LLMEndpoint holds the runtime transport state of a logical LLM endpoint
+ * defined in the <code>imixs-llm.xml</code> configuration file.
+ * <p>
+ * Each endpoint owns one shared {@link HttpClient}. The client keeps its
+ * connections alive between requests (HTTP/1.1 keep-alive or a multiplexed
+ * HTTP/2 connection), so consecutive completion and embedding requests against
+ * the same endpoint reuse an already established TCP/TLS connection instead of
+ * paying the handshake for every call.
+ * <p>
+ * The worker pool of the client is sized by the endpoint element
+ * <code>&lt;pool-size&gt;</code>. The number of in-flight requests is limited
+ * by the {@link EndpointLimiter} of the endpoint, which serves interactive
+ * requests before background requests (see {@link RequestPriority}).
+ * <p>
+ * An endpoint may define several <code>&lt;url&gt;</code> elements pointing to
+ * identical LLM servers. Each request is sent to one {@link EndpointReplica},
+ * selected by power-of-two-choices on the least outstanding requests. Replicas
+ * failing repeatedly are ejected for a while (passive health check). The turns
+ * of a conversation can be pinned to one replica by an affinity key.
+ * <p>
+ * Failed requests are retried with a jittered exponential backoff and a
+ * {@link CircuitBreaker} fails fast while the endpoint is down.
+ * <p>
+ * Completion results can be cached by a {@link CompletionCache}, embedding
+ * vectors by an {@link EmbeddingCache}.
+ * <p>
+ * Instances are created and cached by the {@link OpenAIAPIConnector}.
+ *
+ * @author rsoika
+ */
+public class LLMEndpoint {
+
+    // upper bound of the delay between two retries
+    public static final long MAX_RETRY_DELAY = 10000;
+
+    private final String id;
+    private final ExecutorService executor;
+    private final HttpClient httpClient;
+    private final EndpointLimiter limiter;
+    private final List<EndpointReplica> replicas = new ArrayList<>();
+    private final CircuitBreaker circuitBreaker;
+    private final int retries;
+    private final boolean retryCompletions;
+    private final int retryBackoff;
+    private final String cacheMode;
+    private final CompletionCache completionCache;
+    private final EmbeddingCache embeddingCache;
+
+    /**
+     * Creates the transport for a logical endpoint.
+     *
+     * @param id             - logical endpoint id
+     * @param config         - the endpoint configuration
+     * @param connectTimeout - connect timeout in milliseconds
+     */
+    LLMEndpoint(String id, LLMConfigService config, int connectTimeout) {
+        this.id = id;
+        this.executor = Executors.newFixedThreadPool(config.getPoolSize(id), new EndpointThreadFactory(id));
+        for (String url : config.getURLs(id)) {
+            replicas.add(new EndpointReplica(url, config.getEjectAfter(id), config.getEjectDuration(id)));
+        }
+        // max-concurrent and max-background are defined per url
+        int urls = Math.max(1, replicas.size());
+        this.limiter = new EndpointLimiter(id, config.getMaxConcurrent(id) * urls,
+                config.getMaxBackground(id) * urls, config.getQueueSize(id), config.getQueueTimeout(id));
+        this.circuitBreaker = new CircuitBreaker(id, config.getBreakerThreshold(id), config.getBreakerTimeout(id));
+        this.retries = config.getRetries(id);
+        this.retryCompletions = config.isRetryCompletions(id);
+        this.retryBackoff = config.getRetryBackoff(id);
+        this.cacheMode = config.getCacheMode(id);
+        String cacheDir = config.getCacheDir(id);
+        int cacheSize = config.getCacheSize(id);
+        this.completionCache = cacheSize == 0 && cacheDir == null ? null
+                : new CompletionCache(id, cacheSize, config.getCacheTTL(id),
+                        cacheDir == null ? null : Path.of(cacheDir, id));
+        String embeddingCacheDir = config.getEmbeddingCacheDir(id);
+        int embeddingCacheSize = config.getEmbeddingCacheSize(id);
+        this.embeddingCache = embeddingCacheSize == 0 && embeddingCacheDir == null ? null
+                : new EmbeddingCache(id, embeddingCacheSize,
+                        embeddingCacheDir == null ? null : Path.of(embeddingCacheDir, id));
+        this.httpClient = HttpClient.newBuilder()
+                .version(config.getHttpVersion(id))
+                .connectTimeout(Duration.ofMillis(connectTimeout))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Returns the shared HTTP client of this endpoint.
+     */
+    public HttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Returns the concurrency limiter of this endpoint.
+     */
+    public EndpointLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Returns the circuit breaker of this endpoint.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Returns the number of retries for a request to the given resource.
+     * Completion requests are only retried if enabled by
+     * <code>&lt;retry-completions&gt;</code>, all other requests (embeddings) are
+     * idempotent and always retried.
+     *
+     * @param resourceURI - endpoint resource path
+     * @return number of retries
+     */
+    public int getRetries(String resourceURI) {
+        if (OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS.equals(resourceURI) && !retryCompletions) {
+            return 0;
+        }
+        return retries;
+    }
+
+    /**
+     * Returns the delay before the given retry attempt. The delay grows
+     * exponentially from the configured <code>&lt;retry-backoff&gt;</code> and is
+     * randomized (full jitter), so retries of many clients do not hit a
+     * restarting server at the same time.
+     *
+     * @param attempt - the number of the failed attempt, starting with 1
+     * @return delay in milliseconds
+     */
+    public long getRetryDelay(int attempt) {
+        long max = Math.min(MAX_RETRY_DELAY, (long) retryBackoff << Math.min(attempt - 1, 16));
+        return max <= 0 ? 0 : ThreadLocalRandom.current().nextLong(max + 1);
+    }
+
+    /**
+     * Returns the completion cache of this endpoint, or null if neither a
+     * <code>&lt;cache-size&gt;</code> nor a <code>&lt;cache-dir&gt;</code> is
+     * available.
+     */
+    public CompletionCache getCompletionCache() {
+        return completionCache;
+    }
+
+    /**
+     * Returns the embedding cache of this endpoint, or null if the cache is
+     * disabled.
+     */
+    public EmbeddingCache getEmbeddingCache() {
+        return embeddingCache;
+    }
+
+    /**
+     * Returns true if the result of the given completion request should be cached.
+     * An explicit setting of the BPMN prompt definition overrides the
+     * <code>&lt;cache&gt;</code> mode of the endpoint. In the mode
+     * <code>auto</code> only deterministic requests (temperature 0) are cached.
+     *
+     * @param request  - the completion request
+     * @param override - optional cache setting of the prompt definition, can be
+     *                 null
+     */
+    public boolean isCacheable(JsonObject request, Boolean override) {
+        if (completionCache == null) {
+            return false;
+        }
+        if (override != null) {
+            return override;
+        }
+        if ("true".equals(cacheMode)) {
+            return true;
+        }
+        return LLMConfigService.CACHE_AUTO.equals(cacheMode) && CompletionCache.isDeterministic(request);
+    }
+
+    /**
+     * Returns the replicas of this endpoint.
+     */
+    public List<EndpointReplica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Selects the replica for the next request of a conversation. Requests with
+     * the same affinity key are routed to the same replica as long as it is
+     * healthy, so the replica can reuse the prompt cache of the previous turn.
+     * Without a key, or if the replica is ejected, the replica is selected by
+     * {@link #selectReplica()}.
+     *
+     * @param affinityKey - optional routing key, e.g. the $uniqueid of a workitem
+     * @return the selected replica or null if the endpoint has no url
+     */
+    public EndpointReplica selectReplica(String affinityKey) {
+        if (affinityKey != null && replicas.size() > 1) {
+            EndpointReplica replica = replicas.get(Math.floorMod(affinityKey.hashCode(), replicas.size()));
+            if (replica.isHealthy()) {
+                return replica;
+            }
+        }
+        return selectReplica();
+    }
+
+    /**
+     * Selects the replica for the next request. Two random healthy replicas are
+     * compared and the one with less outstanding requests is chosen. If all
+     * replicas are ejected, the replica with the earliest end of ejection is
+     * chosen.
+     *
+     * @return the selected replica or null if the endpoint has no url
+     */
+    public EndpointReplica selectReplica() {
+        if (replicas.isEmpty()) {
+            return null;
+        }
+        if (replicas.size() == 1) {
+            return replicas.get(0);
+        }
+        List<EndpointReplica> healthy = new ArrayList<>(replicas.size());
+        for (EndpointReplica replica : replicas) {
+            if (replica.isHealthy()) {
+                healthy.add(replica);
+            }
+        }
+        if (healthy.isEmpty()) {
+            EndpointReplica result = replicas.get(0);
+            for (EndpointReplica replica : replicas) {
+                if (replica.getEjectedUntil() < result.getEjectedUntil()) {
+                    result = replica;
+                }
+            }
+            return result;
+        }
+        if (healthy.size() == 1) {
+            return healthy.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(healthy.size());
+        int second = random.nextInt(healthy.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        EndpointReplica a = healthy.get(first);
+        EndpointReplica b = healthy.get(second);
+        return b.getOutstanding() < a.getOutstanding() ? b : a;
+    }
+
+    /**
+     * Releases the worker threads of this endpoint. Idle connections are closed by
+     * the HTTP client once the client is no longer referenced.
+     */
+    void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Creates named daemon threads so the worker pool never blocks an undeployment.
+     */
+    private static class EndpointThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        EndpointThreadFactory(String endpointId) {
+            this.prefix = "imixs-llm-" + endpointId + "-";
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
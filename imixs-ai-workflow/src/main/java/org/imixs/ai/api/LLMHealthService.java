@@ -0,0 +1,190 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.imixs.workflow.exceptions.PluginException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.ejb.DependsOn;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.Timer;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+import jakarta.enterprise.event.ObservesAsync;
+import jakarta.inject.Inject;
+
+/**
+ * Singleton EJB that warms up the LLM endpoints at application startup and
+ * probes their health in the background.
+ * <p>
+ * The warm-up is enabled per endpoint by the <code>&lt;warmup&gt;</code>
+ * element of the <code>imixs-llm.xml</code> file. Right after the deployment a
+ * tiny completion (one per <code>&lt;warmup-prompt&gt;</code>) and/or embedding
+ * request is sent to each url of the endpoint, so the first real request does
+ * not pay the model load and the cold prompt cache.
+ * <p>
+ * The health probe is enabled by the <code>&lt;health-interval&gt;</code>
+ * element. In each interval the connector sends a GET request to the
+ * <code>&lt;health-path&gt;</code> of each url (see
+ * {@link OpenAIAPIConnector#probe(String)}). Urls failing the probe are skipped
+ * by the replica selection, and a replica coming back (e.g. after a restart) is
+ * warmed up again before it gets traffic from users.
+ * <p>
+ * If a reload of the <code>imixs-llm.xml</code> changes an endpoint (see
+ * {@link LLMConfigEvent}), its timers are recreated with the new settings and
+ * the endpoint is warmed up again.
+ *
+ * <pre>
+ * {@code
+ * <endpoint id="my-llm">
+ *     <url>http://localhost:8080/</url>
+ *     <warmup>completion</warmup>
+ *     <warmup-prompt>You are a helpful assistant...</warmup-prompt>
+ *     <health-interval>30000</health-interval>
+ * </endpoint>
+ * }
+ * </pre>
+ *
+ * @author rsoika
+ */
+@Singleton
+@Startup
+@DependsOn("LLMConfigService")
+public class LLMHealthService {
+
+    private static final Logger logger = Logger.getLogger(LLMHealthService.class.getName());
+
+    private static final String TIMER_WARMUP = "warmup:";
+    private static final String TIMER_HEALTH = "health:";
+
+    @Resource
+    TimerService timerService;
+
+    @Inject
+    LLMConfigService llmConfigService;
+
+    @Inject
+    OpenAIAPIConnector openAIAPIConnector;
+
+    /**
+     * Registers a non-persistent warm-up timer and a health probe timer for each
+     * endpoint where these features are enabled.
+     */
+    @PostConstruct
+    public void init() {
+        for (String endpointId : llmConfigService.getEndpointIds()) {
+            createTimers(endpointId);
+        }
+    }
+
+    /**
+     * Re-syncs the timers after a reload of the <code>imixs-llm.xml</code>. The
+     * timers of the changed and removed endpoints are canceled, and new timers are
+     * created for the changed and added endpoints. As the reload drops the warm
+     * state of the changed endpoints, their warm-up runs again. The event is
+     * observed asynchronously, after the reload has released the config.
+     */
+    public void onConfigEvent(@ObservesAsync LLMConfigEvent event) {
+        Set<String> endpointIds = event.getEndpointIds();
+        for (Timer timer : timerService.getTimers()) {
+            String endpointId = getEndpointId((String) timer.getInfo());
+            if (endpointId != null && endpointIds.contains(endpointId)) {
+                timer.cancel();
+            }
+        }
+        for (String endpointId : endpointIds) {
+            if (llmConfigService.hasEndpoint(endpointId)) {
+                createTimers(endpointId);
+            }
+        }
+    }
+
+    /**
+     * Runs the warm-up or the health probe of an endpoint. After a probe, replicas
+     * which became available again are warmed up. Timers of different endpoints
+     * may run concurrently.
+     */
+    @Timeout
+    @Lock(LockType.READ)
+    public void run(Timer timer) {
+        String info = (String) timer.getInfo();
+        try {
+            if (info.startsWith(TIMER_WARMUP)) {
+                String endpointId = info.substring(TIMER_WARMUP.length());
+                logger.info("├── 🔥 warm-up of endpoint '" + endpointId + "'...");
+                openAIAPIConnector.warmUp(endpointId);
+            } else if (info.startsWith(TIMER_HEALTH)) {
+                String endpointId = info.substring(TIMER_HEALTH.length());
+                int alive = openAIAPIConnector.probe(endpointId);
+                if (alive > 0 && (llmConfigService.isWarmupCompletion(endpointId)
+                        || llmConfigService.isWarmupEmbedding(endpointId))) {
+                    openAIAPIConnector.warmUp(endpointId);
+                }
+            }
+        } catch (PluginException e) {
+            logger.warning("├── ⚠️ " + info + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Creates the warm-up timer and the health probe timer of an endpoint where
+     * these features are enabled.
+     */
+    private void createTimers(String endpointId) {
+        if (llmConfigService.isWarmupCompletion(endpointId) || llmConfigService.isWarmupEmbedding(endpointId)) {
+            // run asynchronously - the deployment must not wait for the model load
+            timerService.createSingleActionTimer(0, createTimerConfig(TIMER_WARMUP + endpointId));
+        }
+        int interval = llmConfigService.getHealthInterval(endpointId);
+        if (interval > 0) {
+            timerService.createIntervalTimer(interval, interval, createTimerConfig(TIMER_HEALTH + endpointId));
+            logger.log(Level.INFO, "├── ✅ Started LLM health probe for endpoint ''{0}'' - interval={1}",
+                    new Object[] { endpointId, interval });
+        }
+    }
+
+    /**
+     * Returns the endpoint id of a timer info, or null if the timer is not a
+     * warm-up or health probe timer.
+     */
+    private static String getEndpointId(String info) {
+        if (info == null) {
+            return null;
+        }
+        if (info.startsWith(TIMER_WARMUP)) {
+            return info.substring(TIMER_WARMUP.length());
+        }
+        if (info.startsWith(TIMER_HEALTH)) {
+            return info.substring(TIMER_HEALTH.length());
+        }
+        return null;
+    }
+
+    private TimerConfig createTimerConfig(String info) {
+        TimerConfig timerConfig = new TimerConfig();
+        timerConfig.setInfo(info);
+        timerConfig.setPersistent(false);
+        return timerConfig;
+    }
+}
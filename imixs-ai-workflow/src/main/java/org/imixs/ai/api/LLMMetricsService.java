@@ -0,0 +1,181 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.Tag;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * The LLMMetricsService publishes MicroProfile Metrics for each LLM endpoint.
+ * <p>
+ * All metrics are tagged with the logical endpoint id (<code>endpoint</code>)
+ * and request metrics also with the call type (<code>type</code>:
+ * <code>completions</code>, <code>embeddings</code>, <code>tokenize</code>):
+ * <ul>
+ * <li><code>llm.request.queue</code> - time waiting for a free slot of the
+ * endpoint</li>
+ * <li><code>llm.request.ttfb</code> - time to the first byte of the
+ * response</li>
+ * <li><code>llm.request.latency</code> - duration of the request</li>
+ * <li><code>llm.request.errors</code> - failed requests, tagged with the
+ * <code>error</code> (e.g. <code>connection</code>,
+ * <code>http_503</code>)</li>
+ * <li><code>llm.tokens.prompt</code>, <code>llm.tokens.completion</code> -
+ * processed tokens</li>
+ * <li><code>llm.tokens.per.second</code> - generation speed</li>
+ * <li><code>llm.requests.inflight</code>,
+ * <code>llm.requests.waiting</code> - current load of the endpoint</li>
+ * </ul>
+ * If no MicroProfile Metrics implementation is available, the service does
+ * nothing.
+ *
+ * @author rsoika
+ */
+@ApplicationScoped
+public class LLMMetricsService {
+
+    private static final Logger logger = Logger.getLogger(LLMMetricsService.class.getName());
+
+    public static final String ERROR_CONNECTION = "connection";
+    public static final String ERROR_TIMEOUT = "timeout";
+
+    @Inject
+    Instance<MetricRegistry> metricRegistries;
+
+    private MetricRegistry registry = null;
+    private final Set<String> registeredEndpoints = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        if (metricRegistries != null && metricRegistries.isResolvable()) {
+            registry = metricRegistries.get();
+        } else {
+            logger.info("├── LLMMetricsService: no MetricRegistry available - metrics disabled");
+        }
+    }
+
+    /**
+     * Returns true if metrics are published.
+     */
+    public boolean isEnabled() {
+        return registry != null;
+    }
+
+    /**
+     * Registers the gauges of an endpoint. The gauges read the current state of
+     * the endpoint from the {@link OpenAIAPIConnector}, so they stay valid if the
+     * transport of the endpoint is recreated.
+     *
+     * @param endpointId - logical endpoint id
+     */
+    public void registerEndpoint(String endpointId) {
+        if (registry == null || !registeredEndpoints.add(endpointId)) {
+            return;
+        }
+        Tag tag = new Tag("endpoint", endpointId);
+        registry.gauge("llm.requests.inflight", () -> {
+            LLMEndpoint endpoint = OpenAIAPIConnector.findEndpoint(endpointId);
+            return endpoint == null ? 0 : endpoint.getLimiter().getInFlight();
+        }, tag);
+        registry.gauge("llm.requests.waiting", () -> {
+            LLMEndpoint endpoint = OpenAIAPIConnector.findEndpoint(endpointId);
+            return endpoint == null ? 0 : endpoint.getLimiter().getWaiting();
+        }, tag);
+    }
+
+    /**
+     * Records the time a request waited for a free slot of the endpoint.
+     */
+    public void recordQueueTime(String endpointId, String type, long millis) {
+        if (registry != null) {
+            registry.timer("llm.request.queue", tags(endpointId, type)).update(Duration.ofMillis(millis));
+        }
+    }
+
+    /**
+     * Records a completed HTTP request. A HTTP status of 400 or higher is counted
+     * as an error.
+     *
+     * @param endpointId - logical endpoint id
+     * @param type       - call type
+     * @param status     - HTTP status
+     * @param ttfb       - time to the first byte in milliseconds
+     * @param latency    - duration of the request in milliseconds
+     */
+    public void recordResponse(String endpointId, String type, int status, long ttfb, long latency) {
+        if (registry == null) {
+            return;
+        }
+        Tag[] tags = tags(endpointId, type);
+        registry.timer("llm.request.ttfb", tags).update(Duration.ofMillis(ttfb));
+        registry.timer("llm.request.latency", tags).update(Duration.ofMillis(latency));
+        if (status >= 400) {
+            recordError(endpointId, type, "http_" + status);
+        }
+    }
+
+    /**
+     * Counts a failed request.
+     *
+     * @param endpointId - logical endpoint id
+     * @param type       - call type
+     * @param error      - error tag, e.g. {@link #ERROR_CONNECTION}
+     */
+    public void recordError(String endpointId, String type, String error) {
+        if (registry != null) {
+            registry.counter("llm.request.errors", new Tag("endpoint", endpointId), new Tag("type", type),
+                    new Tag("error", error)).inc();
+        }
+    }
+
+    /**
+     * Records the token counts and the generation speed of a completion.
+     *
+     * @param endpointId - logical endpoint id
+     * @param usage      - the usage of the completion, can be null
+     */
+    public void recordUsage(String endpointId, CompletionUsage usage) {
+        if (registry == null || usage == null) {
+            return;
+        }
+        Tag[] tags = tags(endpointId, getType(OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS));
+        registry.counter("llm.tokens.prompt", tags).inc(usage.getPromptTokens());
+        registry.counter("llm.tokens.completion", tags).inc(usage.getCompletionTokens());
+        if (usage.getTokensPerSecond() > 0) {
+            registry.histogram("llm.tokens.per.second", tags).update(Math.round(usage.getTokensPerSecond()));
+        }
+    }
+
+    /**
+     * Returns the call type of an endpoint resource - the last path segment.
+     */
+    public static String getType(String resourceURI) {
+        return resourceURI.substring(resourceURI.lastIndexOf('/') + 1);
+    }
+
+    private static Tag[] tags(String endpointId, String type) {
+        return new Tag[] { new Tag("endpoint", endpointId), new Tag("type", type) };
+    }
+}
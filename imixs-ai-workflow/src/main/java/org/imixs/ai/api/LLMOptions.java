@@ -1,11 +1,19 @@
 package org.imixs.ai.api;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.io.StringReader;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import jakarta.json.Json;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonReader;
+import jakarta.json.JsonValue;
 
 /**
  * Represents a set of LLM options (e.g. temperature, max_tokens, top_p) as a
@@ -16,21 +24,50 @@ import jakarta.json.JsonReader;
  * The class does not interpret option keys or values - it forwards them as-is
  * to the LLM endpoint. This keeps the workflow engine provider-neutral and
  * allows new LLM parameters to be configured without code changes.
+ * <p>
+ * The layers are held as a chain of immutable JSON objects. A merge only adds a
+ * layer on top of the chain instead of copying all options, and
+ * {@link #get(String)} looks up a single option through the layers. The merged
+ * JSON object is built once per chain by {@link #toJson()} and shared by all
+ * options instances based on the same chain. Option strings are parsed once -
+ * the same BPMN options string evaluated again in an agent loop reuses the
+ * parsed object.
+ * <p>
+ * The options are serialized as the merged JSON string, so a deserialized
+ * instance holds a single layer.
  */
-public class LLMOptions {
+public class LLMOptions implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // parsed option strings by content
+    private static final int PARSE_CACHE_SIZE = 256;
+    private static final Map<String, JsonObject> parsed = Collections
+            .synchronizedMap(new LinkedHashMap<String, JsonObject>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+                    return size() > PARSE_CACHE_SIZE;
+                }
+            });
 
-    private JsonObject options;
+    // longer chains are collapsed into one layer
+    private static final int MAX_DEPTH = 8;
+
+    // top of the layer chain, null if empty
+    private transient Layer top;
 
     /** Creates an empty options object. */
     public LLMOptions() {
-        this.options = Json.createObjectBuilder().build();
+        this.top = null;
     }
 
     /**
      * Creates an options object from a parsed JsonObject. Null is treated as empty.
      */
     public LLMOptions(JsonObject options) {
-        this.options = (options != null) ? options : Json.createObjectBuilder().build();
+        this.top = (options == null || options.isEmpty()) ? null : new Layer(options, null);
     }
 
     /**
@@ -38,13 +75,7 @@ public class LLMOptions {
      * empty.
      */
     public LLMOptions(String optionsJson) {
-        if (optionsJson == null || optionsJson.isBlank()) {
-            this.options = Json.createObjectBuilder().build();
-            return;
-        }
-        try (JsonReader reader = Json.createReader(new StringReader(optionsJson))) {
-            this.options = reader.readObject();
-        }
+        this(parse(optionsJson));
     }
 
     /**
@@ -55,13 +86,14 @@ public class LLMOptions {
         if (other == null || other.isEmpty()) {
             return this;
         }
-        JsonObjectBuilder builder = Json.createObjectBuilder(this.options);
-        // JsonObjectBuilder.add() has replace semantics for existing keys -
-        // values from 'other' override matching keys in this.options.
-        for (String key : other.options.keySet()) {
-            builder.add(key, other.options.get(key));
+        if (top == null) {
+            // share the chain of the other options
+            top = other.top;
+        } else if (top.depth >= MAX_DEPTH) {
+            top = new Layer(other.toJson(), new Layer(toJson(), null));
+        } else {
+            top = new Layer(other.toJson(), top);
         }
-        this.options = builder.build();
         return this;
     }
 
@@ -71,18 +103,95 @@ public class LLMOptions {
     }
 
     public boolean isEmpty() {
-        return options.isEmpty();
+        return top == null;
+    }
+
+    /**
+     * Returns the value of a single option from the top-most layer defining it,
+     * without building the merged JSON object.
+     *
+     * @param key - the option key
+     * @return the value or null if not defined
+     */
+    public JsonValue get(String key) {
+        for (Layer layer = top; layer != null; layer = layer.below) {
+            JsonValue value = layer.values.get(key);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
     }
 
     /**
      * Returns the underlying JsonObject for serialization into the request body.
      */
     public JsonObject toJson() {
-        return options;
+        return top == null ? JsonValue.EMPTY_JSON_OBJECT : top.merged();
     }
 
     @Override
     public String toString() {
-        return options.toString();
+        return toJson().toString();
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(toString());
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        JsonObject options = parse((String) in.readObject());
+        top = (options == null || options.isEmpty()) ? null : new Layer(options, null);
+    }
+
+    /**
+     * Parses an options string. The result is shared, as JSON objects are
+     * immutable.
+     */
+    private static JsonObject parse(String optionsJson) {
+        if (optionsJson == null || optionsJson.isBlank()) {
+            return null;
+        }
+        JsonObject result = parsed.get(optionsJson);
+        if (result == null) {
+            try (JsonReader reader = Json.createReader(new StringReader(optionsJson))) {
+                result = reader.readObject();
+            }
+            parsed.put(optionsJson, result);
+        }
+        return result;
+    }
+
+    /**
+     * An immutable options layer. The merged object of the layer and all layers
+     * below is computed on first access.
+     */
+    private static final class Layer {
+        private final JsonObject values;
+        private final Layer below;
+        private final int depth;
+        private volatile JsonObject merged;
+
+        Layer(JsonObject values, Layer below) {
+            this.values = values;
+            this.below = below;
+            this.depth = below == null ? 1 : below.depth + 1;
+            this.merged = below == null ? values : null;
+        }
+
+        JsonObject merged() {
+            JsonObject result = merged;
+            if (result == null) {
+                // JsonObjectBuilder.add() has replace semantics for existing keys -
+                // values of this layer override matching keys of the layers below.
+                JsonObjectBuilder builder = Json.createObjectBuilder(below.merged());
+                values.forEach(builder::add);
+                result = builder.build();
+                merged = result;
+            }
+            return result;
+        }
     }
-}
\ No newline at end of file
+}
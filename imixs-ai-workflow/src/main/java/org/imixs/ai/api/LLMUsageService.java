@@ -0,0 +1,351 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.WorkflowKernel;
+import org.imixs.workflow.engine.DocumentService;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import jakarta.annotation.security.DeclareRoles;
+import jakarta.annotation.security.RunAs;
+import jakarta.ejb.Lock;
+import jakarta.ejb.LockType;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+import jakarta.inject.Inject;
+
+/**
+ * The LLMUsageService accounts the token usage of completion requests per
+ * endpoint and model.
+ * <p>
+ * Each completion processed by the LLM server is counted in memory by
+ * {@link #record(String, String, CompletionUsage, long)} without any database
+ * access. A non-persistent timer flushes the counters in the interval defined
+ * by the MicroProfile Config property <code>llm.usage.flush.interval</code>
+ * (default 60000ms, 0 = counters are held in memory only) into one document of
+ * the type <code>llmusage</code> per endpoint and model. If a flush fails (e.g.
+ * two cluster members update the same document), the counters are kept and
+ * written by the next flush.
+ * <p>
+ * In addition the usage is summed up on the workitem processed by the
+ * completion (see {@link #addUsage(ItemCollection, String, String, CompletionUsage, long)}),
+ * so the cost of each process instance is visible in the items
+ * <code>ai.usage.*</code>.
+ * <p>
+ * The current totals are published by the REST endpoint
+ * <code>/ai/usage</code>.
+ *
+ * @author rsoika
+ */
+@DeclareRoles({ "org.imixs.ACCESSLEVEL.MANAGERACCESS" })
+@RunAs("org.imixs.ACCESSLEVEL.MANAGERACCESS")
+@Singleton
+@Startup
+@Lock(LockType.READ)
+public class LLMUsageService {
+
+    public static final String ENV_LLM_USAGE_FLUSH_INTERVAL = "llm.usage.flush.interval";
+    public static final String DOCUMENT_TYPE = "llmusage";
+
+    // usage items of a workitem
+    public static final String ITEM_USAGE_CALLS = "ai.usage.calls";
+    public static final String ITEM_USAGE_PROMPT_TOKENS = "ai.usage.prompt_tokens";
+    public static final String ITEM_USAGE_COMPLETION_TOKENS = "ai.usage.completion_tokens";
+    public static final String ITEM_USAGE_DURATION = "ai.usage.duration";
+    public static final String ITEM_USAGE_CACHE_HITS = "ai.usage.cache_hits";
+    public static final String ITEM_USAGE_COALESCED = "ai.usage.coalesced";
+    public static final String ITEM_USAGE_MODELS = "ai.usage.models";
+
+    // items of a usage document
+    public static final String ITEM_ENDPOINT = "endpoint";
+    public static final String ITEM_MODEL = "model";
+    public static final String ITEM_CALLS = "calls";
+    public static final String ITEM_PROMPT_TOKENS = "prompt_tokens";
+    public static final String ITEM_COMPLETION_TOKENS = "completion_tokens";
+    public static final String ITEM_DURATION = "duration";
+
+    private static final Logger logger = Logger.getLogger(LLMUsageService.class.getName());
+
+    @Inject
+    @ConfigProperty(name = ENV_LLM_USAGE_FLUSH_INTERVAL, defaultValue = "60000")
+    long flushInterval;
+
+    @Resource
+    TimerService timerService;
+
+    @Inject
+    DocumentService documentService;
+
+    // usage not yet flushed by endpoint and model
+    private final Map<String, UsageCounter> counters = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    @PostConstruct
+    public void init() {
+        if (flushInterval > 0) {
+            TimerConfig timerConfig = new TimerConfig();
+            timerConfig.setInfo("Imixs-AI LLMUsageService");
+            timerConfig.setPersistent(false);
+            timerService.createIntervalTimer(flushInterval, flushInterval, timerConfig);
+            logger.log(Level.INFO, "├── ✅ Started LLMUsageService - flush interval={0}", flushInterval);
+        }
+    }
+
+    /**
+     * Writes the pending counters on undeployment.
+     */
+    @PreDestroy
+    public void destroy() {
+        if (flushInterval > 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Counts the usage of a completion processed by the LLM server.
+     *
+     * @param endpointId     - logical endpoint id
+     * @param model          - the model reported by the server, can be null
+     * @param usage          - the token usage of the completion
+     * @param durationMillis - the request duration
+     */
+    public void record(String endpointId, String model, CompletionUsage usage, long durationMillis) {
+        if (usage == null) {
+            return;
+        }
+        String modelName = model == null || model.isBlank() ? "-" : model;
+        counters.computeIfAbsent(createKey(endpointId, modelName), key -> new UsageCounter(endpointId, modelName))
+                .add(usage, durationMillis);
+    }
+
+    /**
+     * Writes the pending counters into the usage documents. Each document is saved
+     * in a new transaction, so a failing document does not roll back the others.
+     * Only the written counts are subtracted from the pending counters - requests
+     * counted during the flush are written by the next flush.
+     */
+    @Timeout
+    public void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, UsageCounter> entry : counters.entrySet()) {
+                UsageCounter counter = entry.getValue();
+                long[] delta = counter.snapshot();
+                if (delta[0] == 0) {
+                    continue;
+                }
+                try {
+                    ItemCollection document = documentService.load(entry.getKey());
+                    if (document == null) {
+                        document = new ItemCollection();
+                        document.setItemValue(WorkflowKernel.UNIQUEID, entry.getKey());
+                        document.setType(DOCUMENT_TYPE);
+                        document.setItemValue(ITEM_ENDPOINT, counter.endpointId);
+                        document.setItemValue(ITEM_MODEL, counter.model);
+                    }
+                    addCounts(document, delta);
+                    documentService.saveByNewTransaction(document);
+                    counter.subtract(delta);
+                } catch (RuntimeException e) {
+                    logger.warning("├── ⚠️ LLMUsageService: failed to write usage '" + entry.getKey()
+                            + "' - retry with next flush: " + e.getMessage());
+                }
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * Returns the usage per endpoint and model - the written usage documents
+     * including the counters not yet flushed.
+     *
+     * @return list of usage documents
+     */
+    public List<ItemCollection> getUsage() {
+        Map<String, ItemCollection> result = new LinkedHashMap<>();
+        if (flushInterval > 0) {
+            for (ItemCollection document : documentService.getDocumentsByType(DOCUMENT_TYPE)) {
+                result.put(document.getUniqueID(), document);
+            }
+        }
+        for (ItemCollection pending : getPendingUsage()) {
+            ItemCollection document = result.get(pending.getUniqueID());
+            if (document == null) {
+                result.put(pending.getUniqueID(), pending);
+            } else {
+                addCounts(document, new long[] { pending.getItemValueLong(ITEM_CALLS),
+                        pending.getItemValueLong(ITEM_PROMPT_TOKENS),
+                        pending.getItemValueLong(ITEM_COMPLETION_TOKENS),
+                        pending.getItemValueLong(ITEM_DURATION) });
+            }
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /**
+     * Returns the counters not yet flushed as usage documents.
+     */
+    public List<ItemCollection> getPendingUsage() {
+        List<ItemCollection> result = new ArrayList<>();
+        for (Map.Entry<String, UsageCounter> entry : counters.entrySet()) {
+            UsageCounter counter = entry.getValue();
+            long[] counts = counter.snapshot();
+            if (counts[0] == 0) {
+                continue;
+            }
+            ItemCollection document = new ItemCollection();
+            document.setItemValue(WorkflowKernel.UNIQUEID, entry.getKey());
+            document.setType(DOCUMENT_TYPE);
+            document.setItemValue(ITEM_ENDPOINT, counter.endpointId);
+            document.setItemValue(ITEM_MODEL, counter.model);
+            addCounts(document, counts);
+            result.add(document);
+        }
+        return result;
+    }
+
+    /**
+     * Sums up the usage of a completion on a workitem. The items
+     * <code>ai.usage.calls</code>, <code>ai.usage.prompt_tokens</code>,
+     * <code>ai.usage.completion_tokens</code> and <code>ai.usage.duration</code>
+     * hold the totals of all completions of the process instance,
+     * <code>ai.usage.models</code> the endpoints and models used.
+     *
+     * @param workitem       - the workitem, can be null
+     * @param endpointId     - logical endpoint id
+     * @param model          - the model reported by the server, can be null
+     * @param usage          - the token usage, can be null
+     * @param durationMillis - the request duration
+     */
+    public static void addUsage(ItemCollection workitem, String endpointId, String model, CompletionUsage usage,
+            long durationMillis) {
+        if (workitem == null) {
+            return;
+        }
+        // async completions of the same workitem may finish concurrently
+        synchronized (workitem) {
+            workitem.setItemValue(ITEM_USAGE_CALLS, workitem.getItemValueLong(ITEM_USAGE_CALLS) + 1);
+            workitem.setItemValue(ITEM_USAGE_DURATION, workitem.getItemValueLong(ITEM_USAGE_DURATION) + durationMillis);
+            if (usage != null) {
+                workitem.setItemValue(ITEM_USAGE_PROMPT_TOKENS,
+                        workitem.getItemValueLong(ITEM_USAGE_PROMPT_TOKENS) + usage.getPromptTokens());
+                workitem.setItemValue(ITEM_USAGE_COMPLETION_TOKENS,
+                        workitem.getItemValueLong(ITEM_USAGE_COMPLETION_TOKENS) + usage.getCompletionTokens());
+            }
+            workitem.appendItemValueUnique(ITEM_USAGE_MODELS,
+                    endpointId + (model == null || model.isBlank() ? "" : "/" + model));
+        }
+    }
+
+    /**
+     * Counts a completion result served from the completion cache on a workitem.
+     *
+     * @param workitem - the workitem, can be null
+     */
+    public static void addCacheHit(ItemCollection workitem) {
+        if (workitem == null) {
+            return;
+        }
+        synchronized (workitem) {
+            workitem.setItemValue(ITEM_USAGE_CACHE_HITS, workitem.getItemValueLong(ITEM_USAGE_CACHE_HITS) + 1);
+        }
+    }
+
+    /**
+     * Counts a completion result shared with an identical request in flight on a
+     * workitem. The tokens are accounted only on the workitem of the request
+     * which was sent to the server.
+     *
+     * @param workitem - the workitem, can be null
+     */
+    public static void addCoalesced(ItemCollection workitem) {
+        if (workitem == null) {
+            return;
+        }
+        synchronized (workitem) {
+            workitem.setItemValue(ITEM_USAGE_COALESCED, workitem.getItemValueLong(ITEM_USAGE_COALESCED) + 1);
+        }
+    }
+
+    /**
+     * Returns the $uniqueid of the usage document of an endpoint and model.
+     */
+    static String createKey(String endpointId, String model) {
+        return DOCUMENT_TYPE + "-" + (endpointId + "-" + model).replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private static void addCounts(ItemCollection document, long[] counts) {
+        document.setItemValue(ITEM_CALLS, document.getItemValueLong(ITEM_CALLS) + counts[0]);
+        document.setItemValue(ITEM_PROMPT_TOKENS, document.getItemValueLong(ITEM_PROMPT_TOKENS) + counts[1]);
+        document.setItemValue(ITEM_COMPLETION_TOKENS,
+                document.getItemValueLong(ITEM_COMPLETION_TOKENS) + counts[2]);
+        document.setItemValue(ITEM_DURATION, document.getItemValueLong(ITEM_DURATION) + counts[3]);
+    }
+
+    /**
+     * Lock-free usage counters of one endpoint and model.
+     */
+    private static class UsageCounter {
+        private final String endpointId;
+        private final String model;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder promptTokens = new LongAdder();
+        private final LongAdder completionTokens = new LongAdder();
+        private final LongAdder duration = new LongAdder();
+
+        UsageCounter(String endpointId, String model) {
+            this.endpointId = endpointId;
+            this.model = model;
+        }
+
+        void add(CompletionUsage usage, long durationMillis) {
+            promptTokens.add(usage.getPromptTokens());
+            completionTokens.add(usage.getCompletionTokens());
+            duration.add(durationMillis);
+            calls.increment();
+        }
+
+        long[] snapshot() {
+            return new long[] { calls.sum(), promptTokens.sum(), completionTokens.sum(), duration.sum() };
+        }
+
+        void subtract(long[] delta) {
+            calls.add(-delta[0]);
+            promptTokens.add(-delta[1]);
+            completionTokens.add(-delta[2]);
+            duration.add(-delta[3]);
+        }
+    }
+}
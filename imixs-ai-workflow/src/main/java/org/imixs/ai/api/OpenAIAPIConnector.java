@@ -17,8 +17,30 @@ package org.imixs.ai.api;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.HttpURLConnection;
+import java.net.URI;
 import java.net.URL;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Logger;
+import java.util.stream.BaseStream;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.imixs.workflow.exceptions.PluginException;
@@ -26,6 +48,11 @@ import org.imixs.workflow.exceptions.PluginException;
 import jakarta.ejb.LocalBean;
 import jakarta.ejb.Stateless;
 import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonValue;
 
 /**
  * The OpenAIAPIConnector provides methods to establish a HTTP connection to a
@@ -38,6 +65,11 @@ import jakarta.inject.Inject;
  * Bearer authentication is used when an API key is configured for the endpoint.
  * If no API key is set the request is sent without an Authorization header,
  * which is typical for locally hosted LLM instances.
+ * <p>
+ * Requests are sent via the {@link #post} method, which uses one shared,
+ * keep-alive {@link java.net.http.HttpClient} per logical endpoint (see
+ * {@link LLMEndpoint}). The clients are held in a static registry so they
+ * survive the EJB pool and connections are reused across requests.
  *
  * @author rsoika
  */
@@ -49,10 +81,19 @@ public class OpenAIAPIConnector implements Serializable {
     private static Logger logger = Logger.getLogger(OpenAIAPIConnector.class.getName());
 
     public static final String ERROR_CONNECTION = "ERROR_CONNECTION";
+    public static final String ERROR_ENDPOINT_BUSY = "ERROR_ENDPOINT_BUSY";
+    public static final String ERROR_CIRCUIT_OPEN = "ERROR_CIRCUIT_OPEN";
     public static final String ENV_LLM_SERVICE_ENDPOINT_TIMEOUT = "llm.service.timeout";
 
     public static final String ENDPOINT_URI_COMPLETIONS = "v1/chat/completions";
     public static final String ENDPOINT_URI_EMBEDDINGS = "v1/embeddings";
+    public static final String ENDPOINT_URI_TOKENIZE = "tokenize";
+
+    // upper bound of the response time of a health probe
+    public static final int PROBE_TIMEOUT = 5000;
+
+    // time until the transport of a changed endpoint is closed
+    public static final long RETIRE_DELAY = 600000;
 
     @Inject
     @ConfigProperty(name = ENV_LLM_SERVICE_ENDPOINT_TIMEOUT, defaultValue = "120000")
@@ -61,12 +102,704 @@ public class OpenAIAPIConnector implements Serializable {
     @Inject
     LLMConfigService llmConfigService;
 
+    @Inject
+    LLMMetricsService llmMetricsService;
+
+    // shared transports by logical endpoint id
+    private static final Map<String, LLMEndpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the shared transport of the given logical endpoint. The transport is
+     * created lazily on first access and reused by all following requests.
+     *
+     * @param endpointId - logical endpoint id as defined in imixs-llm.xml
+     * @return the endpoint transport
+     * @throws PluginException if the endpoint id is unknown
+     */
+    public LLMEndpoint getEndpoint(String endpointId) throws PluginException {
+        LLMEndpoint endpoint = endpoints.get(endpointId);
+        if (endpoint == null) {
+            if (!llmConfigService.hasEndpoint(endpointId)) {
+                throw new PluginException(
+                        OpenAIAPIConnector.class.getSimpleName(),
+                        ERROR_CONNECTION,
+                        "Unknown LLM endpoint id: '" + endpointId + "' – verify imixs-llm.xml");
+            }
+            endpoint = endpoints.computeIfAbsent(endpointId, id -> {
+                logger.info("├── 🔌 create HTTP transport for endpoint '" + id + "'");
+                return new LLMEndpoint(id, llmConfigService, serviceTimeout);
+            });
+            llmMetricsService.registerEndpoint(endpointId);
+        }
+        return endpoint;
+    }
+
+    /**
+     * Returns the transport of an endpoint if it was already created, otherwise
+     * null.
+     */
+    static LLMEndpoint findEndpoint(String endpointId) {
+        return endpoints.get(endpointId);
+    }
+
+    /**
+     * Sends a POST request to a LLM endpoint using the shared HTTP client of the
+     * endpoint and returns the response. The response status is not evaluated -
+     * this is up to the caller.
+     * <p>
+     * The request waits for a free slot of the {@link EndpointLimiter} of the
+     * endpoint in the lane of the {@link RequestPriority} of the calling thread,
+     * and is sent to the replica selected by
+     * {@link LLMEndpoint#selectReplica()}. If the response body is a stream (e.g.
+     * <code>ofLines()</code>), the slot is released when the caller closes the
+     * stream.
+     * <p>
+     * Connection errors and the HTTP status 429, 502, 503 and 504 are retried with
+     * a jittered exponential backoff (see {@link LLMEndpoint#getRetries(String)}).
+     * While the {@link CircuitBreaker} of the endpoint is open the method fails
+     * fast with {@link #ERROR_CIRCUIT_OPEN}.
+     *
+     * @param endpointId      - logical endpoint id as defined in imixs-llm.xml
+     * @param resourceURI     - endpoint resource path, e.g.
+     *                        {@link #ENDPOINT_URI_COMPLETIONS}
+     * @param body            - the request body
+     * @param responseHandler - handler for the response body
+     * @return the HTTP response
+     * @throws PluginException if the endpoint id is unknown or the request fails
+     */
+    public <T> HttpResponse<T> post(String endpointId, String resourceURI, BodyPublisher body,
+            BodyHandler<T> responseHandler) throws PluginException {
+        return post(endpointId, resourceURI, body, responseHandler, null);
+    }
+
+    /**
+     * Sends a POST request to a LLM endpoint. Requests with the same affinity key
+     * are routed to the same replica of the endpoint (see
+     * {@link LLMEndpoint#selectReplica(String)}).
+     *
+     * @param endpointId      - logical endpoint id as defined in imixs-llm.xml
+     * @param resourceURI     - endpoint resource path
+     * @param body            - the request body
+     * @param responseHandler - handler for the response body
+     * @param affinityKey     - optional routing key, can be null
+     * @return the HTTP response
+     * @throws PluginException if the endpoint id is unknown or the request fails
+     */
+    public <T> HttpResponse<T> post(String endpointId, String resourceURI, BodyPublisher body,
+            BodyHandler<T> responseHandler, String affinityKey) throws PluginException {
+        LLMEndpoint endpoint = getEndpoint(endpointId);
+        int maxAttempts = 1 + endpoint.getRetries(resourceURI);
+        for (int attempt = 1;; attempt++) {
+            try {
+                HttpResponse<T> response = sendOnce(endpoint, resourceURI, body, responseHandler, affinityKey);
+                if (attempt < maxAttempts && isRetryableStatus(response.statusCode())) {
+                    discard(response);
+                    logger.warning("├── ⚠️ endpoint '" + endpointId + "' returned HTTP " + response.statusCode()
+                            + " - retry " + attempt + "/" + (maxAttempts - 1));
+                    Thread.sleep(endpoint.getRetryDelay(attempt));
+                    continue;
+                }
+                return response;
+            } catch (IOException e) {
+                if (attempt < maxAttempts && isRetryable(e)) {
+                    logger.warning("├── ⚠️ request to endpoint '" + endpointId + "' failed: " + e.getMessage()
+                            + " - retry " + attempt + "/" + (maxAttempts - 1));
+                    try {
+                        Thread.sleep(endpoint.getRetryDelay(attempt));
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw interrupted(endpointId, ie);
+                    }
+                    continue;
+                }
+                logger.severe(e.getMessage());
+                throw new PluginException(
+                        OpenAIAPIConnector.class.getSimpleName(),
+                        ERROR_CONNECTION,
+                        "Failed to send request to endpoint '" + endpointId + "': " + e.getMessage(), e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw interrupted(endpointId, e);
+            }
+        }
+    }
+
+    /**
+     * Sends a POST request to a LLM endpoint asynchronously using the shared HTTP
+     * client of the endpoint. The calling thread is not blocked while waiting for
+     * the LLM - neither while waiting for a free slot of the
+     * {@link EndpointLimiter}, nor while waiting for the response or a retry.
+     * <p>
+     * If the request fails, the returned future completes exceptionally with a
+     * {@link CompletionException} wrapping a {@link PluginException}.
+     *
+     * @param endpointId      - logical endpoint id as defined in imixs-llm.xml
+     * @param resourceURI     - endpoint resource path
+     * @param body            - the request body
+     * @param responseHandler - handler for the response body
+     * @return a future of the HTTP response
+     * @throws PluginException if the endpoint id is unknown or the URL is invalid
+     */
+    public <T> CompletableFuture<HttpResponse<T>> postAsync(String endpointId, String resourceURI,
+            BodyPublisher body, BodyHandler<T> responseHandler) throws PluginException {
+        return postAsync(endpointId, resourceURI, body, responseHandler, null);
+    }
+
+    /**
+     * Sends a POST request to a LLM endpoint asynchronously. Requests with the
+     * same affinity key are routed to the same replica of the endpoint.
+     *
+     * @param endpointId      - logical endpoint id as defined in imixs-llm.xml
+     * @param resourceURI     - endpoint resource path
+     * @param body            - the request body
+     * @param responseHandler - handler for the response body
+     * @param affinityKey     - optional routing key, can be null
+     * @return a future of the HTTP response
+     * @throws PluginException if the endpoint id is unknown or the URL is invalid
+     */
+    public <T> CompletableFuture<HttpResponse<T>> postAsync(String endpointId, String resourceURI,
+            BodyPublisher body, BodyHandler<T> responseHandler, String affinityKey) throws PluginException {
+        LLMEndpoint endpoint = getEndpoint(endpointId);
+        // the priority is bound to the calling thread
+        RequestPriority priority = RequestPriority.current();
+        return postAsync(endpoint, resourceURI, body, responseHandler, affinityKey, priority, 1,
+                1 + endpoint.getRetries(resourceURI))
+                .handle((response, e) -> {
+                    if (e != null) {
+                        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause()
+                                : e;
+                        if (cause instanceof PluginException) {
+                            throw new CompletionException(cause);
+                        }
+                        logger.severe(cause.getMessage());
+                        throw new CompletionException(new PluginException(
+                                OpenAIAPIConnector.class.getSimpleName(),
+                                ERROR_CONNECTION,
+                                "Failed to send request to endpoint '" + endpointId + "': " + cause.getMessage(),
+                                cause instanceof Exception ? (Exception) cause : null));
+                    }
+                    return response;
+                });
+    }
+
+    /**
+     * Sends an asynchronous request and schedules a delayed retry on a retryable
+     * failure.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> postAsync(LLMEndpoint endpoint, String resourceURI,
+            BodyPublisher body, BodyHandler<T> responseHandler, String affinityKey, RequestPriority priority,
+            int attempt, int maxAttempts) {
+        return sendOnceAsync(endpoint, resourceURI, body, responseHandler, affinityKey, priority)
+                .handle((response, e) -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    boolean retry = attempt < maxAttempts
+                            && (e != null ? isRetryable(cause) : isRetryableStatus(response.statusCode()));
+                    if (!retry) {
+                        return e != null ? CompletableFuture.<HttpResponse<T>>failedFuture(cause)
+                                : CompletableFuture.completedFuture(response);
+                    }
+                    if (response != null) {
+                        discard(response);
+                    }
+                    logger.warning("├── ⚠️ request to endpoint '" + endpoint.getId() + "' failed: "
+                            + (e != null ? cause.getMessage() : "HTTP " + response.statusCode())
+                            + " - retry " + attempt + "/" + (maxAttempts - 1));
+                    Executor delayed = CompletableFuture.delayedExecutor(endpoint.getRetryDelay(attempt),
+                            TimeUnit.MILLISECONDS);
+                    return CompletableFuture.runAsync(() -> {
+                    }, delayed).thenCompose(
+                            v -> postAsync(endpoint, resourceURI, body, responseHandler, affinityKey, priority,
+                                    attempt + 1, maxAttempts));
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Sends a single request attempt to a replica of the endpoint.
+     */
+    private <T> HttpResponse<T> sendOnce(LLMEndpoint endpoint, String resourceURI, BodyPublisher body,
+            BodyHandler<T> responseHandler, String affinityKey) throws PluginException, IOException, InterruptedException {
+        String type = LLMMetricsService.getType(resourceURI);
+        checkCircuitBreaker(endpoint, type);
+        EndpointReplica replica = selectReplica(endpoint, affinityKey);
+        HttpRequest request = createHttpRequest(endpoint.getId(), replica.getUrl(), resourceURI, body);
+        EndpointLimiter limiter = endpoint.getLimiter();
+        RequestPriority priority = RequestPriority.current();
+        long queueStart = System.currentTimeMillis();
+        try {
+            limiter.acquireBlocking(priority);
+        } catch (PluginException e) {
+            llmMetricsService.recordError(endpoint.getId(), type, "busy");
+            throw e;
+        }
+        long start = System.currentTimeMillis();
+        llmMetricsService.recordQueueTime(endpoint.getId(), type, start - queueStart);
+        replica.begin();
+        AtomicLong ttfb = new AtomicLong();
+        AtomicInteger status = new AtomicInteger();
+        Runnable done = () -> {
+            replica.end();
+            limiter.release(priority);
+            if (status.get() > 0) {
+                llmMetricsService.recordResponse(endpoint.getId(), type, status.get(), ttfb.get(),
+                        System.currentTimeMillis() - start);
+            }
+        };
+        boolean releaseOnClose = false;
+        try {
+            HttpResponse<T> response = endpoint.getHttpClient().send(request,
+                    timeToFirstByte(responseHandler, start, ttfb));
+            status.set(response.statusCode());
+            reportStatus(endpoint, replica, response.statusCode());
+            if (response.body() instanceof BaseStream) {
+                // hold the slot until the stream was consumed
+                ((BaseStream<?, ?>) response.body()).onClose(done);
+                releaseOnClose = true;
+            }
+            return response;
+        } catch (IOException e) {
+            reportFailure(endpoint, replica, e);
+            llmMetricsService.recordError(endpoint.getId(), type, errorTag(e));
+            throw e;
+        } finally {
+            if (!releaseOnClose) {
+                done.run();
+            }
+        }
+    }
+
+    /**
+     * Sends a single asynchronous request attempt to a replica of the endpoint.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendOnceAsync(LLMEndpoint endpoint, String resourceURI,
+            BodyPublisher body, BodyHandler<T> responseHandler, String affinityKey, RequestPriority priority) {
+        String type = LLMMetricsService.getType(resourceURI);
+        try {
+            checkCircuitBreaker(endpoint, type);
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        EndpointLimiter limiter = endpoint.getLimiter();
+        long queueStart = System.currentTimeMillis();
+        return limiter.acquire(priority)
+                .whenComplete((permit, e) -> {
+                    if (e != null) {
+                        llmMetricsService.recordError(endpoint.getId(), type, "busy");
+                    }
+                })
+                .thenCompose(permit -> {
+                    long start = System.currentTimeMillis();
+                    llmMetricsService.recordQueueTime(endpoint.getId(), type, start - queueStart);
+                    AtomicLong ttfb = new AtomicLong();
+                    // select the replica when the slot is granted
+                    EndpointReplica replica;
+                    HttpRequest request;
+                    try {
+                        replica = selectReplica(endpoint, affinityKey);
+                        request = createHttpRequest(endpoint.getId(), replica.getUrl(), resourceURI, body);
+                    } catch (PluginException e) {
+                        limiter.release(priority);
+                        throw new CompletionException(e);
+                    }
+                    replica.begin();
+                    return endpoint.getHttpClient()
+                            .sendAsync(request, timeToFirstByte(responseHandler, start, ttfb))
+                            .whenComplete((response, e) -> {
+                                if (e != null) {
+                                    reportFailure(endpoint, replica, e);
+                                    llmMetricsService.recordError(endpoint.getId(), type, errorTag(e));
+                                } else {
+                                    reportStatus(endpoint, replica, response.statusCode());
+                                    llmMetricsService.recordResponse(endpoint.getId(), type,
+                                            response.statusCode(), ttfb.get(), System.currentTimeMillis() - start);
+                                }
+                                replica.end();
+                                limiter.release(priority);
+                            });
+                });
+    }
+
+    /**
+     * Creates a POST request to a LLM endpoint identified by the given logical
+     * endpoint id. The request is created for the first url of the endpoint. The
+     * request timeout is defined by the property <code>llm.service.timeout</code>.
+     *
+     * @param endpointId  - logical endpoint id as defined in imixs-llm.xml
+     * @param resourceURI - endpoint resource path, e.g.
+     *                    {@link #ENDPOINT_URI_COMPLETIONS}
+     * @param body        - the request body
+     * @return a HttpRequest
+     * @throws PluginException if the endpoint id is unknown or the URL is invalid
+     */
+    public HttpRequest createHttpRequest(String endpointId, String resourceURI, BodyPublisher body)
+            throws PluginException {
+        String url = llmConfigService.getURL(endpointId);
+        if (url == null || url.isBlank()) {
+            throw new PluginException(
+                    OpenAIAPIConnector.class.getSimpleName(),
+                    ERROR_CONNECTION,
+                    "Unknown LLM endpoint id: '" + endpointId + "' – verify imixs-llm.xml");
+        }
+        if (!url.endsWith("/")) {
+            url = url + "/";
+        }
+        return createHttpRequest(endpointId, url, resourceURI, body);
+    }
+
+    /**
+     * Creates a POST request for the given base url of an endpoint.
+     */
+    private HttpRequest createHttpRequest(String endpointId, String url, String resourceURI, BodyPublisher body)
+            throws PluginException {
+        return createRequestBuilder(endpointId, url, resourceURI)
+                .timeout(Duration.ofMillis(serviceTimeout))
+                .header("Content-Type", "application/json; utf-8")
+                .POST(body).build();
+    }
+
+    /**
+     * Creates a request builder for the given base url of an endpoint with the
+     * Accept and Authorization headers.
+     */
+    private HttpRequest.Builder createRequestBuilder(String endpointId, String url, String resourceURI)
+            throws PluginException {
+        HttpRequest.Builder builder;
+        try {
+            builder = HttpRequest.newBuilder(URI.create(url + resourceURI));
+        } catch (IllegalArgumentException e) {
+            throw new PluginException(
+                    OpenAIAPIConnector.class.getSimpleName(),
+                    ERROR_CONNECTION,
+                    "Invalid URL for endpoint '" + endpointId + "': " + e.getMessage(), e);
+        }
+        builder.header("Accept", "application/json");
+        // Bearer authentication - only if an API key is configured
+        String apiKey = llmConfigService.getApiKey(endpointId);
+        if (apiKey != null && !apiKey.isBlank()) {
+            builder.header("Authorization", "Bearer " + apiKey);
+        }
+        return builder;
+    }
+
+    /**
+     * Sends the health probe to all replicas of an endpoint. A replica is alive if
+     * it answers the probe resource (default <code>/health</code>) with HTTP 200.
+     * A llama.cpp server still loading its model answers with 503.
+     * <p>
+     * Replicas failing the probe are ejected (see
+     * {@link EndpointReplica#probed(boolean)}). If no replica is alive, the
+     * circuit breaker of the endpoint is opened so requests fail fast instead of
+     * running into the connect timeout. The breaker is closed by the next
+     * successful probe.
+     *
+     * @param endpointId - logical endpoint id as defined in imixs-llm.xml
+     * @return the number of replicas alive
+     * @throws PluginException if the endpoint id is unknown
+     */
+    public int probe(String endpointId) throws PluginException {
+        LLMEndpoint endpoint = getEndpoint(endpointId);
+        String resourceURI = llmConfigService.getHealthPath(endpointId);
+        int alive = 0;
+        for (EndpointReplica replica : endpoint.getReplicas()) {
+            HttpRequest request = createRequestBuilder(endpointId, replica.getUrl(), resourceURI)
+                    .timeout(Duration.ofMillis(Math.min(serviceTimeout, PROBE_TIMEOUT)))
+                    .GET().build();
+            boolean ok;
+            try {
+                ok = endpoint.getHttpClient().send(request, BodyHandlers.discarding()).statusCode() == 200;
+            } catch (IOException e) {
+                logger.fine("│   ├── health probe '" + replica.getUrl() + "' failed: " + e.getMessage());
+                ok = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw interrupted(endpointId, e);
+            }
+            replica.probed(ok);
+            if (ok) {
+                alive++;
+            }
+        }
+        if (alive > 0) {
+            if (endpoint.getCircuitBreaker().getState() != CircuitBreaker.State.CLOSED) {
+                endpoint.getCircuitBreaker().onSuccess();
+            }
+        } else if (!endpoint.getReplicas().isEmpty()) {
+            endpoint.getCircuitBreaker().trip();
+        }
+        return alive;
+    }
+
+    /**
+     * Sends the warm-up requests to all healthy replicas of an endpoint which are
+     * not yet warm. The completion warm-up sends one request with
+     * <code>max_tokens</code> 1 for each configured
+     * <code>&lt;warmup-prompt&gt;</code>, so the server loads the model and holds
+     * the prefix of the system prompts in its prompt cache. The embedding warm-up
+     * sends one short embedding request.
+     * <p>
+     * The requests wait in the background lane of the {@link EndpointLimiter}. A
+     * replica is marked as warm if all warm-up requests succeeded, otherwise the
+     * warm-up is repeated on the next call.
+     *
+     * @param endpointId - logical endpoint id as defined in imixs-llm.xml
+     * @return the number of replicas warmed up
+     * @throws PluginException if the endpoint id is unknown
+     */
+    public int warmUp(String endpointId) throws PluginException {
+        LLMEndpoint endpoint = getEndpoint(endpointId);
+        List<JsonObject> completions = new ArrayList<>();
+        if (llmConfigService.isWarmupCompletion(endpointId)) {
+            LLMOptions options = llmConfigService.getOptions(endpointId);
+            boolean cachePrompt = llmConfigService.isCachePrompt(endpointId);
+            List<String> prompts = llmConfigService.getWarmupPrompts(endpointId);
+            if (prompts.isEmpty()) {
+                completions.add(buildWarmupCompletion(options, null, cachePrompt));
+            }
+            for (String prompt : prompts) {
+                completions.add(buildWarmupCompletion(options, prompt, cachePrompt));
+            }
+        }
+        JsonObject embedding = llmConfigService.isWarmupEmbedding(endpointId)
+                ? buildWarmupEmbedding(llmConfigService.getOptions(endpointId))
+                : null;
+        int count = 0;
+        for (EndpointReplica replica : endpoint.getReplicas()) {
+            if (replica.isWarm() || !replica.isHealthy()) {
+                continue;
+            }
+            long start = System.currentTimeMillis();
+            boolean ok = true;
+            for (JsonObject completion : completions) {
+                ok = sendWarmup(endpoint, replica, ENDPOINT_URI_COMPLETIONS, completion) && ok;
+            }
+            if (embedding != null) {
+                ok = sendWarmup(endpoint, replica, ENDPOINT_URI_EMBEDDINGS, embedding) && ok;
+            }
+            if (ok) {
+                replica.setWarm(true);
+                count++;
+                logger.info("├── 🔥 LLM replica '" + replica.getUrl() + "' warmed up in "
+                        + (System.currentTimeMillis() - start) + "ms");
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sends one warm-up request to a replica. Failures are logged and not reported
+     * to the health check - a server loading its model is expected to fail.
+     */
+    private boolean sendWarmup(LLMEndpoint endpoint, EndpointReplica replica, String resourceURI,
+            JsonObject body) throws PluginException {
+        HttpRequest request = createHttpRequest(endpoint.getId(), replica.getUrl(), resourceURI,
+                JsonBodyPublisher.of(body));
+        EndpointLimiter limiter = endpoint.getLimiter();
+        limiter.acquireBlocking(RequestPriority.BACKGROUND);
+        try {
+            int status = endpoint.getHttpClient().send(request, BodyHandlers.discarding()).statusCode();
+            if (status >= 200 && status < 300) {
+                return true;
+            }
+            logger.warning("├── ⚠️ warm-up of '" + replica.getUrl() + resourceURI + "' failed - HTTP " + status);
+        } catch (IOException e) {
+            logger.warning("├── ⚠️ warm-up of '" + replica.getUrl() + resourceURI + "' failed: "
+                    + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw interrupted(endpoint.getId(), e);
+        } finally {
+            limiter.release(RequestPriority.BACKGROUND);
+        }
+        return false;
+    }
+
+    /**
+     * Builds the completion request of the warm-up. The endpoint options (e.g. the
+     * model) are kept, the output is limited to one token.
+     *
+     * @param options      - the options of the endpoint
+     * @param systemPrompt - optional system prompt to be cached by the server
+     * @param cachePrompt  - true to add <code>"cache_prompt": true</code>
+     * @return the completion request
+     */
+    static JsonObject buildWarmupCompletion(LLMOptions options, String systemPrompt, boolean cachePrompt) {
+        JsonArrayBuilder messages = Json.createArrayBuilder();
+        if (systemPrompt != null) {
+            messages.add(Json.createObjectBuilder().add("role", "system").add("content", systemPrompt));
+        }
+        messages.add(Json.createObjectBuilder().add("role", "user").add("content", "ping"));
+        JsonObjectBuilder builder = Json.createObjectBuilder(options.toJson())
+                .add("messages", messages)
+                .add("max_tokens", 1)
+                .add("stream", false);
+        if (cachePrompt) {
+            builder.add("cache_prompt", true);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the embedding request of the warm-up. Only the model of the endpoint
+     * options is kept.
+     */
+    static JsonObject buildWarmupEmbedding(LLMOptions options) {
+        JsonObjectBuilder builder = Json.createObjectBuilder().add("input", "ping");
+        JsonValue model = options.get("model");
+        if (model != null) {
+            builder.add("model", model);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Selects the replica for the next request of an endpoint.
+     */
+    private EndpointReplica selectReplica(LLMEndpoint endpoint, String affinityKey) throws PluginException {
+        EndpointReplica replica = endpoint.selectReplica(affinityKey);
+        if (replica == null) {
+            throw new PluginException(
+                    OpenAIAPIConnector.class.getSimpleName(),
+                    ERROR_CONNECTION,
+                    "No <url> defined for LLM endpoint id: '" + endpoint.getId() + "' – verify imixs-llm.xml");
+        }
+        return replica;
+    }
+
+    /**
+     * Fails fast if the circuit breaker of the endpoint is open.
+     */
+    private void checkCircuitBreaker(LLMEndpoint endpoint, String type) throws PluginException {
+        if (!endpoint.getCircuitBreaker().allowRequest()) {
+            llmMetricsService.recordError(endpoint.getId(), type, "circuit_open");
+            throw new PluginException(
+                    OpenAIAPIConnector.class.getSimpleName(),
+                    ERROR_CIRCUIT_OPEN,
+                    "LLM endpoint '" + endpoint.getId() + "' is unavailable - circuit breaker is open");
+        }
+    }
+
+    /**
+     * Reports the response status to the passive health check of a replica and
+     * the circuit breaker of the endpoint.
+     */
+    private void reportStatus(LLMEndpoint endpoint, EndpointReplica replica, int status) {
+        if (EndpointReplica.isFailureStatus(status)) {
+            replica.failure();
+            endpoint.getCircuitBreaker().onFailure();
+        } else {
+            replica.success();
+            endpoint.getCircuitBreaker().onSuccess();
+        }
+    }
+
+    /**
+     * Reports a failed request to the passive health check of a replica and the
+     * circuit breaker of the endpoint. A request timeout is not counted as a
+     * failure, because the server is alive but busy.
+     */
+    private void reportFailure(LLMEndpoint endpoint, EndpointReplica replica, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof HttpTimeoutException && !(cause instanceof HttpConnectTimeoutException)) {
+            return;
+        }
+        replica.failure();
+        endpoint.getCircuitBreaker().onFailure();
+    }
+
+    /**
+     * Wraps a response handler to measure the time until the response headers
+     * arrive.
+     */
+    private static <T> BodyHandler<T> timeToFirstByte(BodyHandler<T> responseHandler, long start,
+            AtomicLong ttfb) {
+        return responseInfo -> {
+            ttfb.set(System.currentTimeMillis() - start);
+            return responseHandler.apply(responseInfo);
+        };
+    }
+
+    /**
+     * Returns the metrics error tag of a failed request.
+     */
+    private static String errorTag(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof HttpTimeoutException && !(cause instanceof HttpConnectTimeoutException)) {
+            return LLMMetricsService.ERROR_TIMEOUT;
+        }
+        return LLMMetricsService.ERROR_CONNECTION;
+    }
+
+    /**
+     * Returns true if a request failing with the given exception can be retried.
+     * Connection errors are retried, request timeouts are not - the LLM may still
+     * be computing the result.
+     */
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof HttpTimeoutException) {
+            return e instanceof HttpConnectTimeoutException;
+        }
+        return e instanceof IOException;
+    }
+
+    /**
+     * Returns true if a response with the given HTTP status can be retried.
+     */
+    private static boolean isRetryableStatus(int status) {
+        return status == 429 || EndpointReplica.isFailureStatus(status);
+    }
+
+    /**
+     * Discards the body of a response which is retried.
+     */
+    private static void discard(HttpResponse<?> response) {
+        if (response.body() instanceof BaseStream) {
+            ((BaseStream<?, ?>) response.body()).close();
+        }
+    }
+
+    private PluginException interrupted(String endpointId, InterruptedException e) {
+        return new PluginException(
+                OpenAIAPIConnector.class.getSimpleName(),
+                ERROR_CONNECTION,
+                "Request to endpoint '" + endpointId + "' was interrupted", e);
+    }
+
+    /**
+     * Removes the transports of endpoints changed by a reload of the
+     * <code>imixs-llm.xml</code>, so the next request creates a new transport with
+     * the new urls and limits. The worker threads of a removed transport are
+     * released after {@link #RETIRE_DELAY}, so requests in progress can complete.
+     *
+     * @param endpointIds - ids of the changed endpoints
+     */
+    static void retireEndpoints(Collection<String> endpointIds) {
+        Executor delayed = CompletableFuture.delayedExecutor(RETIRE_DELAY, TimeUnit.MILLISECONDS);
+        for (String endpointId : endpointIds) {
+            LLMEndpoint endpoint = endpoints.remove(endpointId);
+            if (endpoint != null) {
+                delayed.execute(endpoint::close);
+            }
+        }
+    }
+
+    /**
+     * Releases all shared endpoint transports. Called on undeployment.
+     */
+    static void releaseEndpoints() {
+        endpoints.values().forEach(LLMEndpoint::close);
+        endpoints.clear();
+    }
+
     /**
      * Creates a HttpURLConnection to a LLM endpoint identified by the given logical
      * endpoint id.
      * <p>
      * The endpoint id is resolved via {@link LLMConfigService}. If no endpoint with
      * the given id is registered a {@link PluginException} is thrown.
+     * <p>
+     * Note: this method opens a new connection for each call. Use
+     * {@link #post(String, String, BodyPublisher, BodyHandler)} to reuse the
+     * pooled keep-alive connections of an endpoint.
      *
      * @param endpointId  - logical endpoint id as defined in imixs-llm.xml
      * @param resourceURI - endpoint resource path, e.g.
@@ -74,6 +807,7 @@ public class OpenAIAPIConnector implements Serializable {
      * @return an open HttpURLConnection ready for writing the request body
      * @throws PluginException if the endpoint id is unknown or the connection fails
      */
+    @Deprecated
     public HttpURLConnection createHttpConnection(String endpointId, String resourceURI)
             throws PluginException {
 
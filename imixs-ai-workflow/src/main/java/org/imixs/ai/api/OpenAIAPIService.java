@@ -14,19 +14,32 @@
 
 package org.imixs.ai.api;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.HttpURLConnection;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -48,8 +61,10 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.LocalBean;
 import jakarta.ejb.Stateless;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.enterprise.event.Event;
 import jakarta.enterprise.event.ObserverException;
 import jakarta.enterprise.inject.Any;
@@ -58,11 +73,11 @@ import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonException;
 import jakarta.json.JsonObject;
 import jakarta.json.JsonObjectBuilder;
 import jakarta.json.JsonReader;
 import jakarta.json.JsonValue;
-import jakarta.ws.rs.core.MediaType;
 
 /**
  * The OpenAIAPIService provides methods to post prompt templates to the OpenAI
@@ -85,6 +100,7 @@ public class OpenAIAPIService implements Serializable {
     public static final String ERROR_API = "ERROR_LLM_API";
     public static final String ERROR_PROMPT_TEMPLATE = "ERROR_LLM_PROMPT_TEMPLATE";
     public static final String ERROR_PROMPT_INFERENCE = "ERROR_LLM_PROMPT_INFERENCE";
+    public static final String ERROR_PROMPT_SIZE = "ERROR_LLM_PROMPT_SIZE";
     public static final String ITEM_AI_RESULT = "ai.result";
     public static final String ITEM_AI_RESULT_ITEM = "ai.result.item";
     public static final String ITEM_SUGGEST_ITEMS = "ai.suggest.items";
@@ -92,11 +108,30 @@ public class OpenAIAPIService implements Serializable {
 
     public static final String LLM_MODEL = "llm.model";
 
+    public static final String COMPACTION_PROMPT = "Summarize the following conversation between a user, "
+            + "an assistant and its tools. Keep all facts, decisions, open questions and references "
+            + "(e.g. workitem ids) needed to continue the conversation. Answer with the summary only.";
+
     public static final String ENV_LLM_SERVICE_ENDPOINT_TIMEOUT = "llm.service.timeout";
 
+    // identical completion requests in flight, shared by all service instances
+    private static final SingleFlight<CompletionResult> completionCalls = new SingleFlight<>();
+
     @Inject
     protected OpenAIAPIConnector openAIAPIConnector;
 
+    @Inject
+    protected LLMConfigService llmConfigService;
+
+    @Inject
+    protected LLMMetricsService llmMetricsService;
+
+    @Inject
+    protected LLMUsageService llmUsageService;
+
+    @Resource
+    protected ManagedExecutorService managedExecutorService;
+
     @Inject
     protected ModelService modelService;
 
@@ -152,30 +187,23 @@ public class OpenAIAPIService implements Serializable {
      */
     public String processPromptResult(String jsonCompletionResult, String resultEventType, ItemCollection workitem)
             throws PluginException {
+        return processPromptResult(CompletionResult.parse(jsonCompletionResult, 0), resultEventType, workitem);
+    }
 
-        // Parse the JSON result
-        JsonReader jsonReader = Json.createReader(new StringReader(jsonCompletionResult));
-        JsonObject parsedJsonObject = jsonReader.readObject();
-        jsonReader.close();
-
-        String promptResult = null;
-
-        // Case 1: OpenAI chat format -> {"choices":[{"message":{"content":"..."}}]}
-        if (parsedJsonObject.containsKey("choices")) {
-            JsonArray choices = parsedJsonObject.getJsonArray("choices");
-            if (choices != null && !choices.isEmpty()) {
-                JsonObject firstChoice = choices.getJsonObject(0);
-                if (firstChoice.containsKey("message")) {
-                    JsonObject message = firstChoice.getJsonObject("message");
-                    promptResult = message.getString("content", null);
-                }
-            }
-        }
-
-        // Case 2: old Llama.cpp format -> {"content": "..."}
-        if (promptResult == null && parsedJsonObject.containsKey("content")) {
-            promptResult = parsedJsonObject.getString("content", null);
-        }
+    /**
+     * This method returns the result message of a parsed completion result.
+     * 
+     * @param completionResult - the parsed completion result
+     * @param resultEventType  - optional event type send to all CDI Event
+     *                         observers for the LLMResultEvent
+     * @param workitem         - workitem instance for an ImixsAIResultEvent
+     * @throws PluginException
+     */
+    public String processPromptResult(CompletionResult completionResult, String resultEventType,
+            ItemCollection workitem) throws PluginException {
+        // OpenAI chat format -> {"choices":[{"message":{"content":"..."}}]}
+        // or old Llama.cpp format -> {"content": "..."}
+        String promptResult = completionResult.getContent();
 
         // Error handling
         if (promptResult == null) {
@@ -225,37 +253,35 @@ public class OpenAIAPIService implements Serializable {
      */
     public ToolCallResult processToolCallResult(String jsonCompletionResult,
             ImixsAIContextHandler contextHandler, String resultType) throws PluginException {
-        boolean taskComplete = false;
-
-        // Parse the JSON result
-        JsonReader jsonReader = Json.createReader(new StringReader(jsonCompletionResult));
-        JsonObject parsedJsonObject = jsonReader.readObject();
-        jsonReader.close();
+        return processToolCallResult(CompletionResult.parse(jsonCompletionResult, 0), contextHandler, resultType);
+    }
 
-        // Check finish_reason
-        if (!parsedJsonObject.containsKey("choices")) {
-            return null;
-        }
-        JsonArray choices = parsedJsonObject.getJsonArray("choices");
-        if (choices == null || choices.isEmpty()) {
-            return null;
-        }
-        JsonObject firstChoice = choices.getJsonObject(0);
-        String finishReason = firstChoice.getString("finish_reason", "");
-        if (!"tool_calls".equals(finishReason)) {
-            return null;
-        }
+    /**
+     * This method processes the tool calls of a parsed completion result. See
+     * {@link #processToolCallResult(String, ImixsAIContextHandler, String)}.
+     *
+     * @param completionResult - the parsed completion result
+     * @param contextHandler   - the current conversation context
+     * @param resultType       - optional event type used to dispatch the business
+     *                         result of a tool call via ImixsAIResultEvent
+     * @return a ToolCallResult if tool calls were found and handled, or null if the
+     *         response did not contain any tool calls
+     * @throws PluginException if a requested tool has no registered handler, or if
+     *                         a handler reports an error
+     */
+    public ToolCallResult processToolCallResult(CompletionResult completionResult,
+            ImixsAIContextHandler contextHandler, String resultType) throws PluginException {
+        boolean taskComplete = false;
 
-        // Extract tool_calls from the assistant message
-        JsonObject message = firstChoice.getJsonObject("message");
-        JsonArray toolCalls = message.getJsonArray("tool_calls");
-        if (toolCalls == null || toolCalls.isEmpty()) {
+        // Check finish_reason and tool_calls
+        if (!completionResult.hasToolCalls()) {
             return null;
         }
+        JsonArray toolCalls = completionResult.getToolCalls();
 
         // Add the assistant message with tool_calls to the context
         // so the LLM knows what it requested
-        contextHandler.addToolCallAssistantMessage(message.toString());
+        contextHandler.addToolCallAssistantMessage(completionResult.getToolCallMessage().toString());
 
         // Process each tool call
         for (JsonValue toolCallValue : toolCalls) {
@@ -378,96 +404,763 @@ public class OpenAIAPIService implements Serializable {
      */
     public String postPromptCompletion(ImixsAIContextHandler imixsAIContextHandler, String apiEndpoint, boolean debug)
             throws PluginException {
-        String response = null;
+        return postPromptCompletionResult(imixsAIContextHandler, apiEndpoint, debug).getJson();
+    }
+
+    /**
+     * Posts a completion request like
+     * {@link #postPromptCompletion(ImixsAIContextHandler, String, boolean)} and
+     * returns the parsed completion result. The result is parsed once and can be
+     * passed to {@link #processToolCallResult(CompletionResult, ImixsAIContextHandler, String)}
+     * and {@link #processPromptResult(CompletionResult, String, ItemCollection)}.
+     *
+     * @param imixsAIContextHandler - provides the current prompt context
+     * @param apiEndpoint           - the logical endpoint id
+     * @param debug                 - debug mode
+     * @return the parsed completion result
+     * @throws PluginException
+     */
+    public CompletionResult postPromptCompletionResult(ImixsAIContextHandler imixsAIContextHandler,
+            String apiEndpoint, boolean debug) throws PluginException {
+        if (imixsAIContextHandler.isStream()) {
+            return streamCompletion(imixsAIContextHandler, apiEndpoint, null, debug);
+        }
         long processingTime = System.currentTimeMillis();
-        int responseCode = 0;
-        HttpURLConnection conn = null;
-        try {
-            conn = openAIAPIConnector.createHttpConnection(apiEndpoint,
-                    OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS);
 
-            if (debug) {
-                logger.info("├── POST Completion: " + conn.getURL().toString());
+        String affinityKey = getAffinityKey(imixsAIContextHandler);
+        JsonObject request = applyPromptCache(apiEndpoint,
+                applyPromptBudget(apiEndpoint, imixsAIContextHandler.getOpenAIMessageObject(), debug), affinityKey);
+        if (debug) {
+            logger.info("├── POST Completion: " + apiEndpoint + " → "
+                    + OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS);
+            logger.info("│   ├── 📥 Completion Request: ");
+            logger.info(request.toString());
+        }
+
+        CompletionCache cache = getCompletionCache(apiEndpoint, request, imixsAIContextHandler.getCache());
+        boolean singleFlight = llmConfigService.isSingleFlight(apiEndpoint);
+        // the key is only computed if the cache or the single-flight needs it
+        String requestKey = cache != null || singleFlight ? CompletionCache.createKey(apiEndpoint, request) : null;
+        String cacheKey = cache != null ? requestKey : null;
+        if (cacheKey != null) {
+            CompletionResult cached = readCachedResult(cache, cacheKey);
+            if (cached != null) {
+                logCacheHit(cached, processingTime, debug);
+                LLMUsageService.addCacheHit(imixsAIContextHandler.getWorkItem());
+                return cached;
+            }
+        }
+
+        if (!singleFlight) {
+            return accountUsage(imixsAIContextHandler, apiEndpoint,
+                    sendCompletion(apiEndpoint, request, affinityKey, cache, cacheKey, processingTime, debug),
+                    processingTime);
+        }
+        if (debug && completionCalls.isInFlight(requestKey)) {
+            logger.info("│   ├── 🔗 joining identical request in flight");
+        }
+        // the first caller sends the request on its own thread, identical
+        // concurrent callers wait for its result
+        AtomicBoolean sent = new AtomicBoolean();
+        CompletionResult response = await(completionCalls.execute(requestKey, () -> {
+            sent.set(true);
+            try {
+                return CompletableFuture.completedFuture(
+                        sendCompletion(apiEndpoint, request, affinityKey, cache, cacheKey, processingTime, debug));
+            } catch (PluginException e) {
+                return CompletableFuture.failedFuture(e);
             }
+        }));
+        if (!sent.get()) {
+            // the tokens are accounted by the caller which sent the request
+            LLMUsageService.addCoalesced(imixsAIContextHandler.getWorkItem());
+            return response;
+        }
+        return accountUsage(imixsAIContextHandler, apiEndpoint, response, processingTime);
+    }
 
-            // Set the appropriate HTTP method
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", MediaType.APPLICATION_JSON);
-            conn.setRequestProperty("Accept", MediaType.APPLICATION_JSON);
-            conn.setDoOutput(true);
+    /**
+     * Sends a completion request and stores the result in the cache.
+     */
+    private CompletionResult sendCompletion(String apiEndpoint, JsonObject request, String affinityKey,
+            CompletionCache cache, String cacheKey, long processingTime, boolean debug) throws PluginException {
+        HttpResponse<String> httpResponse = openAIAPIConnector.post(apiEndpoint,
+                OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS,
+                JsonBodyPublisher.of(request),
+                BodyHandlers.ofString(StandardCharsets.UTF_8), affinityKey);
+        CompletionResult response = readCompletionResponse(apiEndpoint, httpResponse, processingTime, debug);
+        if (cacheKey != null) {
+            cache.put(cacheKey, response.getJson());
+        }
+        return response;
+    }
 
-            // Write the JSON object to the output stream
-            String jsonString = imixsAIContextHandler.getOpenAIMessageObject().toString();
+    /**
+     * Asynchronous variant of
+     * {@link #postPromptCompletion(ImixsAIContextHandler, String, boolean)}.
+     * <p>
+     * The request body is built from the context handler on the calling thread, so
+     * the handler can be modified after the method returns. The calling thread is
+     * not blocked while waiting for the LLM. The returned future is completed on
+     * the container managed executor.
+     * <p>
+     * If the request fails, the future completes exceptionally with a
+     * {@link CompletionException} wrapping a {@link PluginException}. Use
+     * {@link #await(CompletableFuture)} to get the result in a blocking way.
+     *
+     * @param imixsAIContextHandler - provides the current prompt context
+     * @param apiEndpoint           - the logical endpoint id
+     * @param debug                 - debug mode
+     * @return a future of the completion result
+     */
+    public CompletableFuture<String> postPromptCompletionAsync(ImixsAIContextHandler imixsAIContextHandler,
+            String apiEndpoint, boolean debug) {
+        return postPromptCompletionResultAsync(imixsAIContextHandler, apiEndpoint, debug)
+                .thenApply(CompletionResult::getJson);
+    }
 
-            if (debug) {
-                logger.info("│   ├── 📥 Completion Request: ");
-                logger.info(jsonString);
-            }
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonString.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
-            }
-
-            // Reading the response
-            responseCode = conn.getResponseCode();
-            logger.fine("POST Response Code :: " + responseCode);
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder responseBody = new StringBuilder();
-                    String responseLine = null;
-                    while ((responseLine = br.readLine()) != null) {
-                        responseBody.append(responseLine.trim() + "\n");
-                    }
-                    response = responseBody.toString();
-                    if (debug) {
-                        logger.info("│   ├── 📤 Completion Result: ");
-                        logger.info(response);
-                    }
+    /**
+     * Asynchronous variant of
+     * {@link #postPromptCompletionResult(ImixsAIContextHandler, String, boolean)}.
+     * See {@link #postPromptCompletionAsync(ImixsAIContextHandler, String, boolean)}.
+     *
+     * @param imixsAIContextHandler - provides the current prompt context
+     * @param apiEndpoint           - the logical endpoint id
+     * @param debug                 - debug mode
+     * @return a future of the parsed completion result
+     */
+    public CompletableFuture<CompletionResult> postPromptCompletionResultAsync(
+            ImixsAIContextHandler imixsAIContextHandler, String apiEndpoint, boolean debug) {
+        if (imixsAIContextHandler.isStream()) {
+            RequestPriority priority = RequestPriority.current();
+            return CompletableFuture.supplyAsync(() -> {
+                RequestPriority previous = RequestPriority.enter(priority);
+                try {
+                    return streamCompletion(imixsAIContextHandler, apiEndpoint, null, debug);
+                } catch (PluginException e) {
+                    throw new CompletionException(e);
+                } finally {
+                    RequestPriority.restore(previous);
                 }
+            }, getExecutor());
+        }
+        long processingTime = System.currentTimeMillis();
+        String affinityKey = getAffinityKey(imixsAIContextHandler);
+        JsonObject request;
+        try {
+            request = applyPromptCache(apiEndpoint,
+                    applyPromptBudget(apiEndpoint, imixsAIContextHandler.getOpenAIMessageObject(), debug),
+                    affinityKey);
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (debug) {
+            logger.info("├── POST Completion (async): " + apiEndpoint + " → "
+                    + OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS);
+            logger.info("│   ├── 📥 Completion Request: ");
+            logger.info(request.toString());
+        }
+        try {
+            CompletionCache cache = getCompletionCache(apiEndpoint, request, imixsAIContextHandler.getCache());
+            boolean singleFlight = llmConfigService.isSingleFlight(apiEndpoint);
+            String requestKey = cache != null || singleFlight ? CompletionCache.createKey(apiEndpoint, request)
+                    : null;
+            String cacheKey = cache != null ? requestKey : null;
+            if (cacheKey != null) {
+                CompletionResult cached = readCachedResult(cache, cacheKey);
+                if (cached != null) {
+                    logCacheHit(cached, processingTime, debug);
+                    LLMUsageService.addCacheHit(imixsAIContextHandler.getWorkItem());
+                    return CompletableFuture.completedFuture(cached);
+                }
+            }
+            CompletableFuture<CompletionResult> result;
+            AtomicBoolean sent = new AtomicBoolean();
+            if (!singleFlight) {
+                sent.set(true);
+                result = sendCompletionAsync(apiEndpoint, request, affinityKey, cache, cacheKey, processingTime, debug);
             } else {
-                logger.severe("└──  ⚠️ postCompletion failed -  LLM HTTP Result=" + responseCode);
-                // Read error response body for diagnostics
-                String errorBody = "";
-                InputStream errorStream = conn.getErrorStream();
-                if (errorStream != null) {
-                    try (BufferedReader br = new BufferedReader(
-                            new InputStreamReader(errorStream, StandardCharsets.UTF_8))) {
-                        StringBuilder errorResponse = new StringBuilder();
-                        String line;
-                        while ((line = br.readLine()) != null) {
-                            errorResponse.append(line.trim()).append("\n");
+                result = completionCalls.execute(requestKey, () -> {
+                    sent.set(true);
+                    return sendCompletionAsync(apiEndpoint, request, affinityKey, cache, cacheKey, processingTime,
+                            debug);
+                });
+            }
+            if (!sent.get()) {
+                // the tokens are accounted by the caller which sent the request
+                return result.thenApply(response -> {
+                    LLMUsageService.addCoalesced(imixsAIContextHandler.getWorkItem());
+                    return response;
+                });
+            }
+            return result.thenApply(
+                    response -> accountUsage(imixsAIContextHandler, apiEndpoint, response, processingTime));
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Sends a completion request asynchronously and stores the result in the
+     * cache.
+     */
+    private CompletableFuture<CompletionResult> sendCompletionAsync(String apiEndpoint, JsonObject request,
+            String affinityKey, CompletionCache cache, String cacheKey, long processingTime, boolean debug) {
+        try {
+            return openAIAPIConnector.postAsync(apiEndpoint,
+                    OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS,
+                    JsonBodyPublisher.of(request),
+                    BodyHandlers.ofString(StandardCharsets.UTF_8), affinityKey)
+                    .thenApplyAsync(httpResponse -> {
+                        try {
+                            CompletionResult response = readCompletionResponse(apiEndpoint, httpResponse,
+                                    processingTime, debug);
+                            if (cacheKey != null) {
+                                cache.put(cacheKey, response.getJson());
+                            }
+                            return response;
+                        } catch (PluginException e) {
+                            throw new CompletionException(e);
                         }
-                        errorBody = errorResponse.toString();
-                    } catch (IOException ignored) {
-                        // Error stream might be unreadable
+                    }, getExecutor());
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Waits for the result of an asynchronous LLM request. A failed request is
+     * unwrapped and thrown as the original PluginException.
+     *
+     * @param future - a future returned by one of the async methods
+     * @return the result
+     * @throws PluginException if the request failed or the thread was interrupted
+     */
+    public <T> T await(CompletableFuture<T> future) throws PluginException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                    ERROR_PROMPT_INFERENCE, "LLM request was interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof PluginException) {
+                throw (PluginException) cause;
+            }
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                    ERROR_PROMPT_INFERENCE, "LLM request failed: " + cause.getMessage(),
+                    cause instanceof Exception ? (Exception) cause : e);
+        }
+    }
+
+    /**
+     * Evaluates the response of a completion request. The response is parsed once
+     * and the parsed result is passed to all consumers.
+     */
+    private CompletionResult readCompletionResponse(String apiEndpoint, HttpResponse<String> httpResponse,
+            long processingTime, boolean debug) throws PluginException {
+        int responseCode = httpResponse.statusCode();
+        logger.fine("POST Response Code :: " + responseCode);
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            logger.severe("└──  ⚠️ postCompletion failed -  LLM HTTP Result=" + responseCode);
+            logger.severe("└──  LLM Error Response:\n" + httpResponse.body());
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                    OpenAIAPIService.ERROR_PROMPT_INFERENCE,
+                    "LLM Error - HTTP Result " + responseCode);
+        }
+
+        String response = httpResponse.body();
+        long duration = System.currentTimeMillis() - processingTime;
+        CompletionResult result = parseCompletionResult(response, duration);
+        recordUsage(apiEndpoint, result, duration, debug);
+        if (debug) {
+            logger.info("│   ├── 📤 Completion Result: ");
+            logger.info(response);
+            logger.info(
+                    "└── POST Completion completed in " + (System.currentTimeMillis() - processingTime) + "ms");
+        }
+        return result;
+    }
+
+    /**
+     * Parses a completion result received from the server.
+     *
+     * @throws PluginException if the result is not a JSON object
+     */
+    private static CompletionResult parseCompletionResult(String response, long duration) throws PluginException {
+        try {
+            return CompletionResult.parse(response, duration);
+        } catch (JsonException e) {
+            logger.severe("└──  ⚠️ postCompletion failed - invalid completion result: " + e.getMessage());
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                    OpenAIAPIService.ERROR_PROMPT_INFERENCE, "LLM Error - invalid completion result", e);
+        }
+    }
+
+    /**
+     * Returns the cached completion result of a request, or null if the request
+     * is not cached.
+     */
+    private static CompletionResult readCachedResult(CompletionCache cache, String cacheKey) {
+        String cached = cache.get(cacheKey);
+        if (cached == null) {
+            return null;
+        }
+        try {
+            return CompletionResult.parse(cached, 0);
+        } catch (JsonException e) {
+            // not a completion object - request again
+            return null;
+        }
+    }
+
+    /**
+     * Publishes the token counts and the generation speed of a completion result
+     * to the {@link LLMMetricsService} and the {@link LLMUsageService}.
+     */
+    private void recordUsage(String apiEndpoint, CompletionResult result, long duration, boolean debug) {
+        CompletionUsage usage = result.getUsage();
+        if (usage == null) {
+            return;
+        }
+        llmMetricsService.recordUsage(apiEndpoint, usage);
+        llmUsageService.record(apiEndpoint, result.getModel(), usage, duration);
+        if (debug) {
+            logger.info("│   ├── ⏱️ tokens: prompt=" + usage.getPromptTokens() + " completion="
+                    + usage.getCompletionTokens() + " (" + Math.round(usage.getTokensPerSecond()) + " tokens/s)");
+        }
+    }
+
+    /**
+     * Sums up the usage of a completion result on the workitem of the prompt
+     * context (see {@link LLMUsageService#addUsage}).
+     *
+     * @return the completion result
+     */
+    private CompletionResult accountUsage(ImixsAIContextHandler imixsAIContextHandler, String apiEndpoint,
+            CompletionResult result, long processingTime) {
+        LLMUsageService.addUsage(imixsAIContextHandler.getWorkItem(), apiEndpoint, result.getModel(),
+                result.getUsage(), System.currentTimeMillis() - processingTime);
+        return result;
+    }
+
+    /**
+     * Returns the token estimator of the given endpoint. If the endpoint defines
+     * <code>&lt;tokenizer&gt;server&lt;/tokenizer&gt;</code> the tokens are
+     * counted by the <code>/tokenize</code> endpoint of the llama.cpp server,
+     * otherwise by the {@link TokenEstimator#HEURISTIC}.
+     *
+     * @param apiEndpoint - the logical endpoint id
+     * @return the token estimator
+     */
+    public TokenEstimator getTokenEstimator(String apiEndpoint) {
+        if (!LLMConfigService.TOKENIZER_SERVER.equals(llmConfigService.getTokenizer(apiEndpoint))) {
+            return TokenEstimator.HEURISTIC;
+        }
+        return text -> tokenize(apiEndpoint, text);
+    }
+
+    /**
+     * Returns the number of tokens of a text for the given endpoint.
+     *
+     * @param apiEndpoint - the logical endpoint id
+     * @param text        - the text
+     * @return number of tokens
+     * @throws PluginException if the tokenizer of the endpoint is not reachable
+     */
+    public int countTokens(String apiEndpoint, String text) throws PluginException {
+        return getTokenEstimator(apiEndpoint).countTokens(text);
+    }
+
+    /**
+     * Enforces the context size of the endpoint before a completion request is
+     * sent. If the endpoint defines a <code>&lt;context-size&gt;</code>, the
+     * tokens of the request are counted and compared with the budget (context
+     * size minus <code>max_tokens</code>). An oversized request is rejected or
+     * trimmed, depending on <code>&lt;context-overflow&gt;</code>.
+     *
+     * @param apiEndpoint - the logical endpoint id
+     * @param request     - the completion request
+     * @param debug       - debug mode
+     * @return the request - trimmed if necessary
+     * @throws PluginException if the request exceeds the budget and is rejected
+     */
+    public JsonObject applyPromptBudget(String apiEndpoint, JsonObject request, boolean debug)
+            throws PluginException {
+        int contextSize = llmConfigService.getContextSize(apiEndpoint);
+        if (contextSize == 0) {
+            return request;
+        }
+        int maxTokens = PromptBudget.getMaxTokens(request);
+        int budget = maxTokens < contextSize ? contextSize - maxTokens : contextSize;
+        int tokens = PromptBudget.countTokens(request, getTokenEstimator(apiEndpoint));
+        if (debug) {
+            logger.info("│   ├── prompt tokens: " + tokens + " / budget: " + budget);
+        }
+        if (tokens <= budget) {
+            return request;
+        }
+        if (LLMConfigService.CONTEXT_OVERFLOW_REJECT.equals(llmConfigService.getContextOverflow(apiEndpoint))) {
+            logger.warning("├── ⚠️ prompt rejected - " + tokens + " tokens exceed the budget of " + budget
+                    + " tokens of endpoint '" + apiEndpoint + "'");
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(), ERROR_PROMPT_SIZE,
+                    "Prompt exceeds the context size of endpoint '" + apiEndpoint + "': " + tokens
+                            + " tokens, budget " + budget + " tokens");
+        }
+        logger.warning("├── ⚠️ prompt trimmed - " + tokens + " tokens exceed the budget of " + budget
+                + " tokens of endpoint '" + apiEndpoint + "'");
+        return PromptBudget.trim(request, tokens, budget);
+    }
+
+    /**
+     * Compacts the context of a long running conversation (e.g. an agent loop or
+     * an assistant chat) before it is sent to the given endpoint.
+     * <p>
+     * If the endpoint defines a <code>&lt;compaction-threshold&gt;</code> and the
+     * estimated tokens of the context exceed the threshold, the context is
+     * compacted in two steps:
+     * <ol>
+     * <li>Tool results outside the compaction window are truncated to
+     * <code>&lt;compaction-tool-result&gt;</code> characters.</li>
+     * <li>If the context still exceeds the threshold, the messages outside the
+     * window are removed. With <code>&lt;compaction&gt;summary&lt;/compaction&gt;</code>
+     * the removed messages and the previous summary are first summarized by the
+     * LLM. The summary is stored with the system message.</li>
+     * </ol>
+     * The compacted context is stored back into the workitem by
+     * {@link ImixsAIContextHandler#storeContext()}, so the conversation does not
+     * grow without bound. If the summary request fails, the messages are kept and
+     * the request is trimmed by the prompt budget.
+     *
+     * @param imixsAIContextHandler - the conversation context
+     * @param apiEndpoint           - the logical endpoint id
+     * @param debug                 - debug mode
+     * @return true if the context was compacted
+     */
+    public boolean compactContext(ImixsAIContextHandler imixsAIContextHandler, String apiEndpoint, boolean debug) {
+        int threshold = llmConfigService.getCompactionThreshold(apiEndpoint);
+        if (threshold == 0) {
+            return false;
+        }
+        int tokens = imixsAIContextHandler.getEstimatedTokens();
+        if (tokens <= threshold) {
+            return false;
+        }
+        int window = llmConfigService.getCompactionWindow(apiEndpoint);
+        int truncated = imixsAIContextHandler.truncateToolResults(window,
+                llmConfigService.getCompactionToolResult(apiEndpoint));
+        int removed = 0;
+        if (imixsAIContextHandler.getEstimatedTokens() > threshold) {
+            List<ItemCollection> staleMessages = imixsAIContextHandler.getStaleMessages(window);
+            if (!staleMessages.isEmpty()) {
+                if (LLMConfigService.COMPACTION_SUMMARY.equals(llmConfigService.getCompaction(apiEndpoint))) {
+                    String summary = summarizeContext(imixsAIContextHandler, staleMessages, apiEndpoint, debug);
+                    if (summary != null) {
+                        removed = imixsAIContextHandler.compactContext(window, summary);
                     }
+                } else {
+                    removed = imixsAIContextHandler.compactContext(window, null);
                 }
-                logger.severe("└──  LLM Error Response:\n" + errorBody);
-                throw new PluginException(OpenAIAPIService.class.getSimpleName(),
-                        OpenAIAPIService.ERROR_PROMPT_INFERENCE,
-                        "LLM Error - HTTP Result " + responseCode);
             }
+        }
+        if (truncated == 0 && removed == 0) {
+            return false;
+        }
+        if (debug) {
+            logger.info("│   ├── 🗜️ context compacted - " + tokens + " → "
+                    + imixsAIContextHandler.getEstimatedTokens() + " tokens, " + truncated
+                    + " tool results truncated, " + removed + " messages removed");
+        }
+        return true;
+    }
+
+    /**
+     * Requests a summary of the given messages and the previous summary of the
+     * conversation.
+     *
+     * @return the summary or null if the request failed
+     */
+    private String summarizeContext(ImixsAIContextHandler imixsAIContextHandler, List<ItemCollection> messages,
+            String apiEndpoint, boolean debug) {
+        try {
+            ImixsAIContextHandler summaryContext = new ImixsAIContextHandler();
+            summaryContext.setWorkItem(imixsAIContextHandler.getWorkItem());
+            summaryContext.setLlmOptions(llmConfigService.getOptions(apiEndpoint));
+            summaryContext.addSystemMessage(COMPACTION_PROMPT);
+            summaryContext.addQuestion(buildTranscript(imixsAIContextHandler.getSummary(), messages), null, null);
+            String summary = postPromptCompletionResult(summaryContext, apiEndpoint, debug).getContent();
+            if (summary == null || summary.isBlank()) {
+                logger.warning("├── ⚠️ context not compacted - empty summary from endpoint '" + apiEndpoint + "'");
+                return null;
+            }
+            return summary;
+        } catch (PluginException e) {
+            logger.warning("├── ⚠️ context not compacted - summary failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Returns the transcript of a conversation summarized by a compaction - the
+     * previous summary followed by one line per message.
+     *
+     * @param summary  - the previous summary, can be empty
+     * @param messages - the messages to be summarized
+     * @return the transcript
+     */
+    public static String buildTranscript(String summary, List<ItemCollection> messages) {
+        StringBuilder transcript = new StringBuilder();
+        if (summary != null && !summary.isBlank()) {
+            transcript.append(ImixsAIContextHandler.SUMMARY_HEADER).append(summary).append("\n\n");
+        }
+        for (ItemCollection message : messages) {
+            transcript.append(message.getItemValueString(ImixsAIContextHandler.ITEM_ROLE)).append(": ")
+                    .append(message.getItemValueString(ImixsAIContextHandler.ITEM_MESSAGE)).append('\n');
+        }
+        return transcript.toString();
+    }
+
+    /**
+     * Adds the llama.cpp prompt cache parameters to a completion request.
+     * <p>
+     * A conversation (e.g. an agent loop or an assistant chat) resends the whole
+     * history with every turn. If <code>&lt;cache-prompt&gt;</code> is enabled,
+     * the request asks the server to reuse the KV cache of the common prefix
+     * (<code>"cache_prompt": true</code>). If the endpoint defines
+     * <code>&lt;slots&gt;</code>, all turns of a conversation are pinned to the
+     * same server slot (<code>id_slot</code>), derived from the affinity key, so
+     * only the new messages need to be prefilled. Attributes already defined by
+     * the request options are not overwritten.
+     *
+     * @param apiEndpoint - the logical endpoint id
+     * @param request     - the completion request
+     * @param affinityKey - key of the conversation, can be null
+     * @return the request with the prompt cache parameters
+     */
+    public JsonObject applyPromptCache(String apiEndpoint, JsonObject request, String affinityKey) {
+        boolean cachePrompt = llmConfigService.isCachePrompt(apiEndpoint) && !request.containsKey("cache_prompt");
+        int slots = llmConfigService.getSlots(apiEndpoint);
+        boolean pinSlot = slots > 0 && affinityKey != null && !request.containsKey("id_slot");
+        if (!cachePrompt && !pinSlot) {
+            return request;
+        }
+        JsonObjectBuilder builder = Json.createObjectBuilder(request);
+        if (cachePrompt) {
+            builder.add("cache_prompt", true);
+        }
+        if (pinSlot) {
+            // mix the hash so the slot does not correlate with the replica selected
+            // by the same key (see LLMEndpoint.selectReplica)
+            int hash = Integer.rotateLeft(affinityKey.hashCode() * 0x9E3779B9, 16);
+            builder.add("id_slot", Math.floorMod(hash, slots));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Returns the affinity key of a conversation - the $uniqueid of the workitem
+     * of the context, or null if no workitem is set.
+     */
+    private static String getAffinityKey(ImixsAIContextHandler imixsAIContextHandler) {
+        ItemCollection workItem = imixsAIContextHandler.getWorkItem();
+        if (workItem == null || workItem.getUniqueID().isEmpty()) {
+            return null;
+        }
+        return workItem.getUniqueID();
+    }
+
+    /**
+     * Counts the tokens of a text with the <code>/tokenize</code> endpoint of the
+     * llama.cpp server. If the server does not support the endpoint the heuristic
+     * is used.
+     */
+    private int tokenize(String apiEndpoint, String text) throws PluginException {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        String body = Json.createObjectBuilder().add("content", text).build().toString();
+        HttpResponse<String> httpResponse = openAIAPIConnector.post(apiEndpoint,
+                OpenAIAPIConnector.ENDPOINT_URI_TOKENIZE,
+                BodyPublishers.ofString(body, StandardCharsets.UTF_8),
+                BodyHandlers.ofString(StandardCharsets.UTF_8));
+        if (httpResponse.statusCode() == HttpURLConnection.HTTP_OK) {
+            try (JsonReader reader = Json.createReader(new StringReader(httpResponse.body()))) {
+                JsonArray tokens = reader.readObject().getJsonArray("tokens");
+                if (tokens != null) {
+                    return tokens.size();
+                }
+            } catch (JsonException | ClassCastException e) {
+                // fall back to heuristic
+            }
+        }
+        logger.warning("├── ⚠️ /tokenize not supported by endpoint '" + apiEndpoint + "' (HTTP "
+                + httpResponse.statusCode() + ") - using heuristic");
+        return TokenEstimator.estimate(text);
+    }
 
+    /**
+     * Returns the completion cache of the endpoint if the result of the given
+     * request should be cached, otherwise null.
+     */
+    private CompletionCache getCompletionCache(String apiEndpoint, JsonObject request, Boolean override)
+            throws PluginException {
+        LLMEndpoint endpoint = openAIAPIConnector.getEndpoint(apiEndpoint);
+        return endpoint.isCacheable(request, override) ? endpoint.getCompletionCache() : null;
+    }
+
+    private void logCacheHit(CompletionResult response, long processingTime, boolean debug) {
+        if (debug) {
+            logger.info("│   ├── 📤 Completion Result (cached): ");
+            logger.info(response.getJson());
+            logger.info(
+                    "└── POST Completion completed in " + (System.currentTimeMillis() - processingTime) + "ms");
+        }
+    }
+
+    /**
+     * This method POSTs a LLM Prompt as a streaming request
+     * (<code>"stream": true</code>) to the service endpoint
+     * '/v1/chat/completions'. The Server-Sent-Events of the response are parsed
+     * by a {@link CompletionStreamParser} and each content delta is forwarded to
+     * the given listener as soon as it arrives.
+     * <p>
+     * The method blocks until the stream is completed and returns the assembled
+     * result in the non-streaming <code>chat.completion</code> format, so the
+     * result can be processed by {@link #processPromptResult} and
+     * {@link #processToolCallResult} the same way as a blocking completion.
+     *
+     * @param imixsAIContextHandler - provides the current prompt context
+     * @param apiEndpoint           - the logical endpoint id
+     * @param listener              - optional stream listener, can be null
+     * @param debug                 - debug mode
+     * @return the assembled completion result
+     * @throws PluginException
+     */
+    public String postPromptCompletion(ImixsAIContextHandler imixsAIContextHandler, String apiEndpoint,
+            CompletionStreamListener listener, boolean debug) throws PluginException {
+        return streamCompletion(imixsAIContextHandler, apiEndpoint, listener, debug).getJson();
+    }
+
+    /**
+     * Posts a streaming completion request and returns the parsed assembled
+     * result. Each failure, including a failure while the request is built or
+     * sent, is reported to the listener by
+     * {@link CompletionStreamListener#onError(Throwable)}.
+     */
+    private CompletionResult streamCompletion(ImixsAIContextHandler imixsAIContextHandler, String apiEndpoint,
+            CompletionStreamListener listener, boolean debug) throws PluginException {
+        long processingTime = System.currentTimeMillis();
+        CompletionStreamParser parser = new CompletionStreamParser(listener);
+        CompletionCache cache;
+        String cacheKey;
+        String response;
+        long duration;
+        CompletionResult result;
+        try {
+            String affinityKey = getAffinityKey(imixsAIContextHandler);
+            JsonObject request = applyPromptBudget(apiEndpoint, imixsAIContextHandler.getOpenAIMessageObject(),
+                    debug);
+            request = applyPromptCache(apiEndpoint, request, affinityKey);
+            if (!request.containsKey("stream")) {
+                request = Json.createObjectBuilder(request).add("stream", true).build();
+            }
             if (debug) {
-                logger.info(
-                        "└── POST Completion completed in " + (System.currentTimeMillis() - processingTime) + "ms");
+                logger.info("├── POST Completion (stream): " + apiEndpoint + " → "
+                        + OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS);
+                logger.info("│   ├── 📥 Completion Request: ");
+                logger.info(request.toString());
+            }
 
+            cache = getCompletionCache(apiEndpoint, request, imixsAIContextHandler.getCache());
+            cacheKey = cache != null ? CompletionCache.createKey(apiEndpoint, request) : null;
+            if (cacheKey != null) {
+                CompletionResult cached = readCachedResult(cache, cacheKey);
+                if (cached != null) {
+                    logCacheHit(cached, processingTime, debug);
+                    LLMUsageService.addCacheHit(imixsAIContextHandler.getWorkItem());
+                    if (listener != null) {
+                        // replay the cached result as a single chunk
+                        String content = cached.getContent();
+                        if (content != null && !content.isEmpty()) {
+                            listener.onContent(content);
+                        }
+                        listener.onComplete(cached.getJson());
+                    }
+                    return cached;
+                }
             }
-            return response;
 
-        } catch (IOException e) {
+            HttpResponse<Stream<String>> httpResponse = openAIAPIConnector.post(apiEndpoint,
+                    OpenAIAPIConnector.ENDPOINT_URI_COMPLETIONS,
+                    JsonBodyPublisher.of(request),
+                    BodyHandlers.ofLines(), affinityKey);
+
+            try (Stream<String> lines = httpResponse.body()) {
+                int responseCode = httpResponse.statusCode();
+                if (responseCode != HttpURLConnection.HTTP_OK) {
+                    logger.severe("└──  ⚠️ postCompletion failed -  LLM HTTP Result=" + responseCode);
+                    logger.severe("└──  LLM Error Response:\n" + lines.collect(Collectors.joining("\n")));
+                    throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                            OpenAIAPIService.ERROR_PROMPT_INFERENCE,
+                            "LLM Error - HTTP Result " + responseCode);
+                }
+                long firstTokenTime = 0;
+                Iterator<String> iterator = lines.iterator();
+                while (iterator.hasNext()) {
+                    boolean next = parser.accept(iterator.next());
+                    if (firstTokenTime == 0 && !parser.getContent().isEmpty()) {
+                        firstTokenTime = System.currentTimeMillis();
+                    }
+                    if (!next) {
+                        break;
+                    }
+                }
+                if (parser.getError() != null) {
+                    logger.severe("└──  LLM Error Response:\n" + parser.getError());
+                    throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                            OpenAIAPIService.ERROR_PROMPT_INFERENCE,
+                            "LLM Error - " + parser.getError().getString("message", parser.getError().toString()));
+                }
+                if (debug && firstTokenTime > 0) {
+                    logger.info("│   ├── ⏱️ first token after " + (firstTokenTime - processingTime) + "ms");
+                }
+            }
+            response = parser.toCompletionJson();
+            duration = System.currentTimeMillis() - processingTime;
+            result = parseCompletionResult(response, duration);
+        } catch (UncheckedIOException e) {
             logger.severe("└──  ⚠️ postCompletion failed - IO Error: " + e.getMessage());
-            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+            PluginException pluginException = new PluginException(OpenAIAPIService.class.getSimpleName(),
                     OpenAIAPIService.ERROR_PROMPT_INFERENCE, "IO Error: " + e.getMessage(), e);
-
-        } finally {
-            // Close the connection
-            if (conn != null) {
-                conn.disconnect();
+            if (listener != null) {
+                listener.onError(pluginException);
             }
+            throw pluginException;
+        } catch (PluginException e) {
+            if (listener != null) {
+                listener.onError(e);
+            }
+            throw e;
         }
 
+        recordUsage(apiEndpoint, result, duration, debug);
+        if (cacheKey != null) {
+            cache.put(cacheKey, response);
+        }
+        if (listener != null) {
+            listener.onComplete(response);
+        }
+        if (debug) {
+            logger.info("│   ├── 📤 Completion Result: ");
+            logger.info(response);
+            logger.info(
+                    "└── POST Completion completed in " + (System.currentTimeMillis() - processingTime) + "ms");
+        }
+        return accountUsage(imixsAIContextHandler, apiEndpoint, result, processingTime);
     }
 
     /**
@@ -482,6 +1175,9 @@ public class OpenAIAPIService implements Serializable {
      * curl --request POST \ --url http://localhost:8080/completion \ --header
      * "Content-Type: application/json" \ --data '{"prompt": "Building a website can
      * be done in 10 simple steps:","n_predict": 128}'
+     * <p>
+     * This method is an adapter for
+     * {@link #postEmbeddingVector(String, String, LLMOptions, boolean)}.
      *
      * @param prompt      - the prompt to be indexed
      * @param apiEndpoint - llm api endpoint
@@ -490,118 +1186,359 @@ public class OpenAIAPIService implements Serializable {
      */
     public List<Float> postEmbedding(String prompt, String apiEndpoint, LLMOptions options, boolean debug)
             throws PluginException {
+        return toFloatList(postEmbeddingVector(prompt, apiEndpoint, options, debug));
+    }
 
-        List<Float> result = new ArrayList<>();
-
-        if (debug) {
-            logger.info("├── postEmbeddings...");
-            logger.info("├── text size=" + prompt.length());
+    /**
+     * RAG Support - compute vector by text. The vector is returned as a primitive
+     * float array, parsed in one streaming pass from the response.
+     *
+     * @param prompt      - the prompt to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return the embedding vector, empty if the response contained no vector
+     * @throws PluginException
+     */
+    public float[] postEmbeddingVector(String prompt, String apiEndpoint, LLMOptions options, boolean debug)
+            throws PluginException {
+        String jsonPrompt = buildEmbeddingRequest(Json.createValue(prompt), options, debug);
+        HttpResponse<byte[]> httpResponse;
+        EmbeddingCache cache;
+        String cacheKey = null;
+        try {
+            cache = openAIAPIConnector.getEndpoint(apiEndpoint).getEmbeddingCache();
+            if (cache != null) {
+                cacheKey = EmbeddingCache.createKey(apiEndpoint, options, prompt);
+                float[] cached = cache.get(cacheKey);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+            httpResponse = openAIAPIConnector.post(apiEndpoint,
+                    OpenAIAPIConnector.ENDPOINT_URI_EMBEDDINGS,
+                    BodyPublishers.ofString(jsonPrompt, StandardCharsets.UTF_8),
+                    BodyHandlers.ofByteArray());
+        } catch (PluginException e) {
+            throw new PluginException(
+                    OpenAIAPIService.class.getSimpleName(),
+                    ERROR_PROMPT_TEMPLATE,
+                    "⚠️ postEmbeddings failed - '" + apiEndpoint + "' : " + e.getMessage(), e);
+        }
+        AtomicReference<String> model = new AtomicReference<>();
+        float[] vector = firstEmbedding(readEmbeddingResponse(httpResponse, debug, model::set));
+        if (cacheKey != null) {
+            cache.put(cacheKey, vector, model.get());
         }
+        return vector;
+    }
 
-        JsonObjectBuilder jsonObjectBuilder = Json.createObjectBuilder();
-        jsonObjectBuilder.add("content", prompt);
+    /**
+     * Asynchronous variant of
+     * {@link #postEmbedding(String, String, LLMOptions, boolean)}. The calling
+     * thread is not blocked while waiting for the LLM, which allows to overlap the
+     * computation of several embeddings. The returned future is completed on the
+     * container managed executor.
+     *
+     * @param prompt      - the prompt to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return a future of the embedding vector
+     */
+    public CompletableFuture<List<Float>> postEmbeddingAsync(String prompt, String apiEndpoint, LLMOptions options,
+            boolean debug) {
+        return postEmbeddingVectorAsync(prompt, apiEndpoint, options, debug).thenApply(OpenAIAPIService::toFloatList);
+    }
 
-        // Merge resolved options (model, dimensions, etc.) into the request body
-        if (options != null && !options.isEmpty()) {
-            JsonObject opts = options.toJson();
-            for (String key : opts.keySet()) {
-                jsonObjectBuilder.add(key, opts.get(key));
+    /**
+     * Asynchronous variant of
+     * {@link #postEmbeddingVector(String, String, LLMOptions, boolean)}.
+     *
+     * @param prompt      - the prompt to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return a future of the embedding vector
+     */
+    public CompletableFuture<float[]> postEmbeddingVectorAsync(String prompt, String apiEndpoint,
+            LLMOptions options, boolean debug) {
+        String jsonPrompt = buildEmbeddingRequest(Json.createValue(prompt), options, debug);
+        try {
+            EmbeddingCache cache = openAIAPIConnector.getEndpoint(apiEndpoint).getEmbeddingCache();
+            String cacheKey = cache != null ? EmbeddingCache.createKey(apiEndpoint, options, prompt) : null;
+            if (cacheKey != null) {
+                float[] cached = cache.get(cacheKey);
+                if (cached != null) {
+                    return CompletableFuture.completedFuture(cached);
+                }
             }
+            return openAIAPIConnector.postAsync(apiEndpoint,
+                    OpenAIAPIConnector.ENDPOINT_URI_EMBEDDINGS,
+                    BodyPublishers.ofString(jsonPrompt, StandardCharsets.UTF_8),
+                    BodyHandlers.ofByteArray())
+                    .thenApplyAsync(httpResponse -> {
+                        try {
+                            AtomicReference<String> model = new AtomicReference<>();
+                            float[] vector = firstEmbedding(readEmbeddingResponse(httpResponse, debug, model::set));
+                            if (cacheKey != null) {
+                                cache.put(cacheKey, vector, model.get());
+                            }
+                            return vector;
+                        } catch (PluginException e) {
+                            throw new CompletionException(e);
+                        }
+                    }, getExecutor());
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
         }
+    }
 
-        JsonObject jsonObject = jsonObjectBuilder.build();
-        String jsonPrompt = jsonObject.toString();
+    /**
+     * RAG Support - compute the vectors of a list of text chunks.
+     * <p>
+     * This method is an adapter for
+     * {@link #postEmbeddingVectors(List, String, LLMOptions, boolean)}.
+     *
+     * @param chunks      - the text chunks to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return the embedding vectors in the order of the given chunks
+     * @throws PluginException
+     */
+    public List<List<Float>> postEmbeddings(List<String> chunks, String apiEndpoint, LLMOptions options,
+            boolean debug) throws PluginException {
+        return toFloatLists(postEmbeddingVectors(chunks, apiEndpoint, options, debug));
+    }
 
-        try {
-            HttpURLConnection conn = openAIAPIConnector.createHttpConnection(apiEndpoint,
-                    OpenAIAPIConnector.ENDPOINT_URI_EMBEDDINGS);
+    /**
+     * Asynchronous variant of
+     * {@link #postEmbeddings(List, String, LLMOptions, boolean)}.
+     *
+     * @param chunks      - the text chunks to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return a future of the embedding vectors in the order of the given chunks
+     */
+    public CompletableFuture<List<List<Float>>> postEmbeddingsAsync(List<String> chunks, String apiEndpoint,
+            LLMOptions options, boolean debug) {
+        return postEmbeddingVectorsAsync(chunks, apiEndpoint, options, debug)
+                .thenApply(OpenAIAPIService::toFloatLists);
+    }
 
-            // Set the appropriate HTTP method
-            conn.setRequestMethod("POST");
-            conn.setRequestProperty("Content-Type", MediaType.APPLICATION_JSON + "; utf-8");
-            conn.setRequestProperty("Accept", MediaType.APPLICATION_JSON);
-            conn.setDoOutput(true);
+    /**
+     * RAG Support - compute the vectors of a list of text chunks.
+     * <p>
+     * The chunks are sent as an array in the <code>content</code> field of the
+     * embedding request, so many chunks are computed with one HTTP round trip. The
+     * number of chunks per request is limited by the endpoint element
+     * <code>&lt;batch-size&gt;</code> (see
+     * {@link LLMConfigService#getBatchSize(String)}). Multiple batches are sent
+     * concurrently.
+     * <p>
+     * Chunks already embedded before with the same options are taken from the
+     * {@link EmbeddingCache} of the endpoint and are not sent again.
+     *
+     * @param chunks      - the text chunks to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return the embedding vectors in the order of the given chunks
+     * @throws PluginException
+     */
+    public List<float[]> postEmbeddingVectors(List<String> chunks, String apiEndpoint, LLMOptions options,
+            boolean debug) throws PluginException {
+        return await(postEmbeddingVectorsAsync(chunks, apiEndpoint, options, debug));
+    }
 
-            // Write the text to the output stream
-            if (debug) {
-                logger.info("│   ├── POST Text:");
-                logger.info(jsonPrompt);
+    /**
+     * Asynchronous variant of
+     * {@link #postEmbeddingVectors(List, String, LLMOptions, boolean)}.
+     *
+     * @param chunks      - the text chunks to be indexed
+     * @param apiEndpoint - llm api endpoint
+     * @param options     - optional embedding options
+     * @param debug       - debug mode
+     * @return a future of the embedding vectors in the order of the given chunks
+     */
+    public CompletableFuture<List<float[]>> postEmbeddingVectorsAsync(List<String> chunks, String apiEndpoint,
+            LLMOptions options, boolean debug) {
+        if (chunks == null || chunks.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        // look up unchanged chunks in the embedding cache
+        EmbeddingCache cache;
+        try {
+            cache = openAIAPIConnector.getEndpoint(apiEndpoint).getEmbeddingCache();
+        } catch (PluginException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        float[][] result = new float[chunks.size()][];
+        String[] keys = new String[chunks.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            if (cache != null) {
+                keys[i] = EmbeddingCache.createKey(apiEndpoint, options, chunks.get(i));
+                result[i] = cache.get(keys[i]);
             }
-            try (OutputStream os = conn.getOutputStream()) {
-                byte[] input = jsonPrompt.getBytes(StandardCharsets.UTF_8);
-                os.write(input, 0, input.length);
+            if (result[i] == null) {
+                missing.add(i);
             }
+        }
 
-            // Reading the response
-            int responseCode = conn.getResponseCode();
-            if (debug) {
-                logger.info("│   ├── POST Response Code: " + responseCode);
-            }
-            if (responseCode == HttpURLConnection.HTTP_OK) {
-                try (BufferedReader br = new BufferedReader(
-                        new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
-                    StringBuilder responseBody = new StringBuilder();
-                    String responseLine = null;
-                    while ((responseLine = br.readLine()) != null) {
-                        responseBody.append(responseLine.trim() + "\n");
-                        // logger.info("read line: " + responseLine);
-                    }
-                    String jsonResponse = responseBody.toString();
-                    // logger.info(jsonResponse);
-                    // Extract the vector field from the json string
-                    try (JsonReader jsonReader = Json.createReader(new StringReader(jsonResponse))) {
-                        // Lies das JSON-Array
-                        JsonArray rootArray = jsonReader.readArray();
-                        if (!rootArray.isEmpty()) {
-                            JsonObject firstObject = rootArray.getJsonObject(0);
-                            if (firstObject.containsKey("embedding")) {
-                                JsonArray embeddingArray = firstObject.getJsonArray("embedding");
-                                if (!embeddingArray.isEmpty()) {
-                                    JsonArray firstEmbedding = embeddingArray.getJsonArray(0);
-                                    // Extrahiere die Werte als List<Float>
-                                    // result = new float[firstEmbedding.size()];
-                                    for (int i = 0; i < firstEmbedding.size(); i++) {
-                                        result.add((float) firstEmbedding.getJsonNumber(i).doubleValue());
+        int batchSize = llmConfigService.getBatchSize(apiEndpoint);
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        for (int start = 0; start < missing.size(); start += batchSize) {
+            List<Integer> batch = missing.subList(start, Math.min(missing.size(), start + batchSize));
+            JsonArrayBuilder content = Json.createArrayBuilder();
+            batch.forEach(i -> content.add(chunks.get(i)));
+            String jsonPrompt = buildEmbeddingRequest(content.build(), options, debug);
+            int expectedSize = batch.size();
+            try {
+                batches.add(openAIAPIConnector.postAsync(apiEndpoint,
+                        OpenAIAPIConnector.ENDPOINT_URI_EMBEDDINGS,
+                        BodyPublishers.ofString(jsonPrompt, StandardCharsets.UTF_8),
+                        BodyHandlers.ofByteArray())
+                        .thenAcceptAsync(httpResponse -> {
+                            try {
+                                AtomicReference<String> model = new AtomicReference<>();
+                                List<float[]> vectors = readEmbeddingResponse(httpResponse, debug, model::set);
+                                if (vectors.size() != expectedSize) {
+                                    throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                                            ERROR_PROMPT_INFERENCE, "Embedding batch returned " + vectors.size()
+                                                    + " vectors for " + expectedSize + " chunks");
+                                }
+                                for (int j = 0; j < expectedSize; j++) {
+                                    int i = batch.get(j);
+                                    result[i] = vectors.get(j);
+                                    if (cache != null) {
+                                        cache.put(keys[i], result[i], model.get());
                                     }
                                 }
+                            } catch (PluginException e) {
+                                throw new CompletionException(e);
                             }
-                        }
-                    }
-                }
-            } else {
-
-                // logger.severe("│ ├── ⚠️ postEmbeddings failed - '" + apiEndpoint
-                // + OpenAIAPIConnector.ENDPOINT_URI_EMBEDDINGS + "' ");
+                        }, getExecutor()));
+            } catch (PluginException e) {
+                batches.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        if (debug) {
+            logger.info("├── postEmbeddings: " + chunks.size() + " chunks, "
+                    + (chunks.size() - missing.size()) + " cached, " + batches.size() + " batch(es)");
+        }
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture[0]))
+                .thenApply(v -> new ArrayList<>(Arrays.asList(result)));
+    }
 
-                // FEHLERFALL: Response Body aus dem ErrorStream lesen
-                String errorResponse = readStream(conn.getErrorStream());
+    /**
+     * Builds the request body for an embedding request. The content is either a
+     * single string or an array of strings. Resolved options (model, dimensions,
+     * etc.) are merged into the request body.
+     */
+    private String buildEmbeddingRequest(JsonValue content, LLMOptions options, boolean debug) {
+        if (debug) {
+            logger.info("├── postEmbeddings...");
+            logger.info("├── text size=" + content.toString().length());
+        }
+        JsonObjectBuilder jsonObjectBuilder = Json.createObjectBuilder();
+        jsonObjectBuilder.add("content", content);
+        if (options != null && !options.isEmpty()) {
+            JsonObject opts = options.toJson();
+            for (String key : opts.keySet()) {
+                jsonObjectBuilder.add(key, opts.get(key));
+            }
+        }
+        String jsonPrompt = jsonObjectBuilder.build().toString();
+        if (debug) {
+            logger.info("│   ├── POST Text:");
+            logger.info(jsonPrompt);
+        }
+        return jsonPrompt;
+    }
 
-                logger.severe("│   ├── ⚠️ postEmbeddings failed!");
-                logger.severe("│   ├── Status: " + responseCode);
-                logger.severe("│   ├── Response: " + errorResponse); // Hier ist der Content!
+    /**
+     * Evaluates the response of an embedding request and extracts the vectors with
+     * the {@link EmbeddingResponseParser}.
+     */
+    private List<float[]> readEmbeddingResponse(HttpResponse<byte[]> httpResponse, boolean debug)
+            throws PluginException {
+        return readEmbeddingResponse(httpResponse, debug, null);
+    }
 
-                throw new PluginException(OpenAIAPIService.class.getSimpleName(),
-                        OpenAIAPIService.ERROR_PROMPT_INFERENCE,
-                        "HTTP Result " + responseCode);
-            }
-            // Close the connection
-            conn.disconnect();
-            if (debug) {
-                logger.info("│   ├── index size= " + result.size() + " floats");
-                logger.info("├── ✅ postEmbeddings completed");
-            }
-            return result;
+    /**
+     * Reads the vectors of an embedding response and reports the model of the
+     * response to the given listener, which is used to validate the
+     * {@link EmbeddingCache}.
+     */
+    private List<float[]> readEmbeddingResponse(HttpResponse<byte[]> httpResponse, boolean debug,
+            Consumer<String> modelListener) throws PluginException {
+        int responseCode = httpResponse.statusCode();
+        if (debug) {
+            logger.info("│   ├── POST Response Code: " + responseCode);
+        }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            logger.severe("│   ├── ⚠️ postEmbeddings failed!");
+            logger.severe("│   ├── Status: " + responseCode);
+            logger.severe("│   ├── Response: " + new String(httpResponse.body(), StandardCharsets.UTF_8));
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                    OpenAIAPIService.ERROR_PROMPT_INFERENCE,
+                    "HTTP Result " + responseCode);
+        }
+        List<float[]> result;
+        try {
+            result = EmbeddingResponseParser.parse(new ByteArrayInputStream(httpResponse.body()), modelListener);
+        } catch (JsonException e) {
+            throw new PluginException(OpenAIAPIService.class.getSimpleName(),
+                    OpenAIAPIService.ERROR_PROMPT_INFERENCE,
+                    "Invalid embedding response: " + e.getMessage(), e);
+        }
+        if (debug) {
+            logger.info("│   ├── index size= " + result.size() + " vector(s) with "
+                    + (result.isEmpty() ? 0 : result.get(0).length) + " floats");
+            logger.info("├── ✅ postEmbeddings completed");
+        }
+        return result;
+    }
 
-        } catch (IOException e) {
+    /**
+     * Returns the first vector of an embedding result or an empty array.
+     */
+    private float[] firstEmbedding(List<float[]> vectors) {
+        return vectors.isEmpty() ? new float[0] : vectors.get(0);
+    }
 
-            logger.severe(e.getMessage());
-            throw new PluginException(
-                    OpenAIAPIService.class.getSimpleName(),
-                    ERROR_PROMPT_TEMPLATE,
-                    "⚠️ postEmbeddings failed - '" + apiEndpoint + "' : " + e.getMessage(), e);
+    /**
+     * Converts a primitive vector into a List of Float values.
+     */
+    private static List<Float> toFloatList(float[] vector) {
+        List<Float> result = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            result.add(value);
+        }
+        return result;
+    }
 
+    /**
+     * Converts a list of primitive vectors into Lists of Float values.
+     */
+    private static List<List<Float>> toFloatLists(List<float[]> vectors) {
+        List<List<Float>> result = new ArrayList<>(vectors.size());
+        for (float[] vector : vectors) {
+            result.add(toFloatList(vector));
         }
+        return result;
+    }
 
+    /**
+     * Returns the executor used to complete asynchronous requests. This is the
+     * container managed executor, or the common pool if no managed executor is
+     * available (e.g. in unit tests).
+     */
+    private Executor getExecutor() {
+        return managedExecutorService != null ? managedExecutorService : ForkJoinPool.commonPool();
     }
 
     /**
@@ -709,25 +1646,4 @@ public class OpenAIAPIService implements Serializable {
 
         return llmPromptEvent.getPromptTemplate();
     }
-
-    /**
-     * Helper method to read an error message content
-     * 
-     * @param is
-     * @return
-     */
-    private String readStream(InputStream is) {
-        if (is == null)
-            return "No error body";
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                response.append(line.trim());
-            }
-            return response.toString();
-        } catch (IOException e) {
-            return "Could not read error stream: " + e.getMessage();
-        }
-    }
 }
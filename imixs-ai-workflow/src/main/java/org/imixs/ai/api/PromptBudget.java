@@ -0,0 +1,198 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.imixs.workflow.exceptions.PluginException;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonNumber;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.JsonString;
+import jakarta.json.JsonValue;
+
+/**
+ * The PromptBudget counts the tokens of a completion request and trims the
+ * request to the context size of an endpoint.
+ * <p>
+ * The context size is defined by the endpoint element
+ * <code>&lt;context-size&gt;</code> (e.g. the <code>-c</code> parameter of the
+ * llama.cpp server). The budget of the prompt is the context size minus the
+ * tokens reserved for the answer (<code>max_tokens</code> or
+ * <code>n_predict</code>). A prompt exceeding the budget is either rejected or
+ * trimmed before it is sent, so the inference server does not spend a long
+ * prefill on a request it cannot complete.
+ * <p>
+ * Trimming removes the oldest conversation turns first. The system message and
+ * the last message are always kept. If the prompt still exceeds the budget, the
+ * largest remaining message (typically an embedded file context) is truncated.
+ *
+ * @author rsoika
+ */
+public class PromptBudget {
+
+    // token overhead of the chat template per message (role, separators)
+    public static final int MESSAGE_OVERHEAD = 4;
+    public static final String TRUNCATION_MARK = "\n[...]";
+
+    private PromptBudget() {
+    }
+
+    /**
+     * Returns the number of tokens of a completion request - the messages and
+     * the tool definitions. All texts are counted with one call of the estimator.
+     *
+     * @param request   - the completion request
+     * @param estimator - the token estimator
+     * @return number of tokens
+     * @throws PluginException if the estimator fails
+     */
+    public static int countTokens(JsonObject request, TokenEstimator estimator) throws PluginException {
+        List<JsonObject> messages = getMessages(request);
+        StringBuilder text = new StringBuilder();
+        for (JsonObject message : messages) {
+            text.append(getText(message)).append('\n');
+        }
+        JsonValue tools = request.get("tools");
+        if (tools != null) {
+            text.append(tools.toString());
+        }
+        return estimator.countTokens(text.toString()) + messages.size() * MESSAGE_OVERHEAD;
+    }
+
+    /**
+     * Returns the number of tokens reserved for the answer, defined by the request
+     * option <code>max_tokens</code> or <code>n_predict</code>.
+     *
+     * @param request - the completion request
+     * @return reserved tokens or 0 if not defined
+     */
+    public static int getMaxTokens(JsonObject request) {
+        for (String key : new String[] { "max_tokens", "n_predict" }) {
+            JsonValue value = request.get(key);
+            if (value instanceof JsonNumber && ((JsonNumber) value).intValue() > 0) {
+                return ((JsonNumber) value).intValue();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Trims a completion request to the given budget.
+     *
+     * @param request - the completion request
+     * @param tokens  - the current number of tokens of the request
+     * @param budget  - the maximum number of tokens
+     * @return the trimmed request
+     */
+    public static JsonObject trim(JsonObject request, int tokens, int budget) {
+        List<JsonObject> messages = new ArrayList<>(getMessages(request));
+        // calibrate the heuristic per message counts against the measured total
+        int estimated = 0;
+        for (JsonObject message : messages) {
+            estimated += TokenEstimator.estimate(getText(message)) + MESSAGE_OVERHEAD;
+        }
+        double ratio = estimated > 0 ? (double) tokens / estimated : 1.0;
+        int overflow = tokens - budget;
+
+        // 1. drop the oldest turns - an assistant message is dropped together with
+        // its tool results. The last turn is always kept.
+        int first = !messages.isEmpty() && "system".equals(messages.get(0).getString("role", "")) ? 1 : 0;
+        int keepFrom = messages.size() - 1;
+        while (keepFrom > first && "tool".equals(messages.get(keepFrom).getString("role", ""))) {
+            keepFrom--;
+        }
+        while (overflow > 0) {
+            int end = first + 1;
+            while (end < keepFrom && "tool".equals(messages.get(end).getString("role", ""))) {
+                end++;
+            }
+            if (end > keepFrom) {
+                break;
+            }
+            for (int i = first; i < end; i++) {
+                // round down, so the remaining overflow is not underestimated
+                overflow -= (int) ((TokenEstimator.estimate(getText(messages.get(first))) + MESSAGE_OVERHEAD)
+                        * ratio);
+                messages.remove(first);
+            }
+            keepFrom -= end - first;
+        }
+
+        // 2. truncate the largest message
+        if (overflow > 0) {
+            int largest = -1;
+            int largestLength = 0;
+            for (int i = 0; i < messages.size(); i++) {
+                JsonValue content = messages.get(i).get("content");
+                if (content instanceof JsonString && ((JsonString) content).getString().length() > largestLength) {
+                    largest = i;
+                    largestLength = ((JsonString) content).getString().length();
+                }
+            }
+            if (largest >= 0) {
+                String content = messages.get(largest).getString("content");
+                // one extra token compensates rounding of the estimate
+                int cut = ((int) Math.ceil(overflow / ratio) + 1) * TokenEstimator.CHARS_PER_TOKEN
+                        + TRUNCATION_MARK.length();
+                String truncated = content.substring(0, Math.max(0, content.length() - cut)) + TRUNCATION_MARK;
+                messages.set(largest, Json.createObjectBuilder(messages.get(largest))
+                        .add("content", truncated).build());
+            }
+        }
+
+        JsonArrayBuilder messagesArray = Json.createArrayBuilder();
+        messages.forEach(messagesArray::add);
+        JsonObjectBuilder builder = Json.createObjectBuilder(request);
+        builder.add("messages", messagesArray);
+        return builder.build();
+    }
+
+    private static List<JsonObject> getMessages(JsonObject request) {
+        List<JsonObject> result = new ArrayList<>();
+        if (request.get("messages") instanceof JsonArray) {
+            for (JsonValue value : request.getJsonArray("messages")) {
+                if (value instanceof JsonObject) {
+                    result.add((JsonObject) value);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the text of a message counted for the prompt - the content and the
+     * tool calls of an assistant message.
+     */
+    private static String getText(JsonObject message) {
+        JsonValue content = message.get("content");
+        String text = "";
+        if (content instanceof JsonString) {
+            text = ((JsonString) content).getString();
+        } else if (content != null && content != JsonValue.NULL) {
+            text = content.toString();
+        }
+        JsonValue toolCalls = message.get("tool_calls");
+        if (toolCalls != null) {
+            text = text + toolCalls.toString();
+        }
+        return text;
+    }
+}
@@ -0,0 +1,83 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+/**
+ * The RequestPriority classifies the LLM requests of the current thread.
+ * <p>
+ * Interactive requests (e.g. the <code>ImixsAIAssistantAdapter</code> or the
+ * <code>ConditionalAIAdapter</code> during a user's processWorkItem) are always
+ * served first by the {@link EndpointLimiter}. Background requests (e.g. RAG
+ * indexing or scheduled agents) fill the remaining capacity and are limited to
+ * <code>&lt;max-background&gt;</code> concurrent requests per url, so a bulk
+ * job can not occupy all slots of an endpoint.
+ * <p>
+ * The priority is bound to the calling thread. A background job marks its work
+ * as follows:
+ *
+ * <pre>
+ * {@code
+ * RequestPriority previous = RequestPriority.enter(RequestPriority.BACKGROUND);
+ * try {
+ *     ...
+ * } finally {
+ *     RequestPriority.restore(previous);
+ * }
+ * }
+ * </pre>
+ *
+ * Requests without an explicit priority are interactive.
+ *
+ * @author rsoika
+ */
+public enum RequestPriority {
+    INTERACTIVE, BACKGROUND;
+
+    private static final ThreadLocal<RequestPriority> current = new ThreadLocal<>();
+
+    /**
+     * Returns the priority of the current thread. Default is
+     * {@link #INTERACTIVE}.
+     */
+    public static RequestPriority current() {
+        RequestPriority priority = current.get();
+        return priority != null ? priority : INTERACTIVE;
+    }
+
+    /**
+     * Sets the priority of the current thread.
+     *
+     * @param priority - the new priority
+     * @return the previous priority, to be passed to {@link #restore}
+     */
+    public static RequestPriority enter(RequestPriority priority) {
+        RequestPriority previous = current.get();
+        current.set(priority);
+        return previous;
+    }
+
+    /**
+     * Restores the priority returned by {@link #enter}.
+     *
+     * @param previous - the previous priority, can be null
+     */
+    public static void restore(RequestPriority previous) {
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+}
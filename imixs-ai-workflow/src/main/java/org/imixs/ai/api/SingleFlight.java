@@ -0,0 +1,83 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * SingleFlight coalesces identical concurrent calls. While a call with a given
+ * key is in flight, further calls with the same key do not start a new call but
+ * share the result of the running one.
+ * <p>
+ * The key is removed before the shared future is completed, so a call started
+ * after the completion always executes again (or hits a cache).
+ *
+ * @param <T> the result type
+ * @author rsoika
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Executes the call, or joins an identical call in flight.
+     * <p>
+     * The supplier is only invoked by the first caller and may run synchronously
+     * on the calling thread.
+     *
+     * @param key  - the key identifying identical calls
+     * @param call - starts the call
+     * @return a future of the shared result
+     */
+    public CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> existing = calls.putIfAbsent(key, shared);
+        if (existing != null) {
+            // a copy prevents a caller from completing the shared future
+            return existing.copy();
+        }
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((result, e) -> {
+            calls.remove(key, shared);
+            if (e != null) {
+                shared.completeExceptionally(e);
+            } else {
+                shared.complete(result);
+            }
+        });
+        return shared.copy();
+    }
+
+    /**
+     * Returns true if a call with the given key is in flight.
+     */
+    public boolean isInFlight(String key) {
+        return calls.containsKey(key);
+    }
+
+    /**
+     * Returns the number of calls in flight.
+     */
+    public int size() {
+        return calls.size();
+    }
+}
@@ -0,0 +1,63 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.api;
+
+import org.imixs.workflow.exceptions.PluginException;
+
+/**
+ * A TokenEstimator counts the tokens of a text before it is sent to a LLM.
+ * <p>
+ * The {@link #HEURISTIC} estimator approximates the count without calling the
+ * LLM (about 4 characters per token for English text). It is fast but only
+ * approximate. The {@link OpenAIAPIService#getTokenEstimator(String)} returns
+ * an estimator using the <code>/tokenize</code> endpoint of the llama.cpp server
+ * if the endpoint defines <code>&lt;tokenizer&gt;server&lt;/tokenizer&gt;</code>.
+ *
+ * @see PromptBudget
+ * @author rsoika
+ */
+@FunctionalInterface
+public interface TokenEstimator {
+
+    // average number of characters per token of common BPE vocabularies
+    public static final int CHARS_PER_TOKEN = 4;
+
+    /**
+     * Estimator based on the text length - does not call the LLM.
+     */
+    public static final TokenEstimator HEURISTIC = TokenEstimator::estimate;
+
+    /**
+     * Returns the number of tokens of the given text.
+     *
+     * @param text - the text, can be null
+     * @return number of tokens
+     * @throws PluginException if the tokenizer of the LLM is not available
+     */
+    int countTokens(String text) throws PluginException;
+
+    /**
+     * Returns the heuristic token count of a text.
+     *
+     * @param text - the text, can be null
+     * @return estimated number of tokens
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+}
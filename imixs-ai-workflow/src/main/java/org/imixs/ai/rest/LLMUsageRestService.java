@@ -0,0 +1,84 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai.rest;
+
+import java.io.Serializable;
+
+import org.imixs.ai.api.LLMUsageService;
+import org.imixs.workflow.ItemCollection;
+
+import jakarta.enterprise.context.RequestScoped;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * The LLMUsageRestService publishes the token usage per LLM endpoint and model
+ * accounted by the {@link LLMUsageService}.
+ * <p>
+ * Example: <code>GET /api/ai/usage?endpoint=my-llm</code>
+ *
+ * <pre>
+ * [{"endpoint":"my-llm","model":"mistral-7b","calls":120,
+ *   "prompt_tokens":250000,"completion_tokens":18000,"duration":960000}]
+ * </pre>
+ *
+ * @author rsoika
+ */
+@Named
+@RequestScoped
+@Path("/ai/usage")
+@Produces({ MediaType.APPLICATION_JSON })
+public class LLMUsageRestService implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Inject
+    LLMUsageService llmUsageService;
+
+    /**
+     * Returns the usage of all endpoints and models, optionally filtered by
+     * endpoint and model.
+     */
+    @GET
+    public Response getUsage(@QueryParam("endpoint") String endpoint, @QueryParam("model") String model) {
+        JsonArrayBuilder result = Json.createArrayBuilder();
+        for (ItemCollection usage : llmUsageService.getUsage()) {
+            String usageEndpoint = usage.getItemValueString(LLMUsageService.ITEM_ENDPOINT);
+            String usageModel = usage.getItemValueString(LLMUsageService.ITEM_MODEL);
+            if ((endpoint != null && !endpoint.equals(usageEndpoint))
+                    || (model != null && !model.equals(usageModel))) {
+                continue;
+            }
+            result.add(Json.createObjectBuilder()
+                    .add(LLMUsageService.ITEM_ENDPOINT, usageEndpoint)
+                    .add(LLMUsageService.ITEM_MODEL, usageModel)
+                    .add(LLMUsageService.ITEM_CALLS, usage.getItemValueLong(LLMUsageService.ITEM_CALLS))
+                    .add(LLMUsageService.ITEM_PROMPT_TOKENS,
+                            usage.getItemValueLong(LLMUsageService.ITEM_PROMPT_TOKENS))
+                    .add(LLMUsageService.ITEM_COMPLETION_TOKENS,
+                            usage.getItemValueLong(LLMUsageService.ITEM_COMPLETION_TOKENS))
+                    .add(LLMUsageService.ITEM_DURATION, usage.getItemValueLong(LLMUsageService.ITEM_DURATION)));
+        }
+        return Response.ok(result.build().toString()).build();
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.logging.Logger;
 
 import org.imixs.ai.ImixsAIContextHandler;
+import org.imixs.ai.api.CompletionResult;
 import org.imixs.ai.api.LLMConfigService;
 import org.imixs.ai.api.LLMOptions;
 import org.imixs.ai.api.OpenAIAPIService;
@@ -156,8 +157,8 @@ public class ConditionalAIAdapter implements Serializable {
                     logger.info(jsonPrompt.toString());
                 }
 
-                String completionResult = llmService.postPromptCompletion(imixsAIContextHandler, llmAPIEndpoint,
-                        llmAPIDebug);
+                CompletionResult completionResult = llmService.postPromptCompletionResult(imixsAIContextHandler,
+                        llmAPIEndpoint, llmAPIDebug);
                 if (llmAPIDebug) {
                     logger.info("│   ├── ⚙ Completion Request conditional expression...");
                 }
@@ -19,6 +19,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.imixs.ai.ImixsAIContextHandler;
+import org.imixs.ai.api.CompletionResult;
 import org.imixs.ai.api.LLMOptions;
 import org.imixs.workflow.ItemCollection;
 import org.imixs.workflow.ModelManager;
@@ -190,8 +191,10 @@ public class ImixsAIAssistantAdapter extends OpenAIAPIAdapter {
                     imixsAIContextHandler.setDebug(llmAPIDebug);
                     logger.fine("Event Template: " + eventPromptTemplate);
 
-                    String completionResult = llmService.postPromptCompletion(imixsAIContextHandler, llmAPIEndpoint,
-                            llmAPIDebug);
+                    // compact a long running conversation
+                    llmService.compactContext(imixsAIContextHandler, llmAPIEndpoint, llmAPIDebug);
+                    CompletionResult completionResult = llmService.postPromptCompletionResult(imixsAIContextHandler,
+                            llmAPIEndpoint, llmAPIDebug);
                     // process the ai.result....
                     String resultMessage = llmService.processPromptResult(completionResult, llmAPIResultEvent,
                             workitem);
@@ -14,6 +14,7 @@
 
 package org.imixs.ai.workflow;
 
+import org.imixs.ai.api.TokenEstimator;
 import org.imixs.workflow.ItemCollection;
 
 /**
@@ -22,6 +23,14 @@ import org.imixs.workflow.ItemCollection;
  * 
  * The ImixsAIPromptEvent contains the prompt template and the workitem. An
  * observer CDI Bean can update and extend the given prompt.
+ * <p>
+ * The event also provides the estimated number of tokens of the prompt and of
+ * the messages already in the conversation context, so an observer can limit
+ * the size of content added to the prompt (e.g. a large file context).
+ * <p>
+ * An observer can add request options (e.g. a llama.cpp <code>grammar</code>
+ * constraining the output) which are merged into the options of the
+ * completion request.
  * 
  * 
  * @author Ralph Soika
@@ -33,6 +42,9 @@ public class ImixsAIPromptEvent {
 
     private String promptTemplate;
 
+    private int contextTokens = 0;
+    private String options = null;
+
     public ImixsAIPromptEvent(String promptTemplate, ItemCollection workitem) {
         this.workitem = workitem;
         this.promptTemplate = promptTemplate;
@@ -54,4 +66,38 @@ public class ImixsAIPromptEvent {
         this.promptTemplate = promptTemplate;
     }
 
+    /**
+     * Returns the estimated number of tokens of the current prompt template.
+     */
+    public int getTokenCount() {
+        return TokenEstimator.estimate(promptTemplate);
+    }
+
+    /**
+     * Returns the estimated number of tokens of the messages already in the
+     * conversation context, not including this prompt.
+     */
+    public int getContextTokens() {
+        return contextTokens;
+    }
+
+    public void setContextTokens(int contextTokens) {
+        this.contextTokens = contextTokens;
+    }
+
+    /**
+     * Returns the request options (JSON object) added by an observer, or null.
+     */
+    public String getOptions() {
+        return options;
+    }
+
+    /**
+     * Sets request options (JSON object) to be merged into the options of the
+     * completion request.
+     */
+    public void setOptions(String options) {
+        this.options = options;
+    }
+
 }
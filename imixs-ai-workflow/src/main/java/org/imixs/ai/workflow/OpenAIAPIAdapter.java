@@ -18,6 +18,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import org.imixs.ai.ImixsAIContextHandler;
+import org.imixs.ai.api.CompletionResult;
 import org.imixs.ai.api.LLMConfigService;
 import org.imixs.ai.api.LLMOptions;
 import org.imixs.ai.api.OpenAIAPIService;
@@ -49,12 +50,17 @@ import jakarta.inject.Inject;
             <endpoint>https://localhost:8111/</endpoint>
             <result-item>invoice.summary</result-item>
             <result-event>JSON</result-event>
+            <cache>true</cache>
         </imixs-ai>
  * }
  * </pre>
  * 
  * The Endpoint defines the Rest API endpoint of the llama-cpp http server or
  * any compatible OpenAI / Open API rest service endpoint.
+ * <p>
+ * The optional element 'cache' overrides the completion cache mode of the
+ * endpoint. With 'true' an identical prompt is answered from the cache, with
+ * 'false' the LLM is always called.
  * 
  * The result-item defines the item to store the result. Optional also
  * result-events can be defined to handle more complex business rules.
@@ -181,9 +187,11 @@ public class OpenAIAPIAdapter implements SignalAdapter {
                     imixsAIContextHandler.setWorkItem(workitem);
                     imixsAIContextHandler.setLlmOptions(options);          // pre-seed Layers 1+2
                     imixsAIContextHandler.loadPromptDefinition(promptTemplate);  // Layer 3 merges on top
+                    String cache = promptDefinition.getItemValueString("cache");
+                    imixsAIContextHandler.setCache(cache.isBlank() ? null : Boolean.valueOf(cache.trim()));
 
-                    String completionResult = llmService.postPromptCompletion(imixsAIContextHandler, llmAPIEndpoint,
-                            llmAPIDebug);
+                    CompletionResult completionResult = llmService.postPromptCompletionResult(imixsAIContextHandler,
+                            llmAPIEndpoint, llmAPIDebug);
                     // process the ai.result....
                     String resultMessage = llmService.processPromptResult(completionResult, llmAPIResultEvent,
                             workitem);
@@ -0,0 +1,136 @@
+/****************************************************************************
+ * Copyright (c) 2022-2025 Imixs Software Solutions GmbH and others.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License v. 2.0 which is available at
+ * https://www.eclipse.org/legal/epl-2.0
+ *
+ * This Source Code may also be made available under the terms of the
+ * GNU General Public License, version 2 or later (GPL-2.0-or-later),
+ * which is available at https://www.gnu.org/licenses/old-licenses/gpl-2.0.html
+ *
+ * SPDX-License-Identifier: EPL-2.0 OR GPL-2.0-or-later
+ ****************************************************************************/
+
+package org.imixs.ai;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.engine.DocumentEvent;
+import org.imixs.workflow.engine.DocumentService;
+import org.imixs.workflow.exceptions.AccessDeniedException;
+import org.imixs.workflow.exceptions.PluginException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+/**
+ * Tests the removal of the linked context documents (storage mode
+ * <code>document</code>).
+ *
+ * @author rsoika
+ */
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+public class TestAIContextDeletion {
+
+    @Mock
+    DocumentService documentService;
+
+    @InjectMocks
+    ImixsAIContextHandler imixsAIContextHandler;
+
+    @InjectMocks
+    ImixsAIContextDeletionService deletionService;
+
+    private ItemCollection workitem;
+    private ItemCollection contextDocument;
+
+    @BeforeEach
+    public void setUp() throws PluginException {
+        when(documentService.save(any())).thenAnswer(invocation -> {
+            contextDocument = invocation.getArgument(0);
+            contextDocument.replaceItemValue("$uniqueid", "context-1");
+            return contextDocument;
+        });
+        when(documentService.load("context-1")).thenAnswer(invocation -> contextDocument);
+
+        workitem = new ItemCollection();
+        workitem.replaceItemValue("$uniqueid", "workitem-1");
+        workitem.replaceItemValue("$readaccess", "team");
+        workitem.replaceItemValue("$writeaccess", "john");
+        imixsAIContextHandler.setContextStorage(ImixsAIContextHandler.CONTEXT_STORAGE_DOCUMENT);
+        imixsAIContextHandler.importContext(workitem, "ai.agent.context");
+        imixsAIContextHandler.addSystemMessage("You are an agent.");
+        imixsAIContextHandler.addQuestion("Find order 1", "john", null);
+        imixsAIContextHandler.storeContext();
+        assertEquals("context-1", workitem.getItemValueString("ai.agent.context.ref"));
+        assertEquals("workitem-1", contextDocument.getItemValueString("$uniqueidref"));
+    }
+
+    /**
+     * The context document inherits the access of the workitem and is kept in
+     * sync if the context is updated.
+     */
+    @Test
+    public void testUpdateAccess() throws PluginException {
+        assertEquals(List.of("team"), contextDocument.getItemValue("$readaccess"));
+        assertEquals(List.of("john"), contextDocument.getItemValue("$writeaccess"));
+
+        workitem.appendItemValueUnique("$writeaccess", "anna");
+        imixsAIContextHandler.importContext(workitem, "ai.agent.context");
+        imixsAIContextHandler.addQuestion("Find order 2", "anna", null);
+        imixsAIContextHandler.storeContext();
+
+        verify(documentService, atLeastOnce()).load("context-1");
+        assertEquals("context-1", workitem.getItemValueString("ai.agent.context.ref"));
+        assertEquals(List.of("john", "anna"), contextDocument.getItemValue("$writeaccess"));
+        assertEquals(3, imixsAIContextHandler.getContext().size());
+    }
+
+    /**
+     * A switch to the storage mode blob removes the linked document.
+     */
+    @Test
+    public void testSwitchStorage() throws PluginException, AccessDeniedException {
+        imixsAIContextHandler.importContext(workitem, "ai.agent.context");
+        imixsAIContextHandler.setContextStorage(ImixsAIContextHandler.CONTEXT_STORAGE_BLOB);
+        assertEquals(2, imixsAIContextHandler.getContext().size());
+        imixsAIContextHandler.storeContext();
+
+        verify(documentService).remove(contextDocument);
+        assertFalse(workitem.hasItem("ai.agent.context.ref"));
+        assertTrue(workitem.hasItem("ai.agent.context.blob"));
+    }
+
+    /**
+     * The context document is removed together with the workitem, but not with a
+     * snapshot.
+     */
+    @Test
+    public void testDeleteWorkitem() throws AccessDeniedException {
+        ItemCollection snapshot = new ItemCollection(workitem);
+        snapshot.replaceItemValue("type", "snapshot-workitem");
+        deletionService.onDocumentEvent(new DocumentEvent(snapshot, DocumentEvent.ON_DOCUMENT_DELETE));
+        deletionService.onDocumentEvent(new DocumentEvent(workitem, DocumentEvent.ON_DOCUMENT_SAVE));
+        verify(documentService, never()).remove(any(ItemCollection.class));
+
+        deletionService.onDocumentEvent(new DocumentEvent(workitem, DocumentEvent.ON_DOCUMENT_DELETE));
+        verify(documentService).remove(contextDocument);
+    }
+}
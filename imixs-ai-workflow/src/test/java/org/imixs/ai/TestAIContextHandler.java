@@ -15,14 +15,24 @@
 package org.imixs.ai;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.List;
 import java.util.logging.Logger;
 
 import org.imixs.ai.api.LLMOptions;
+import org.imixs.ai.api.OpenAIAPIService;
+import org.imixs.ai.api.PromptBudget;
 import org.imixs.workflow.ItemCollection;
 import org.imixs.workflow.exceptions.AdapterException;
 import org.imixs.workflow.exceptions.ModelException;
@@ -30,6 +40,7 @@ import org.imixs.workflow.exceptions.PluginException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
 
 /**
@@ -306,4 +317,214 @@ public class TestAIContextHandler {
             fail(e);
         }
     }
+
+    /**
+     * Verifies that messages are serialized only once. Repeated calls reuse the
+     * JSON objects of unchanged messages, new and changed messages are serialized
+     * again.
+     */
+    @Test
+    public void testIncrementalSerialization() throws PluginException {
+        assertTrue(imixsAIContextHandler.isEmpty());
+        imixsAIContextHandler.addMessage(ImixsAIContextHandler.ROLE_SYSTEM, "You are a helpful assistant.", null, null);
+        imixsAIContextHandler.addMessage(ImixsAIContextHandler.ROLE_USER, "Which tools do you have?", null, null);
+        assertFalse(imixsAIContextHandler.isEmpty());
+
+        JsonArray first = imixsAIContextHandler.getOpenAIMessages();
+        assertEquals(2, first.size());
+
+        // agent loop - a tool call and its result are appended
+        imixsAIContextHandler.addToolCallAssistantMessage(
+                "{\"role\":\"assistant\",\"tool_calls\":[{\"id\":\"call_1\",\"type\":\"function\","
+                        + "\"function\":{\"name\":\"now\",\"arguments\":\"{}\"}}]}");
+        imixsAIContextHandler.addToolResult("call_1", "2026-01-01");
+        JsonArray second = imixsAIContextHandler.getOpenAIMessages();
+        assertEquals(4, second.size());
+        assertSame(first.get(0), second.get(0));
+        assertSame(first.get(1), second.get(1));
+        assertEquals("call_1", second.getJsonObject(2).getJsonArray("tool_calls").getJsonObject(0).getString("id"));
+        assertEquals("call_1", second.getJsonObject(3).getString("tool_call_id"));
+
+        // a message changed in place is serialized again
+        imixsAIContextHandler.getContext().get(1).setItemValue(ImixsAIContextHandler.ITEM_MESSAGE, "What time is it?");
+        JsonArray third = imixsAIContextHandler.getOpenAIMessages();
+        assertSame(second.get(0), third.get(0));
+        assertNotSame(second.get(1), third.get(1));
+        assertEquals("What time is it?", third.getJsonObject(1).getString("content"));
+        assertSame(second.get(3), third.get(3));
+
+        // a removed message is dropped
+        imixsAIContextHandler.getContext().remove(3);
+        assertEquals(3, imixsAIContextHandler.getOpenAIMessages().size());
+
+        // a new system message resets the context
+        imixsAIContextHandler.addMessage(ImixsAIContextHandler.ROLE_SYSTEM, "Reset", null, null);
+        JsonArray fourth = imixsAIContextHandler.getOpenAIMessages();
+        assertEquals(1, fourth.size());
+        assertEquals("Reset", fourth.getJsonObject(0).getString("content"));
+    }
+
+    /**
+     * Verifies that the handler can be serialized, e.g. as a passivated bean,
+     * after the messages were converted into the OpenAI API format. The cache of
+     * the converted messages is rebuilt after the deserialization.
+     */
+    @Test
+    public void testSerializable() throws PluginException, IOException, ClassNotFoundException {
+        imixsAIContextHandler.addMessage(ImixsAIContextHandler.ROLE_SYSTEM, "You are a helpful assistant.", null, null);
+        imixsAIContextHandler.addMessage(ImixsAIContextHandler.ROLE_USER, "What time is it?", null, null);
+        imixsAIContextHandler.addFunction("now", "Returns the current time", "{\"type\":\"object\"}");
+        imixsAIContextHandler.addOptions("{\"temperature\": 0.2}");
+        JsonObject request = imixsAIContextHandler.getOpenAIMessageObject();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(imixsAIContextHandler);
+        }
+        ImixsAIContextHandler copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            copy = (ImixsAIContextHandler) in.readObject();
+        }
+        assertEquals(request, copy.getOpenAIMessageObject());
+
+        // the rebuilt cache tracks new messages
+        copy.addMessage(ImixsAIContextHandler.ROLE_ASSISTANT, "It is noon.", null, null);
+        JsonArray messages = copy.getOpenAIMessages();
+        assertEquals(3, messages.size());
+        assertSame(messages.get(0), copy.getOpenAIMessages().get(0));
+    }
+
+    /**
+     * Verifies the compaction of a long running agent conversation - stale tool
+     * results are truncated, stale messages are replaced by a rolling summary
+     * stored with the system message.
+     */
+    @Test
+    public void testCompactContext() throws PluginException {
+        String largeResult = "x".repeat(2000);
+        imixsAIContextHandler.addMessage(ImixsAIContextHandler.ROLE_SYSTEM, "You are an agent.", null, null);
+        for (int i = 1; i <= 3; i++) {
+            imixsAIContextHandler.addQuestion("Find order " + i, null, null);
+            imixsAIContextHandler.addToolCallAssistantMessage("{\"role\":\"assistant\",\"tool_calls\":[{\"id\":\"call_"
+                    + i + "\",\"type\":\"function\",\"function\":{\"name\":\"find_workitem\",\"arguments\":\"{}\"}}]}");
+            imixsAIContextHandler.addToolResult("call_" + i, largeResult);
+            imixsAIContextHandler.addAnswer("Order " + i + " found");
+        }
+        assertEquals(13, imixsAIContextHandler.getContext().size());
+        int tokens = imixsAIContextHandler.getEstimatedTokens();
+
+        // a window of 2 messages starts at the tool result of the last turn - the
+        // tool call is kept together with its result
+        assertEquals(9, imixsAIContextHandler.getStaleMessages(2).size());
+        List<ItemCollection> stale = imixsAIContextHandler.getStaleMessages(4);
+        assertEquals(8, stale.size());
+        assertEquals("Find order 1", stale.get(0).getItemValueString(ImixsAIContextHandler.ITEM_MESSAGE));
+
+        // 1. truncate the tool results outside the window
+        assertEquals(2, imixsAIContextHandler.truncateToolResults(4, 100));
+        assertEquals(0, imixsAIContextHandler.truncateToolResults(4, 100));
+        assertEquals(100 + PromptBudget.TRUNCATION_MARK.length(), imixsAIContextHandler.getContext().get(3)
+                .getItemValueString(ImixsAIContextHandler.ITEM_MESSAGE).length());
+        assertEquals(largeResult, imixsAIContextHandler.getContext().get(11)
+                .getItemValueString(ImixsAIContextHandler.ITEM_MESSAGE));
+        assertTrue(imixsAIContextHandler.getEstimatedTokens() < tokens);
+
+        // 2. replace the stale messages by a summary
+        String transcript = OpenAIAPIService.buildTranscript(imixsAIContextHandler.getSummary(), stale);
+        assertTrue(transcript.startsWith("user: Find order 1\n"));
+        assertEquals(8, imixsAIContextHandler.compactContext(4, "Orders 1 and 2 were found."));
+        assertEquals(5, imixsAIContextHandler.getContext().size());
+        assertEquals("Orders 1 and 2 were found.", imixsAIContextHandler.getSummary());
+
+        JsonArray messages = imixsAIContextHandler.getOpenAIMessages();
+        assertEquals("You are an agent.\n\n" + ImixsAIContextHandler.SUMMARY_HEADER + "Orders 1 and 2 were found.",
+                messages.getJsonObject(0).getString("content"));
+        assertEquals("Find order 3", messages.getJsonObject(1).getString("content"));
+        assertEquals("call_3", messages.getJsonObject(3).getString("tool_call_id"));
+
+        // the summary rolls over into the next compaction
+        transcript = OpenAIAPIService.buildTranscript(imixsAIContextHandler.getSummary(),
+                imixsAIContextHandler.getStaleMessages(1));
+        assertTrue(transcript.startsWith(ImixsAIContextHandler.SUMMARY_HEADER + "Orders 1 and 2 were found."));
+
+        // sliding window without summary keeps the summary of the system message
+        assertEquals(3, imixsAIContextHandler.compactContext(1, null));
+        assertEquals(2, imixsAIContextHandler.getContext().size());
+        assertEquals("Orders 1 and 2 were found.", imixsAIContextHandler.getSummary());
+        assertEquals(0, imixsAIContextHandler.compactContext(1, null));
+    }
+
+    /**
+     * Verifies the compaction of a conversation without system message. The
+     * summary is held by a separate summary message, so the caller can still
+     * detect the missing system prompt.
+     */
+    @Test
+    public void testCompactContextWithoutSystemMessage() throws PluginException {
+        for (int i = 1; i <= 3; i++) {
+            imixsAIContextHandler.addQuestion("Find order " + i, null, null);
+            imixsAIContextHandler.addAnswer("Order " + i + " found");
+        }
+        assertEquals(4, imixsAIContextHandler.compactContext(2, "Orders 1 and 2 were found."));
+        assertFalse(imixsAIContextHandler.hasSystemMessage());
+        assertEquals(3, imixsAIContextHandler.getContext().size());
+        assertEquals(ImixsAIContextHandler.ROLE_SUMMARY, imixsAIContextHandler.getContext().get(0)
+                .getItemValueString(ImixsAIContextHandler.ITEM_ROLE));
+        assertEquals("Orders 1 and 2 were found.", imixsAIContextHandler.getSummary());
+
+        JsonArray messages = imixsAIContextHandler.getOpenAIMessages();
+        assertEquals(3, messages.size());
+        assertEquals(ImixsAIContextHandler.ROLE_SYSTEM, messages.getJsonObject(0).getString("role"));
+        assertEquals(ImixsAIContextHandler.SUMMARY_HEADER + "Orders 1 and 2 were found.",
+                messages.getJsonObject(0).getString("content"));
+        assertEquals("Find order 3", messages.getJsonObject(1).getString("content"));
+
+        // the summary message is kept and updated by the next compaction
+        imixsAIContextHandler.addQuestion("Find order 4", null, null);
+        imixsAIContextHandler.addAnswer("Order 4 found");
+        assertEquals(2, imixsAIContextHandler.compactContext(2, "Orders 1 to 3 were found."));
+        assertEquals(3, imixsAIContextHandler.getContext().size());
+        assertEquals("Orders 1 to 3 were found.", imixsAIContextHandler.getSummary());
+        assertFalse(imixsAIContextHandler.hasSystemMessage());
+    }
+
+    /**
+     * Verifies the compressed storage of a context. The workitem only holds the
+     * blob and the message count, the context is decoded on first access. A
+     * context stored as a list of maps is converted on the next store.
+     */
+    @Test
+    public void testContextStorage() throws PluginException {
+        ItemCollection workitem = new ItemCollection();
+        imixsAIContextHandler.importContext(workitem, "ai.agent.context");
+        imixsAIContextHandler.addSystemMessage("You are an agent.");
+        imixsAIContextHandler.addQuestion("Find order 1", "john", null);
+        imixsAIContextHandler.addToolResult("call_1", "x".repeat(10000));
+        imixsAIContextHandler.storeContext();
+        // default storage - a list of maps
+        assertEquals(3, workitem.getItemValue("ai.agent.context").size());
+        assertEquals(3, workitem.getItemValueInteger("ai.agent.context.count"));
+
+        imixsAIContextHandler.setContextStorage(ImixsAIContextHandler.CONTEXT_STORAGE_BLOB);
+        imixsAIContextHandler.importContext(workitem, "ai.agent.context");
+        imixsAIContextHandler.addAnswer("Order 1 found");
+        imixsAIContextHandler.storeContext();
+        assertFalse(workitem.hasItem("ai.agent.context"));
+        assertEquals(4, workitem.getItemValueInteger("ai.agent.context.count"));
+        byte[] blob = (byte[]) workitem.getItemValue("ai.agent.context.blob").get(0);
+        assertTrue(blob.length < 1000);
+
+        // reload from the blob
+        ImixsAIContextHandler handler = new ImixsAIContextHandler();
+        handler.importContext(workitem, "ai.agent.context");
+        assertTrue(handler.hasSystemMessage());
+        assertEquals(4, handler.getContext().size());
+        assertEquals("john", handler.getContext().get(1).getItemValueString(ImixsAIContextHandler.ITEM_USERID));
+        assertEquals("Order 1 found", handler.getLastMessage(ImixsAIContextHandler.ROLE_ASSISTANT));
+
+        // back to the default storage
+        handler.storeContext();
+        assertFalse(workitem.hasItem("ai.agent.context.blob"));
+        assertEquals(4, workitem.getItemValue("ai.agent.context").size());
+    }
 }
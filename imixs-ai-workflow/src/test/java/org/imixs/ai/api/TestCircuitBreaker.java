@@ -0,0 +1,67 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestCircuitBreaker {
+
+    /**
+     * The breaker opens after the threshold and fails fast while open.
+     */
+    @Test
+    public void testOpenAfterThreshold() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000);
+        breaker.onFailure();
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+    }
+
+    /**
+     * After the open duration one trial request is allowed. A successful trial
+     * closes the breaker, a failed trial opens it again.
+     */
+    @Test
+    public void testHalfOpenTrial() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 1, 0);
+        breaker.onFailure();
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * A threshold of 0 disables the breaker.
+     */
+    @Test
+    public void testDisabled() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 0, 60000);
+        for (int i = 0; i < 10; i++) {
+            breaker.onFailure();
+        }
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    /**
+     * A failed health probe opens the breaker immediately.
+     */
+    @Test
+    public void testTrip() {
+        CircuitBreaker breaker = new CircuitBreaker("test", 3, 60000);
+        breaker.trip();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.allowRequest());
+        breaker.onSuccess();
+        assertTrue(breaker.allowRequest());
+    }
+}
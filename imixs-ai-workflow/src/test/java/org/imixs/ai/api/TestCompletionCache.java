@@ -0,0 +1,83 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+public class TestCompletionCache {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The key does not depend on the order of the JSON attributes or transport
+     * parameters like the stream flag, but on the endpoint and the content.
+     */
+    @Test
+    public void testCreateKey() {
+        JsonObject a = parse("{\"messages\":[{\"role\":\"user\",\"content\":\"Hi\"}],\"temperature\":0}");
+        JsonObject b = parse("{\"temperature\":0,\"stream\":true,\"cache_prompt\":true,\"id_slot\":1,"
+                + "\"messages\":[{\"content\":\"Hi\",\"role\":\"user\"}]}");
+        JsonObject c = parse("{\"messages\":[{\"role\":\"user\",\"content\":\"Hello\"}],\"temperature\":0}");
+        assertEquals(CompletionCache.createKey("llm", a), CompletionCache.createKey("llm", b));
+        assertNotEquals(CompletionCache.createKey("llm", a), CompletionCache.createKey("llm", c));
+        assertNotEquals(CompletionCache.createKey("llm", a), CompletionCache.createKey("other", a));
+    }
+
+    @Test
+    public void testIsDeterministic() {
+        assertTrue(CompletionCache.isDeterministic(parse("{\"temperature\":0.0}")));
+        assertFalse(CompletionCache.isDeterministic(parse("{\"temperature\":0.7}")));
+        assertFalse(CompletionCache.isDeterministic(parse("{}")));
+    }
+
+    /**
+     * The least recently used entry is evicted and expired entries are not
+     * returned.
+     */
+    @Test
+    public void testLRUAndTTL() throws InterruptedException {
+        CompletionCache cache = new CompletionCache("test", 2, 0, null);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+        cache.put("c", "3");
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(2, cache.size());
+
+        CompletionCache expiring = new CompletionCache("test", 2, 1, null);
+        expiring.put("a", "1");
+        Thread.sleep(5);
+        assertNull(expiring.get("a"));
+    }
+
+    /**
+     * Entries evicted from memory are loaded from the disk tier.
+     */
+    @Test
+    public void testDiskTier() {
+        CompletionCache cache = new CompletionCache("test", 1, 60000, tempDir);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+
+        CompletionCache restarted = new CompletionCache("test", 1, 60000, tempDir);
+        assertEquals("2", restarted.get("b"));
+    }
+
+    private static JsonObject parse(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+}
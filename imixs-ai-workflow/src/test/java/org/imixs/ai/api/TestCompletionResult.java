@@ -0,0 +1,72 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.json.JsonException;
+import jakarta.json.JsonObject;
+
+public class TestCompletionResult {
+
+    /**
+     * Content, finish reason and usage are read from the first choice. Whitespace
+     * inside the content is preserved.
+     */
+    @Test
+    public void testContent() {
+        String json = "{\"id\":\"1\",\"model\":\"mistral\","
+                + "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\","
+                + "\"content\":\"  line 1\\n\\n  line 2  \"},\"finish_reason\":\"stop\"},"
+                + "{\"index\":1,\"message\":{\"content\":\"other\"}}],"
+                + "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":5},\"timings\":{\"predicted_per_second\":8.5}}";
+        CompletionResult result = CompletionResult.parse(json, 1000);
+        assertEquals("  line 1\n\n  line 2  ", result.getContent());
+        assertEquals("stop", result.getFinishReason());
+        assertEquals("mistral", result.getModel());
+        assertFalse(result.hasToolCalls());
+        assertEquals(12, result.getUsage().getPromptTokens());
+        assertEquals(5, result.getUsage().getCompletionTokens());
+        assertEquals(8.5, result.getUsage().getTokensPerSecond(), 0.001);
+
+        // old llama.cpp format
+        result = CompletionResult.parse("{\"content\":\"Hello\",\"stop\":true}", 0);
+        assertEquals("Hello", result.getContent());
+        assertNull(result.getUsage());
+
+        assertThrows(JsonException.class, () -> CompletionResult.parse("[1,2]", 0));
+    }
+
+    @Test
+    public void testToolCalls() {
+        String json = "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":null,\"tool_calls\":["
+                + "{\"id\":\"call_1\",\"type\":\"function\",\"function\":{\"name\":\"search\","
+                + "\"arguments\":\"{\\\"query\\\":\\\"invoice\\\"}\"}}]},\"finish_reason\":\"tool_calls\"}]}";
+        CompletionResult result = CompletionResult.parse(json, 0);
+        assertTrue(result.hasToolCalls());
+        assertNull(result.getContent());
+        assertEquals("search",
+                result.getToolCalls().getJsonObject(0).getJsonObject("function").getString("name"));
+        JsonObject message = result.getToolCallMessage();
+        assertEquals("assistant", message.getString("role"));
+        assertTrue(message.isNull("content"));
+        assertEquals(1, message.getJsonArray("tool_calls").size());
+    }
+
+    /**
+     * The parsed result keeps the JSON String for the cache and for callers
+     * expecting the raw result.
+     */
+    @Test
+    public void testGetJson() {
+        String json = "{\"choices\":[{\"message\":{\"content\":\"Hi\"},\"finish_reason\":\"stop\"}]}";
+        CompletionResult result = CompletionResult.parse(json, 0);
+        assertSame(json, result.getJson());
+        assertEquals("Hi", result.getContent());
+    }
+}
@@ -0,0 +1,87 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+public class TestCompletionStreamParser {
+
+    /**
+     * Content deltas are forwarded to the listener and assembled into a
+     * chat.completion result.
+     */
+    @Test
+    public void testContentDeltas() {
+        List<String> fragments = new ArrayList<>();
+        CompletionStreamParser parser = new CompletionStreamParser(fragments::add);
+
+        assertTrue(parser.accept(
+                "data: {\"id\":\"c1\",\"model\":\"m\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\"}}]}"));
+        assertTrue(parser.accept(""));
+        assertTrue(parser.accept(": keep-alive comment"));
+        assertTrue(parser.accept("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\"Hello\"}}]}"));
+        assertTrue(parser.accept("data: {\"choices\":[{\"index\":0,\"delta\":{\"content\":\" World\"}}]}"));
+        assertTrue(parser.accept(
+                "data: {\"choices\":[{\"index\":0,\"delta\":{},\"finish_reason\":\"stop\"}],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":2}}"));
+        assertFalse(parser.accept("data: [DONE]"));
+        assertTrue(parser.isDone());
+
+        assertEquals(List.of("Hello", " World"), fragments);
+
+        JsonObject result = parse(parser.toCompletionJson());
+        assertEquals("c1", result.getString("id"));
+        JsonObject choice = result.getJsonArray("choices").getJsonObject(0);
+        assertEquals("stop", choice.getString("finish_reason"));
+        assertEquals("Hello World", choice.getJsonObject("message").getString("content"));
+        assertEquals(2, result.getJsonObject("usage").getInt("completion_tokens"));
+    }
+
+    /**
+     * Tool call fragments are assembled by index; arguments are concatenated.
+     */
+    @Test
+    public void testToolCallDeltas() {
+        CompletionStreamParser parser = new CompletionStreamParser();
+        parser.accept("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,\"id\":\"call_1\","
+                + "\"type\":\"function\",\"function\":{\"name\":\"get_weather\",\"arguments\":\"\"}}]}}]}");
+        parser.accept("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,"
+                + "\"function\":{\"arguments\":\"{\\\"city\\\":\"}}]}}]}");
+        parser.accept("data: {\"choices\":[{\"delta\":{\"tool_calls\":[{\"index\":0,"
+                + "\"function\":{\"arguments\":\"\\\"Berlin\\\"}\"}}]}}]}");
+        parser.accept("data: {\"choices\":[{\"delta\":{},\"finish_reason\":\"tool_calls\"}]}");
+        parser.accept("data: [DONE]");
+
+        JsonObject choice = parse(parser.toCompletionJson()).getJsonArray("choices").getJsonObject(0);
+        assertEquals("tool_calls", choice.getString("finish_reason"));
+        JsonObject toolCall = choice.getJsonObject("message").getJsonArray("tool_calls").getJsonObject(0);
+        assertEquals("call_1", toolCall.getString("id"));
+        assertEquals("get_weather", toolCall.getJsonObject("function").getString("name"));
+        assertEquals("{\"city\":\"Berlin\"}", toolCall.getJsonObject("function").getString("arguments"));
+        assertTrue(choice.getJsonObject("message").isNull("content"));
+    }
+
+    /**
+     * An error object in the stream ends the stream.
+     */
+    @Test
+    public void testErrorChunk() {
+        CompletionStreamParser parser = new CompletionStreamParser();
+        assertFalse(parser.accept("data: {\"error\":{\"code\":500,\"message\":\"context exceeded\"}}"));
+        assertNotNull(parser.getError());
+        assertEquals("context exceeded", parser.getError().getString("message"));
+    }
+
+    private JsonObject parse(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+}
@@ -0,0 +1,44 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.StringReader;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+public class TestCompletionUsage {
+
+    /**
+     * The llama.cpp timings provide the generation speed.
+     */
+    @Test
+    public void testLlamaCppTimings() {
+        CompletionUsage usage = CompletionUsage.parse(parse("{\"choices\":[],"
+                + "\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":30,\"total_tokens\":150},"
+                + "\"timings\":{\"prompt_n\":120,\"predicted_n\":30,\"predicted_per_second\":12.5}}"), 5000);
+        assertEquals(120, usage.getPromptTokens());
+        assertEquals(30, usage.getCompletionTokens());
+        assertEquals(12.5, usage.getTokensPerSecond(), 0.001);
+    }
+
+    /**
+     * Without timings the speed is computed from the duration.
+     */
+    @Test
+    public void testOpenAIUsage() {
+        CompletionUsage usage = CompletionUsage.parse(parse(
+                "{\"usage\":{\"prompt_tokens\":10,\"completion_tokens\":40}}"), 2000);
+        assertEquals(10, usage.getPromptTokens());
+        assertEquals(20.0, usage.getTokensPerSecond(), 0.001);
+
+        assertNull(CompletionUsage.parse(parse("{\"choices\":[]}"), 2000));
+    }
+
+    private static JsonObject parse(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+}
@@ -0,0 +1,76 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestEmbeddingCache {
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * The key depends on the endpoint, the options and the text.
+     */
+    @Test
+    public void testCreateKey() {
+        LLMOptions a = new LLMOptions("{\"model\":\"a\"}");
+        LLMOptions b = new LLMOptions("{\"model\":\"b\"}");
+        assertEquals(EmbeddingCache.createKey("llm", a, "text"), EmbeddingCache.createKey("llm", a, "text"));
+        assertNotEquals(EmbeddingCache.createKey("llm", a, "text"), EmbeddingCache.createKey("llm", b, "text"));
+        assertNotEquals(EmbeddingCache.createKey("llm", a, "text"), EmbeddingCache.createKey("llm", a, "other"));
+        assertNotEquals(EmbeddingCache.createKey("llm", null, "text"), EmbeddingCache.createKey("x", null, "text"));
+    }
+
+    /**
+     * Vectors evicted from memory are loaded from the disk tier.
+     */
+    @Test
+    public void testDiskTier() {
+        EmbeddingCache cache = new EmbeddingCache("test", 1, tempDir);
+        cache.put("a", new float[] { 0.5f, -1.25f });
+        cache.put("b", new float[] { 2f, 3f });
+        assertEquals(1, cache.size());
+        assertArrayEquals(new float[] { 0.5f, -1.25f }, cache.get("a"));
+
+        EmbeddingCache memoryOnly = new EmbeddingCache("test", 1, null);
+        memoryOnly.put("a", new float[] { 1f });
+        memoryOnly.put("b", new float[] { 2f });
+        assertNull(memoryOnly.get("a"));
+    }
+
+    /**
+     * Vectors of another model or dimension are discarded, also from the disk
+     * tier. After a restart the disk tier is used once the server reported its
+     * model.
+     */
+    @Test
+    public void testModelChange() {
+        EmbeddingCache cache = new EmbeddingCache("test", 10, tempDir);
+        cache.put("a", new float[] { 1f, 2f }, "model-a");
+        assertArrayEquals(new float[] { 1f, 2f }, cache.get("a"));
+
+        EmbeddingCache restarted = new EmbeddingCache("test", 10, tempDir);
+        assertNull(restarted.get("a"));
+        restarted.put("b", new float[] { 3f, 4f }, "model-a");
+        assertArrayEquals(new float[] { 1f, 2f }, restarted.get("a"));
+
+        // the model was swapped
+        restarted.put("c", new float[] { 5f, 6f, 7f }, "model-b");
+        assertEquals(1, restarted.size());
+        assertNull(restarted.get("a"));
+        assertNull(restarted.get("b"));
+        assertArrayEquals(new float[] { 5f, 6f, 7f }, restarted.get("c"));
+
+        // a server without a model name is checked by the dimension
+        cache.put("a", new float[] { 1f, 2f });
+        cache.put("d", new float[] { 1f });
+        assertNull(cache.get("a"));
+    }
+}
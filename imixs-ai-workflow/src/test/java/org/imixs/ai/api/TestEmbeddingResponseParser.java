@@ -0,0 +1,77 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the parsing of embedding responses in llama.cpp and OpenAI format.
+ */
+public class TestEmbeddingResponseParser {
+
+    @Test
+    public void testLlamaCppFormat() {
+        List<float[]> result = parse("[{\"index\":0,\"embedding\":[[0.1,0.2,0.3]]}]");
+        assertEquals(1, result.size());
+        assertArrayEquals(new float[] { 0.1f, 0.2f, 0.3f }, result.get(0));
+    }
+
+    @Test
+    public void testLlamaCppBatchFormat() {
+        List<float[]> result = parse(
+                "[{\"index\":1,\"embedding\":[[2.0,2.0]]},{\"embedding\":[[1.0,1.0]],\"index\":0}]");
+        assertEquals(2, result.size());
+        assertArrayEquals(new float[] { 1.0f, 1.0f }, result.get(0));
+        assertArrayEquals(new float[] { 2.0f, 2.0f }, result.get(1));
+    }
+
+    @Test
+    public void testOpenAIFormat() {
+        List<float[]> result = parse(
+                "{\"object\":\"list\",\"data\":[{\"index\":0,\"embedding\":[0.5,-0.5]},"
+                        + "{\"index\":1,\"embedding\":[1.5,-1.5e-3]}],\"model\":\"m\","
+                        + "\"usage\":{\"prompt_tokens\":4,\"total_tokens\":4}}");
+        assertEquals(2, result.size());
+        assertArrayEquals(new float[] { 0.5f, -0.5f }, result.get(0));
+        assertArrayEquals(new float[] { 1.5f, -0.0015f }, result.get(1));
+    }
+
+    /**
+     * The model of the response is reported, nested strings are ignored.
+     */
+    @Test
+    public void testModel() {
+        AtomicReference<String> model = new AtomicReference<>();
+        List<float[]> result = EmbeddingResponseParser.parse(new ByteArrayInputStream(
+                ("{\"data\":[{\"model\":\"x\",\"index\":0,\"embedding\":[0.5]}],\"model\":\"nomic-embed\"}")
+                        .getBytes(StandardCharsets.UTF_8)),
+                model::set);
+        assertEquals(1, result.size());
+        assertEquals("nomic-embed", model.get());
+    }
+
+    /**
+     * Vectors larger than the initial buffer must be grown correctly.
+     */
+    @Test
+    public void testLargeVector() {
+        StringBuilder json = new StringBuilder("[{\"index\":0,\"embedding\":[[");
+        for (int i = 0; i < 3000; i++) {
+            json.append(i > 0 ? "," : "").append(i);
+        }
+        json.append("]]}]");
+        float[] vector = parse(json.toString()).get(0);
+        assertEquals(3000, vector.length);
+        assertEquals(2999f, vector[2999]);
+    }
+
+    private List<float[]> parse(String json) {
+        return EmbeddingResponseParser.parse(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+}
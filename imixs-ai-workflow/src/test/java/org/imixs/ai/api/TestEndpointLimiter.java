@@ -0,0 +1,150 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.imixs.workflow.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+public class TestEndpointLimiter {
+
+    /**
+     * Requests above max-concurrent wait and get the permit of a released request.
+     */
+    @Test
+    public void testQueueAndHandOver() {
+        EndpointLimiter limiter = new EndpointLimiter("test", 2, 10, 10000);
+        assertTrue(limiter.acquire().isDone());
+        assertTrue(limiter.acquire().isDone());
+        CompletableFuture<Void> third = limiter.acquire();
+        assertFalse(third.isDone());
+        assertEquals(1, limiter.getWaiting());
+
+        limiter.release();
+        assertNull(third.join());
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+
+        limiter.release();
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * An abandoned or interrupted waiter leaves the queue and does not consume a
+     * permit.
+     */
+    @Test
+    public void testAbandonedRequest() throws InterruptedException {
+        EndpointLimiter limiter = new EndpointLimiter("test", 1, 10, 10000);
+        limiter.acquire();
+        CompletableFuture<Void> abandoned = limiter.acquire();
+        assertEquals(1, limiter.getWaiting());
+        abandoned.cancel(false);
+        assertEquals(0, limiter.getWaiting());
+
+        Thread waiter = new Thread(() -> assertThrows(PluginException.class, limiter::acquireBlocking));
+        waiter.start();
+        while (limiter.getWaiting() == 0) {
+            Thread.sleep(10);
+        }
+        waiter.interrupt();
+        waiter.join();
+        assertEquals(0, limiter.getWaiting());
+
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(limiter.acquire().isDone());
+    }
+
+    /**
+     * A full queue fails immediately with ERROR_ENDPOINT_BUSY.
+     */
+    @Test
+    public void testQueueFull() {
+        EndpointLimiter limiter = new EndpointLimiter("test", 1, 1, 10000);
+        limiter.acquire();
+        limiter.acquire();
+        CompletableFuture<Void> rejected = limiter.acquire();
+        assertTrue(rejected.isCompletedExceptionally());
+        ExecutionException e = assertThrows(ExecutionException.class,
+                rejected::get);
+        assertInstanceOf(PluginException.class, e.getCause());
+        assertEquals(OpenAIAPIConnector.ERROR_ENDPOINT_BUSY, ((PluginException) e.getCause()).getErrorCode());
+    }
+
+    /**
+     * A waiting request times out and does not consume the next permit.
+     */
+    @Test
+    public void testQueueTimeout() throws InterruptedException {
+        EndpointLimiter limiter = new EndpointLimiter("test", 1, 10, 50);
+        limiter.acquire();
+        CompletableFuture<Void> waiting = limiter.acquire();
+        Thread.sleep(200);
+        assertTrue(waiting.isCompletedExceptionally());
+        assertEquals(0, limiter.getWaiting());
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * max-concurrent 0 disables the limit.
+     */
+    @Test
+    public void testUnlimited() {
+        EndpointLimiter limiter = new EndpointLimiter("test", 0, 0, 1000);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire().isDone());
+        }
+        assertEquals(100, limiter.getInFlight());
+    }
+
+    /**
+     * A waiting interactive request is served before waiting background requests,
+     * and background requests are limited to max-background.
+     */
+    @Test
+    public void testPriorityLanes() {
+        EndpointLimiter limiter = new EndpointLimiter("test", 2, 1, 10, 10000);
+        assertTrue(limiter.acquire(RequestPriority.BACKGROUND).isDone());
+        // the second slot is reserved for interactive requests
+        CompletableFuture<Void> background = limiter.acquire(RequestPriority.BACKGROUND);
+        assertFalse(background.isDone());
+        assertTrue(limiter.acquire(RequestPriority.INTERACTIVE).isDone());
+        CompletableFuture<Void> interactive = limiter.acquire(RequestPriority.INTERACTIVE);
+        assertFalse(interactive.isDone());
+        assertEquals(1, limiter.getWaiting(RequestPriority.INTERACTIVE));
+        assertEquals(1, limiter.getWaiting(RequestPriority.BACKGROUND));
+
+        // the released background slot goes to the interactive request
+        limiter.release(RequestPriority.BACKGROUND);
+        assertTrue(interactive.isDone());
+        assertFalse(background.isDone());
+        assertEquals(0, limiter.getBackgroundInFlight());
+
+        limiter.release(RequestPriority.INTERACTIVE);
+        assertTrue(background.isDone());
+        assertEquals(1, limiter.getBackgroundInFlight());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCurrentPriority() {
+        assertEquals(RequestPriority.INTERACTIVE, RequestPriority.current());
+        RequestPriority previous = RequestPriority.enter(RequestPriority.BACKGROUND);
+        try {
+            assertEquals(RequestPriority.BACKGROUND, RequestPriority.current());
+        } finally {
+            RequestPriority.restore(previous);
+        }
+        assertEquals(RequestPriority.INTERACTIVE, RequestPriority.current());
+    }
+}
@@ -0,0 +1,67 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+import org.junit.jupiter.api.Test;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+public class TestJsonBodyPublisher {
+
+    /**
+     * A body larger than one chunk is published completely with the exact content
+     * length, and again on a second subscription (retry).
+     */
+    @Test
+    public void testPublish() {
+        String text = "Grüße ".repeat(5000);
+        JsonObject request = Json.createObjectBuilder()
+                .add("messages", Json.createArrayBuilder()
+                        .add(Json.createObjectBuilder().add("role", "user").add("content", text)))
+                .build();
+        byte[] expected = request.toString().getBytes(StandardCharsets.UTF_8);
+
+        BodyPublisher publisher = JsonBodyPublisher.of(request);
+        assertEquals(expected.length, publisher.contentLength());
+        assertEquals(new String(expected, StandardCharsets.UTF_8), read(publisher));
+        assertEquals(new String(expected, StandardCharsets.UTF_8), read(publisher));
+    }
+
+    private static String read(BodyPublisher publisher) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        publisher.subscribe(new Flow.Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                byte[] bytes = new byte[item.remaining()];
+                item.get(bytes);
+                out.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        done.join();
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
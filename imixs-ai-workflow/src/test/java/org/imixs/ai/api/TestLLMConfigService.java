@@ -0,0 +1,158 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.w3c.dom.Document;
+
+import jakarta.enterprise.event.Event;
+
+/**
+ * Tests the compiled endpoint registry and the reload of the imixs-llm.xml.
+ */
+public class TestLLMConfigService {
+
+    private static final String CONFIG = "<imixs-llm>"
+            + "<endpoint id=\"a\"><url>http://a:8080/</url><max-concurrent>2</max-concurrent>"
+            + "<options>{\"temperature\": 0.2}</options></endpoint>"
+            + "<endpoint id=\"b\"><url>http://b:8080/</url></endpoint>"
+            + "</imixs-llm>";
+
+    @TempDir
+    Path tempDir;
+
+    private LLMConfigService createService(Path file) {
+        LLMConfigService config = new LLMConfigService();
+        config.configFilePath = Optional.of(file.toString());
+        config.reloadInterval = 0;
+        config.init();
+        return config;
+    }
+
+    @Test
+    public void testCompile() throws IOException {
+        Path file = tempDir.resolve("imixs-llm.xml");
+        Files.writeString(file, CONFIG, StandardCharsets.UTF_8);
+        LLMConfigService config = createService(file);
+
+        assertEquals(List.of("a", "b"), config.getEndpointIds());
+        assertEquals("http://a:8080/", config.getURL("a"));
+        assertEquals(2, config.getMaxConcurrent("a"));
+        assertEquals(0, config.getMaxConcurrent("b"));
+        assertFalse(config.hasEndpoint("c"));
+        assertNull(config.getURL("c"));
+
+        // the options of the endpoint are not changed by a merge of the caller
+        LLMOptions options = config.getOptions("a");
+        options.merge("{\"temperature\": 0.9}");
+        assertEquals(0.2, config.getOptions("a").toJson().getJsonNumber("temperature").doubleValue());
+    }
+
+    /**
+     * A modified file is reloaded and the changed endpoints are reported by a
+     * LLMConfigEvent, an invalid file keeps the current config.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testReload() throws IOException {
+        Path file = tempDir.resolve("imixs-llm.xml");
+        Files.writeString(file, CONFIG, StandardCharsets.UTF_8);
+        LLMConfigService config = createService(file);
+        config.configEvents = mock(Event.class);
+        when(config.configEvents.fireAsync(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        Files.writeString(file, CONFIG.replace("http://b:8080/", "http://c:8080/")
+                .replace("</imixs-llm>", "<endpoint id=\"d\"><url>http://d:8080/</url></endpoint></imixs-llm>"),
+                StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        config.reload();
+        assertEquals("http://c:8080/", config.getURL("b"));
+        assertTrue(config.hasEndpoint("d"));
+        verify(config.configEvents).fireAsync(argThat(event -> event.getEndpointIds().equals(Set.of("b", "d"))));
+
+        Files.writeString(file, "<imixs-llm><endpoint", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 4000));
+        config.reload();
+        assertEquals("http://c:8080/", config.getURL("b"));
+    }
+
+    @Test
+    public void testEndpointConfigEquals() throws Exception {
+        LLMConfigService first = new LLMConfigService();
+        first.setConfigDocument(parse(CONFIG));
+        LLMConfigService second = new LLMConfigService();
+        second.setConfigDocument(parse(CONFIG.replace("<max-concurrent>2", "<max-concurrent>3")));
+        assertEquals(first.getConfig("b"), second.getConfig("b"));
+        assertNotEquals(first.getConfig("a"), second.getConfig("a"));
+    }
+
+    /**
+     * Invalid limits fall back to the defaults, nested elements are not read as
+     * settings of the endpoint.
+     */
+    @Test
+    public void testCompiledLimits() throws Exception {
+        LLMConfigService config = new LLMConfigService();
+        config.setConfigDocument(parse("<imixs-llm><endpoint id=\"a\"><url>http://a:8080/</url>"
+                + "<pool-size>many</pool-size><retries>5</retries><cache-prompt>yes</cache-prompt>"
+                + "<single-flight>FALSE</single-flight>"
+                + "<meta><url>http://nested:8080/</url><slots>4</slots></meta></endpoint></imixs-llm>"));
+        EndpointConfig endpoint = config.getConfig("a");
+        assertEquals(LLMConfigService.DEFAULT_POOL_SIZE, config.getPoolSize("a"));
+        assertEquals(5, config.getRetries("a"));
+        assertFalse(config.isCachePrompt("a"));
+        assertFalse(config.isSingleFlight("a"));
+        assertEquals(List.of("http://a:8080/"), config.getURLs("a"));
+        assertEquals(0, config.getSlots("a"));
+        assertEquals(-1, endpoint.getInt("pool-size", -1));
+        assertTrue(endpoint.getBoolean("cache-prompt", true));
+    }
+
+    private static Document parse(String xml) throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testCompactionConfig() throws IOException {
+        Path file = tempDir.resolve("imixs-llm.xml");
+        Files.writeString(file, CONFIG.replace("<max-concurrent>2</max-concurrent>",
+                "<compaction>summary</compaction><compaction-threshold>6000</compaction-threshold>"
+                        + "<compaction-window>4</compaction-window><compaction-tool-result>0</compaction-tool-result>"),
+                StandardCharsets.UTF_8);
+        LLMConfigService config = createService(file);
+
+        assertEquals(LLMConfigService.COMPACTION_SUMMARY, config.getCompaction("a"));
+        assertEquals(6000, config.getCompactionThreshold("a"));
+        assertEquals(4, config.getCompactionWindow("a"));
+        assertEquals(0, config.getCompactionToolResult("a"));
+        // defaults - compaction disabled
+        assertEquals(LLMConfigService.COMPACTION_WINDOW, config.getCompaction("b"));
+        assertEquals(0, config.getCompactionThreshold("b"));
+        assertEquals(LLMConfigService.DEFAULT_COMPACTION_WINDOW, config.getCompactionWindow("b"));
+        assertEquals(LLMConfigService.DEFAULT_COMPACTION_TOOL_RESULT, config.getCompactionToolResult("b"));
+    }
+}
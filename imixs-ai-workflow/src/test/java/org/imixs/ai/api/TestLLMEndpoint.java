@@ -0,0 +1,157 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.json.JsonObject;
+
+/**
+ * Tests the replica selection of an endpoint with multiple urls.
+ */
+public class TestLLMEndpoint {
+
+    private static final String CONFIG = "<imixs-llm><endpoint id=\"llm\">"
+            + "<url>http://a:8080</url><url>http://b:8080/</url>"
+            + "<eject-after>2</eject-after><eject-duration>60000</eject-duration>"
+            + "<warmup>true</warmup><warmup-prompt>You are a clerk.</warmup-prompt>"
+            + "<health-interval>10000</health-interval><health-path>/slots</health-path>"
+            + "<options>{\"model\":\"m1\",\"temperature\":0}</options>"
+            + "</endpoint></imixs-llm>";
+
+    private LLMConfigService config;
+    private LLMEndpoint endpoint;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        config = new LLMConfigService();
+        config.setConfigDocument(DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(CONFIG.getBytes(StandardCharsets.UTF_8))));
+        endpoint = new LLMEndpoint("llm", config, 1000);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        endpoint.close();
+    }
+
+    @Test
+    public void testReplicas() {
+        assertEquals(2, endpoint.getReplicas().size());
+        assertEquals("http://a:8080/", endpoint.getReplicas().get(0).getUrl());
+        assertEquals("http://b:8080/", endpoint.getReplicas().get(1).getUrl());
+    }
+
+    /**
+     * With two replicas the one with less outstanding requests is selected.
+     */
+    @Test
+    public void testLeastOutstanding() {
+        EndpointReplica a = endpoint.getReplicas().get(0);
+        EndpointReplica b = endpoint.getReplicas().get(1);
+        a.begin();
+        a.begin();
+        for (int i = 0; i < 10; i++) {
+            assertSame(b, endpoint.selectReplica());
+        }
+    }
+
+    /**
+     * A replica failing repeatedly is ejected and no longer selected.
+     */
+    @Test
+    public void testPassiveEjection() {
+        EndpointReplica a = endpoint.getReplicas().get(0);
+        EndpointReplica b = endpoint.getReplicas().get(1);
+        b.begin();
+        a.failure();
+        a.success();
+        a.failure();
+        // not yet ejected - failures were not consecutive
+        assertSame(a, endpoint.selectReplica());
+        a.failure();
+        assertFalse(a.isHealthy());
+        for (int i = 0; i < 10; i++) {
+            assertSame(b, endpoint.selectReplica());
+        }
+    }
+
+    /**
+     * Requests with the same affinity key stick to one replica while it is
+     * healthy.
+     */
+    @Test
+    public void testAffinity() {
+        EndpointReplica pinned = endpoint.selectReplica("conversation-1");
+        // outstanding requests do not move the conversation
+        pinned.begin();
+        pinned.begin();
+        for (int i = 0; i < 10; i++) {
+            assertSame(pinned, endpoint.selectReplica("conversation-1"));
+        }
+        pinned.failure();
+        pinned.failure();
+        assertFalse(pinned.isHealthy());
+        assertNotSame(pinned, endpoint.selectReplica("conversation-1"));
+    }
+
+    /**
+     * A failed health probe ejects the replica and marks it cold, the next
+     * successful probe brings it back.
+     */
+    @Test
+    public void testProbe() {
+        EndpointReplica a = endpoint.getReplicas().get(0);
+        EndpointReplica b = endpoint.getReplicas().get(1);
+        a.setWarm(true);
+        a.probed(false);
+        assertFalse(a.isHealthy());
+        assertFalse(a.isWarm());
+        for (int i = 0; i < 10; i++) {
+            assertSame(b, endpoint.selectReplica());
+        }
+        a.probed(true);
+        assertTrue(a.isHealthy());
+    }
+
+    @Test
+    public void testWarmupConfig() {
+        assertEquals(List.of("llm"), config.getEndpointIds());
+        assertTrue(config.isWarmupCompletion("llm"));
+        assertTrue(config.isWarmupEmbedding("llm"));
+        assertEquals(List.of("You are a clerk."), config.getWarmupPrompts("llm"));
+        assertEquals(10000, config.getHealthInterval("llm"));
+        assertEquals("slots", config.getHealthPath("llm"));
+    }
+
+    /**
+     * The warm-up requests keep the model of the endpoint and generate one token.
+     */
+    @Test
+    public void testWarmupRequests() {
+        JsonObject completion = OpenAIAPIConnector.buildWarmupCompletion(config.getOptions("llm"),
+                "You are a clerk.", true);
+        assertEquals("m1", completion.getString("model"));
+        assertEquals(1, completion.getInt("max_tokens"));
+        assertTrue(completion.getBoolean("cache_prompt"));
+        assertEquals("system", completion.getJsonArray("messages").getJsonObject(0).getString("role"));
+        assertEquals("You are a clerk.",
+                completion.getJsonArray("messages").getJsonObject(0).getString("content"));
+
+        JsonObject embedding = OpenAIAPIConnector.buildWarmupEmbedding(config.getOptions("llm"));
+        assertEquals("m1", embedding.getString("model"));
+        assertFalse(embedding.containsKey("temperature"));
+    }
+}
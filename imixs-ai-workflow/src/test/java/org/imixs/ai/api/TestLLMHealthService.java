@@ -0,0 +1,86 @@
+package org.imixs.ai.api;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatcher;
+
+import jakarta.ejb.Timer;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TimerService;
+
+/**
+ * Tests the re-sync of the warm-up and health probe timers after a reload of
+ * the imixs-llm.xml.
+ */
+public class TestLLMHealthService {
+
+    private LLMHealthService healthService;
+    private Timer healthA;
+    private Timer healthB;
+    private Timer healthC;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        LLMConfigService config = new LLMConfigService();
+        config.setConfigDocument(DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(("<imixs-llm>"
+                        + "<endpoint id=\"a\"><url>http://a:8080/</url><health-interval>5000</health-interval>"
+                        + "<warmup>completion</warmup></endpoint>"
+                        + "<endpoint id=\"b\"><url>http://b:8080/</url><health-interval>1000</health-interval></endpoint>"
+                        + "<endpoint id=\"d\"><url>http://d:8080/</url><health-interval>2000</health-interval></endpoint>"
+                        + "</imixs-llm>").getBytes(StandardCharsets.UTF_8))));
+        healthA = createTimer("health:a");
+        healthB = createTimer("health:b");
+        healthC = createTimer("health:c");
+        healthService = new LLMHealthService();
+        healthService.llmConfigService = config;
+        healthService.timerService = mock(TimerService.class);
+        when(healthService.timerService.getTimers()).thenReturn(List.of(healthA, healthB, healthC));
+    }
+
+    /**
+     * Changed endpoints get new timers, removed endpoints lose their timers and
+     * unchanged endpoints keep them.
+     */
+    @Test
+    public void testConfigEvent() {
+        // a changed, c removed, d added
+        healthService.onConfigEvent(new LLMConfigEvent(Set.of("a", "c", "d")));
+
+        verify(healthA).cancel();
+        verify(healthC).cancel();
+        verify(healthB, never()).cancel();
+        verify(healthService.timerService).createSingleActionTimer(eq(0L), argThat(info("warmup:a")));
+        verify(healthService.timerService).createIntervalTimer(eq(5000L), eq(5000L), argThat(info("health:a")));
+        verify(healthService.timerService).createIntervalTimer(eq(2000L), eq(2000L), argThat(info("health:d")));
+        verify(healthService.timerService, never()).createIntervalTimer(anyLong(), anyLong(),
+                argThat(info("health:b")));
+        verify(healthService.timerService, never()).createIntervalTimer(anyLong(), anyLong(),
+                argThat(info("health:c")));
+    }
+
+    private static Timer createTimer(String info) {
+        Timer timer = mock(Timer.class);
+        when(timer.getInfo()).thenReturn(info);
+        return timer;
+    }
+
+    private static ArgumentMatcher<TimerConfig> info(String info) {
+        return config -> config != null && info.equals(config.getInfo());
+    }
+}
@@ -2,11 +2,15 @@ package org.imixs.ai.api;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
+import jakarta.json.JsonNumber;
 import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
 
 public class TestLLMOptions {
 
@@ -99,4 +103,36 @@ public class TestLLMOptions {
         assertEquals(0.9, result.getJsonNumber("temperature").doubleValue()); // L3 wins
         assertEquals(0.95, result.getJsonNumber("top_p").doubleValue());   // from L3
     }
-}
\ No newline at end of file
+
+    /**
+     * A single option is looked up through the layers, and merging into a copy
+     * does not change the options sharing the same layers.
+     */
+    @Test
+    public void testLayeredLookup() {
+        LLMOptions base = new LLMOptions("{\"model\": \"llama-3\", \"temperature\": 0.2}");
+        LLMOptions options = new LLMOptions().merge(base);
+        options.merge("{\"temperature\": 0.9}");
+
+        assertEquals(0.9, ((JsonNumber) options.get("temperature")).doubleValue());
+        assertEquals("llama-3", ((JsonString) options.get("model")).getString());
+        assertNull(options.get("top_p"));
+        // the base options are not changed
+        assertEquals(0.2, base.toJson().getJsonNumber("temperature").doubleValue());
+        // the merged object is built once
+        assertSame(options.toJson(), options.toJson());
+    }
+
+    /**
+     * Many merges - e.g. in an agent loop - keep the merge semantics.
+     */
+    @Test
+    public void testManyMerges() {
+        LLMOptions options = new LLMOptions("{\"max_tokens\": 1024}");
+        for (int i = 0; i < 20; i++) {
+            options.merge("{\"temperature\": " + i + "}");
+        }
+        assertEquals(19, options.toJson().getInt("temperature"));
+        assertEquals(1024, options.toJson().getInt("max_tokens"));
+    }
+}
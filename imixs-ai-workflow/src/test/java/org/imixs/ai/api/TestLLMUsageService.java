@@ -0,0 +1,59 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.imixs.workflow.ItemCollection;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the token usage accounting per endpoint, model and workitem.
+ */
+public class TestLLMUsageService {
+
+    /**
+     * Usage is counted per endpoint and model until it is flushed.
+     */
+    @Test
+    public void testRecord() {
+        LLMUsageService usageService = new LLMUsageService();
+        usageService.record("llm", "mistral", new CompletionUsage(100, 20, 0), 1000);
+        usageService.record("llm", "mistral", new CompletionUsage(50, 10, 0), 500);
+        usageService.record("llm", null, new CompletionUsage(10, 1, 0), 100);
+
+        List<ItemCollection> usage = usageService.getPendingUsage();
+        assertEquals(2, usage.size());
+        ItemCollection mistral = usage.stream()
+                .filter(u -> "mistral".equals(u.getItemValueString(LLMUsageService.ITEM_MODEL)))
+                .findFirst().get();
+        assertEquals("llm", mistral.getItemValueString(LLMUsageService.ITEM_ENDPOINT));
+        assertEquals(2, mistral.getItemValueLong(LLMUsageService.ITEM_CALLS));
+        assertEquals(150, mistral.getItemValueLong(LLMUsageService.ITEM_PROMPT_TOKENS));
+        assertEquals(30, mistral.getItemValueLong(LLMUsageService.ITEM_COMPLETION_TOKENS));
+        assertEquals(1500, mistral.getItemValueLong(LLMUsageService.ITEM_DURATION));
+        assertEquals(LLMUsageService.createKey("llm", "mistral"), mistral.getUniqueID());
+    }
+
+    @Test
+    public void testWorkitemUsage() {
+        ItemCollection workitem = new ItemCollection();
+        LLMUsageService.addUsage(workitem, "llm", "mistral", new CompletionUsage(100, 20, 0), 1000);
+        LLMUsageService.addUsage(workitem, "llm", "mistral", new CompletionUsage(50, 10, 0), 500);
+        LLMUsageService.addUsage(workitem, "embeddings", null, null, 10);
+        LLMUsageService.addCacheHit(workitem);
+        LLMUsageService.addCoalesced(workitem);
+
+        assertEquals(3, workitem.getItemValueLong(LLMUsageService.ITEM_USAGE_CALLS));
+        assertEquals(150, workitem.getItemValueLong(LLMUsageService.ITEM_USAGE_PROMPT_TOKENS));
+        assertEquals(30, workitem.getItemValueLong(LLMUsageService.ITEM_USAGE_COMPLETION_TOKENS));
+        assertEquals(1510, workitem.getItemValueLong(LLMUsageService.ITEM_USAGE_DURATION));
+        assertEquals(1, workitem.getItemValueLong(LLMUsageService.ITEM_USAGE_CACHE_HITS));
+        assertEquals(1, workitem.getItemValueLong(LLMUsageService.ITEM_USAGE_COALESCED));
+        List<String> models = workitem.getItemValueList(LLMUsageService.ITEM_USAGE_MODELS, String.class);
+        assertEquals(2, models.size());
+        assertTrue(models.contains("llm/mistral"));
+        assertTrue(models.contains("embeddings"));
+    }
+}
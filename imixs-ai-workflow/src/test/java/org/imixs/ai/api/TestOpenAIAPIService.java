@@ -0,0 +1,102 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.imixs.ai.ImixsAIContextHandler;
+import org.imixs.workflow.exceptions.PluginException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the error handling of the async completion API.
+ */
+public class TestOpenAIAPIService {
+
+    private OpenAIAPIService openAIAPIService;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        LLMConfigService config = new LLMConfigService();
+        config.setConfigDocument(DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new ByteArrayInputStream(("<imixs-llm><endpoint id=\"small\"><url>http://localhost:8080/</url>"
+                        + "<context-size>20</context-size></endpoint></imixs-llm>")
+                        .getBytes(StandardCharsets.UTF_8))));
+        openAIAPIService = new OpenAIAPIService();
+        openAIAPIService.llmConfigService = config;
+    }
+
+    /**
+     * await() throws the PluginException of a failed request instead of the
+     * wrapping CompletionException.
+     */
+    @Test
+    public void testAwaitUnwrapsPluginException() {
+        PluginException error = new PluginException(OpenAIAPIService.class.getSimpleName(),
+                OpenAIAPIService.ERROR_PROMPT_INFERENCE, "LLM server not available");
+        CompletableFuture<String> future = CompletableFuture.supplyAsync(() -> {
+            throw new CompletionException(error);
+        });
+        assertSame(error, assertThrows(PluginException.class, () -> openAIAPIService.await(future)));
+        // also from a dependent stage
+        assertSame(error, assertThrows(PluginException.class,
+                () -> openAIAPIService.await(future.thenApply(String::length))));
+
+        // other failures are reported as inference errors
+        CompletableFuture<String> failed = CompletableFuture.failedFuture(new IllegalStateException("closed"));
+        PluginException e = assertThrows(PluginException.class, () -> openAIAPIService.await(failed));
+        assertEquals(OpenAIAPIService.ERROR_PROMPT_INFERENCE, e.getErrorCode());
+    }
+
+    /**
+     * A failure while the request is built (here an oversized prompt) is returned
+     * as a failed future and not thrown to the caller.
+     */
+    @Test
+    public void testAsyncRequestFailure() throws PluginException {
+        ImixsAIContextHandler imixsAIContextHandler = new ImixsAIContextHandler();
+        imixsAIContextHandler.addQuestion("word ".repeat(200), null, null);
+
+        CompletableFuture<String> future = openAIAPIService.postPromptCompletionAsync(imixsAIContextHandler,
+                "small", false);
+        assertTrue(future.isCompletedExceptionally());
+        PluginException e = assertThrows(PluginException.class, () -> openAIAPIService.await(future));
+        assertEquals(OpenAIAPIService.ERROR_PROMPT_SIZE, e.getErrorCode());
+    }
+
+    /**
+     * A failure while the streaming request is built is reported to the stream
+     * listener, so a subscriber does not wait forever.
+     */
+    @Test
+    public void testStreamRequestFailure() throws PluginException {
+        ImixsAIContextHandler imixsAIContextHandler = new ImixsAIContextHandler();
+        imixsAIContextHandler.addQuestion("word ".repeat(200), null, null);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CompletionStreamListener listener = new CompletionStreamListener() {
+            @Override
+            public void onContent(String content) {
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                error.set(e);
+            }
+        };
+
+        PluginException e = assertThrows(PluginException.class,
+                () -> openAIAPIService.postPromptCompletion(imixsAIContextHandler, "small", listener, false));
+        assertEquals(OpenAIAPIService.ERROR_PROMPT_SIZE, e.getErrorCode());
+        assertSame(e, error.get());
+    }
+}
@@ -0,0 +1,76 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringReader;
+
+import org.imixs.workflow.exceptions.PluginException;
+import org.junit.jupiter.api.Test;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+
+public class TestPromptBudget {
+
+    @Test
+    public void testEstimate() throws PluginException {
+        assertEquals(0, TokenEstimator.estimate(null));
+        assertEquals(1, TokenEstimator.estimate("abc"));
+        assertEquals(3, TokenEstimator.estimate("Hello World!"));
+
+        JsonObject request = parse("{\"messages\":[{\"role\":\"user\",\"content\":\"Hello World\"}],"
+                + "\"max_tokens\":128}");
+        // 12 chars incl. separator + message overhead
+        assertEquals(3 + PromptBudget.MESSAGE_OVERHEAD, PromptBudget.countTokens(request, TokenEstimator.HEURISTIC));
+        assertEquals(128, PromptBudget.getMaxTokens(request));
+    }
+
+    /**
+     * The oldest turns are dropped first, the system message and the last message
+     * are kept.
+     */
+    @Test
+    public void testTrimOldestTurns() throws PluginException {
+        String text = "x".repeat(400);
+        JsonObject request = parse("{\"messages\":["
+                + "{\"role\":\"system\",\"content\":\"You are a helpful assistant\"},"
+                + "{\"role\":\"user\",\"content\":\"" + text + "\"},"
+                + "{\"role\":\"assistant\",\"content\":\"" + text + "\"},"
+                + "{\"role\":\"user\",\"content\":\"Question\"}]}");
+        int tokens = PromptBudget.countTokens(request, TokenEstimator.HEURISTIC);
+        JsonObject trimmed = PromptBudget.trim(request, tokens, 150);
+        JsonArray messages = trimmed.getJsonArray("messages");
+        assertEquals(3, messages.size());
+        assertEquals("system", messages.getJsonObject(0).getString("role"));
+        assertEquals("assistant", messages.getJsonObject(1).getString("role"));
+        assertEquals("Question", messages.getJsonObject(2).getString("content"));
+        assertTrue(PromptBudget.countTokens(trimmed, TokenEstimator.HEURISTIC) <= 150);
+    }
+
+    /**
+     * A tool call is dropped together with its results. A single large message is
+     * truncated.
+     */
+    @Test
+    public void testTrimToolCallsAndTruncate() throws PluginException {
+        String text = "x".repeat(2000);
+        JsonObject request = parse("{\"messages\":["
+                + "{\"role\":\"user\",\"content\":\"" + text + "\"},"
+                + "{\"role\":\"assistant\",\"content\":null,\"tool_calls\":[{\"id\":\"1\"}]},"
+                + "{\"role\":\"tool\",\"tool_call_id\":\"1\",\"content\":\"" + text + "\"},"
+                + "{\"role\":\"user\",\"content\":\"" + text + "\"}]}");
+        int tokens = PromptBudget.countTokens(request, TokenEstimator.HEURISTIC);
+        JsonObject trimmed = PromptBudget.trim(request, tokens, 300);
+        JsonArray messages = trimmed.getJsonArray("messages");
+        assertEquals(1, messages.size());
+        String content = messages.getJsonObject(0).getString("content");
+        assertTrue(content.endsWith(PromptBudget.TRUNCATION_MARK));
+        assertTrue(PromptBudget.countTokens(trimmed, TokenEstimator.HEURISTIC) <= 300);
+    }
+
+    private static JsonObject parse(String json) {
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+}
@@ -0,0 +1,72 @@
+package org.imixs.ai.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSingleFlight {
+
+    /**
+     * Identical calls in flight share one call. A call after the completion is
+     * executed again.
+     */
+    @Test
+    public void testCoalesce() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        AtomicInteger count = new AtomicInteger();
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        CompletableFuture<String> first = singleFlight.execute("a", () -> {
+            count.incrementAndGet();
+            return call;
+        });
+        CompletableFuture<String> second = singleFlight.execute("a", () -> {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        });
+        assertEquals(1, count.get());
+        assertTrue(singleFlight.isInFlight("a"));
+
+        call.complete("result");
+        assertEquals("result", first.join());
+        assertEquals("result", second.join());
+        assertFalse(singleFlight.isInFlight("a"));
+
+        singleFlight.execute("a", () -> {
+            count.incrementAndGet();
+            return CompletableFuture.completedFuture("next");
+        });
+        assertEquals(2, count.get());
+        assertEquals(0, singleFlight.size());
+    }
+
+    /**
+     * A failure is propagated to all callers and the key is released.
+     */
+    @Test
+    public void testFailure() {
+        SingleFlight<String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.execute("a", () -> call);
+        CompletableFuture<String> second = singleFlight.execute("a", () -> call);
+
+        // cancelling one caller does not affect the shared call
+        second.cancel(true);
+        call.completeExceptionally(new IllegalStateException("failed"));
+        assertThrows(CompletionException.class, first::join);
+        assertFalse(singleFlight.isInFlight("a"));
+
+        CompletableFuture<String> thrown = singleFlight.execute("b", () -> {
+            throw new IllegalStateException("failed");
+        });
+        assertThrows(CompletionException.class, thrown::join);
+        assertFalse(singleFlight.isInFlight("b"));
+    }
+}